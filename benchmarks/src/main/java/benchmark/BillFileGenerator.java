@@ -0,0 +1,58 @@
+package benchmark;
+
+import service.ChecksumCalculator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic bill files for the benchmarks.
+ * <p>
+ * Rows use a few thousand item codes with valid checksums. About one row in
+ * twenty has a special character in its item code and one in ten sells at the
+ * internal price, so validation and zero-profit removal have work to do.
+ */
+public final class BillFileGenerator {
+    private static final int ITEM_CODES = 5000;
+
+    private BillFileGenerator() {
+    }
+
+    /**
+     * Returns a bill file with the given number of rows, generating it on first use.
+     */
+    public static Path billFile(int rows) throws IOException {
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "gtds-bench-" + rows + ".csv");
+        if (!Files.exists(file)) {
+            Path partial = Files.createTempFile(file.getParent(), "gtds-bench-", ".tmp");
+            generate(partial, rows, 42L);
+            Files.move(partial, file);
+        }
+        return file;
+    }
+
+    /**
+     * Writes rows of random transactions to the file.
+     */
+    public static void generate(Path file, int rows, long seed) throws IOException {
+        Random random = new Random(seed);
+        ChecksumCalculator checksumCalculator = new ChecksumCalculator();
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < rows; i++) {
+                String itemCode = (random.nextInt(20) == 0 ? "ITEM#" : "ITEM") + random.nextInt(ITEM_CODES);
+                double internalPrice = random.nextInt(100_000) / 100.0;
+                double salePrice = random.nextInt(10) == 0 ? internalPrice : internalPrice + random.nextInt(5_000) / 100.0;
+                int quantity = 1 + random.nextInt(20);
+                double discount = random.nextInt(4) == 0 ? random.nextInt(2_000) / 100.0 : 0.0;
+                int checksum = checksumCalculator.calculate(itemCode, internalPrice, salePrice, quantity, discount);
+
+                writer.write("B" + i + "," + itemCode + "," + internalPrice + "," + salePrice + ","
+                        + quantity + "," + discount + "," + checksum);
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package benchmark;
+
+import org.iit.Transaction;
+import org.openjdk.jmh.annotations.*;
+import service.TransactionService;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks importing bill files of different sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private final TransactionService transactionService = new TransactionService();
+    private String filePath;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        filePath = BillFileGenerator.billFile(rows).toString();
+    }
+
+    @Benchmark
+    public List<Transaction> importTransactionsFromFile() throws IOException {
+        return transactionService.importTransactionsFromFile(filePath);
+    }
+}
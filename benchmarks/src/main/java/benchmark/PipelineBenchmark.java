@@ -0,0 +1,83 @@
+package benchmark;
+
+import org.iit.Transaction;
+import org.openjdk.jmh.annotations.*;
+import service.TransactionService;
+import service.TransactionService.TaxCalculationResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the processing stages over an imported bill file.
+ * Each operation is one full pass over all rows.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+    private static final double TAX_RATE = 10.0;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private final TransactionService transactionService = new TransactionService();
+    private List<Transaction> transactions;
+
+    @Setup(Level.Trial)
+    public void importFile() throws IOException {
+        transactions = transactionService.importTransactionsFromFile(BillFileGenerator.billFile(rows).toString());
+        transactionService.validateTransactions(transactions);
+        transactionService.calculateProfits(transactions);
+    }
+
+    @Benchmark
+    public long calculateChecksum() {
+        long sum = 0;
+        for (Transaction transaction : transactions) {
+            sum += transactionService.calculateChecksum(transaction);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public List<Transaction> validateTransactions() {
+        transactionService.validateTransactions(transactions);
+        return transactions;
+    }
+
+    @Benchmark
+    public List<Transaction> calculateProfits() {
+        transactionService.calculateProfits(transactions);
+        return transactions;
+    }
+
+    @Benchmark
+    public TaxCalculationResult calculateTax() {
+        return transactionService.calculateTax(transactions, TAX_RATE);
+    }
+
+    /**
+     * Fresh copy of the rows for each removal, since removal mutates the list.
+     */
+    @State(Scope.Thread)
+    public static class RemovalState {
+        List<Transaction> copy;
+
+        @Setup(Level.Invocation)
+        public void copy(PipelineBenchmark benchmark) {
+            copy = new ArrayList<>(benchmark.transactions);
+        }
+    }
+
+    @Benchmark
+    public List<Transaction> removeZeroProfitTransactions(RemovalState state) {
+        transactionService.removeZeroProfitTransactions(state.copy);
+        return state.copy;
+    }
+}
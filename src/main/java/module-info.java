@@ -1,8 +1,13 @@
 module org.example.lol {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.jfr;
 
 
     opens org.iit to javafx.fxml;
     exports org.iit;
+    // The metrics MXBeans are read by JMX
+    exports service;
 }
\ No newline at end of file
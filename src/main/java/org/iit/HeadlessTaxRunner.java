@@ -0,0 +1,327 @@
+package org.iit;
+
+import service.GroupAggregator;
+import service.GroupAggregator.GroupTotal;
+import service.MultiFileTaxCalculator;
+import service.MultiFileTaxCalculator.ConsolidatedResult;
+import service.MultiFileTaxCalculator.FileTotal;
+import service.TransactionBatch;
+import service.TransactionFolderWatcher;
+import service.TransactionService;
+import service.TransactionService.TaxCalculationResult;
+import service.ValidationRules;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line entry point that runs the tax pipeline without the JavaFX UI.
+ * <p>
+ * Usage: {@code HeadlessTaxRunner [--export=<csv file>] [--top=<n>] [--metrics] [--jmx] [--rules=<properties file>] <transaction file or folder> <tax rate> [output file]}
+ * or {@code HeadlessTaxRunner [--jmx] [--rules=<properties file>] [--offsets=<file>] [--tail-wait=<ms>] --watch <folder> <tax rate>}
+ * <p>
+ * Imports the file, validates it, calculates profit, removes zero-profit
+ * transactions and calculates tax, then prints a summary to stdout or to the
+ * output file. With {@code --export} the remaining transactions are also saved
+ * as CSV, gzip-compressed when the file name ends in {@code .gz}. With
+ * {@code --top} the report lists the item codes and bills with the highest net
+ * profit. Given a folder, every CSV file in it is processed in parallel and the
+ * report shows the consolidated totals with a line per file. With {@code --watch}
+ * the runner keeps running, ingests the lines appended to the CSV files of the
+ * folder as they arrive and prints the running totals after each change; with
+ * {@code --offsets} it saves how far it has read every file after each change and
+ * a restarted runner resumes from there, its totals then covering the new lines. A
+ * last line without a line break is ingested when the runner stops, or with
+ * {@code --tail-wait} once its file has not changed for that many milliseconds. With
+ * {@code --metrics} the report ends with the calls, rows and timings of every
+ * processing stage. With {@code --jmx} the stage metrics are published over JMX
+ * while it runs; without it the management subsystem is not started. With
+ * {@code --rules} transactions are validated by the {@link ValidationRules} in the
+ * properties file instead of the default rules. It works on a
+ * {@link TransactionBatch}, so the JavaFX toolkit is
+ * never started and the runner can be scripted, e.g. from cron:
+ * {@code java -cp target/classes org.iit.HeadlessTaxRunner bills.csv 10}
+ */
+public class HeadlessTaxRunner {
+    // Exit codes for scripts
+    static final int EXIT_OK = 0;
+    static final int EXIT_USAGE = 1;
+    static final int EXIT_IO_ERROR = 2;
+
+    private static final String USAGE =
+            "Usage: HeadlessTaxRunner [--export=<csv file>] [--top=<n>] [--metrics] [--jmx]"
+                    + " [--rules=<properties file>] <transaction file or folder> <tax rate> [output file]"
+                    + System.lineSeparator()
+                    + "       HeadlessTaxRunner [--jmx] [--rules=<properties file>] [--offsets=<file>]"
+                    + " [--tail-wait=<ms>] --watch <folder> <tax rate>";
+    private static final String EXPORT_OPTION = "--export=";
+    private static final String TOP_OPTION = "--top=";
+    private static final String WATCH_OPTION = "--watch";
+    private static final String METRICS_OPTION = "--metrics";
+    private static final String JMX_OPTION = "--jmx";
+    private static final String RULES_OPTION = "--rules=";
+    private static final String OFFSETS_OPTION = "--offsets=";
+    private static final String TAIL_WAIT_OPTION = "--tail-wait=";
+
+    private final TransactionService transactionService = new TransactionService();
+    private final int threads = Runtime.getRuntime().availableProcessors();
+    // Options
+    private Path exportFile;
+    private int topGroups;
+    private boolean watch;
+    private boolean metrics;
+    private boolean jmx;
+    private Path rulesFile;
+    private Path offsetsFile;
+    private long tailWaitMillis;
+
+    public static void main(String[] args) {
+        HeadlessTaxRunner runner = new HeadlessTaxRunner();
+        System.exit(runner.run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the pipeline for the given arguments and returns the exit code.
+     */
+    int run(String[] args, PrintStream out, PrintStream err) {
+        // Options of an earlier run do not carry over
+        exportFile = null;
+        topGroups = 0;
+        watch = false;
+        metrics = false;
+        jmx = false;
+        rulesFile = null;
+        offsetsFile = null;
+        tailWaitMillis = 0;
+        transactionService.getMetrics().reset();
+        int options = 0;
+        try {
+            for (; options < args.length && args[options].startsWith("--"); options++) {
+                String option = args[options];
+                if (option.startsWith(EXPORT_OPTION) && option.length() > EXPORT_OPTION.length()) {
+                    exportFile = Path.of(option.substring(EXPORT_OPTION.length()));
+                } else if (option.equals(WATCH_OPTION)) {
+                    watch = true;
+                } else if (option.equals(METRICS_OPTION)) {
+                    metrics = true;
+                } else if (option.equals(JMX_OPTION)) {
+                    jmx = true;
+                } else if (option.startsWith(RULES_OPTION) && option.length() > RULES_OPTION.length()) {
+                    rulesFile = Path.of(option.substring(RULES_OPTION.length()));
+                } else if (option.startsWith(OFFSETS_OPTION) && option.length() > OFFSETS_OPTION.length()) {
+                    offsetsFile = Path.of(option.substring(OFFSETS_OPTION.length()));
+                } else if (option.startsWith(TAIL_WAIT_OPTION)) {
+                    tailWaitMillis = Long.parseLong(option.substring(TAIL_WAIT_OPTION.length()));
+                    if (tailWaitMillis < 0) {
+                        throw new NumberFormatException();
+                    }
+                } else if (option.startsWith(TOP_OPTION)) {
+                    topGroups = Integer.parseInt(option.substring(TOP_OPTION.length()));
+                    if (topGroups < 0) {
+                        throw new NumberFormatException();
+                    }
+                } else {
+                    throw new IllegalArgumentException(option);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        args = Arrays.copyOfRange(args, options, args.length);
+        if (args.length < 2 || args.length > 3
+                || watch && (args.length != 2 || exportFile != null || topGroups > 0 || metrics)
+                || !watch && (offsetsFile != null || tailWaitMillis > 0)) {
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        double taxRate;
+        try {
+            taxRate = Double.parseDouble(args[1]);
+        } catch (NumberFormatException e) {
+            err.println("Error: Please enter a valid tax rate: " + args[1]);
+            return EXIT_USAGE;
+        }
+
+        try {
+            transactionService.setValidationRules(rulesFile != null ? ValidationRules.load(rulesFile) : null);
+        } catch (IllegalArgumentException e) {
+            err.println("Error: Invalid validation rules: " + e.getMessage());
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            err.println("Error: Failed to read validation rules: " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+
+        Path file = Path.of(args[0]);
+        if (!Files.isRegularFile(file) && !Files.isDirectory(file)) {
+            err.println("Error: File does not exist: " + file);
+            return EXIT_IO_ERROR;
+        }
+
+        if (jmx) {
+            transactionService.getMetrics().registerMBeans();
+        }
+
+        if (watch) {
+            if (!Files.isDirectory(file)) {
+                err.println("Error: Not a folder: " + file);
+                return EXIT_IO_ERROR;
+            }
+            return watchFolder(file, taxRate, out, err);
+        }
+
+        try {
+            String report = Files.isDirectory(file) ? processFolder(file, taxRate) : process(file, taxRate);
+            if (metrics) {
+                report += "Metrics:" + System.lineSeparator() + transactionService.getMetrics().dump();
+            }
+            if (args.length == 3) {
+                Files.writeString(Path.of(args[2]), report);
+            } else {
+                out.print(report);
+            }
+            return EXIT_OK;
+        } catch (IOException e) {
+            err.println("Error: Failed to process file: " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    /**
+     * Runs import, validation, profit, zero-profit removal and tax for one file
+     * and returns the summary report, followed by the export and top groups when requested.
+     */
+    String process(Path file, double taxRate) throws IOException {
+        TransactionBatch batch = transactionService.importTransactionBatch(file.toString(), threads);
+        int imported = batch.size();
+
+        transactionService.validateTransactions(batch, threads);
+        int valid = batch.countValid();
+
+        transactionService.calculateProfits(batch);
+        transactionService.removeZeroProfitTransactions(batch);
+        TaxCalculationResult result = transactionService.calculateTax(batch, taxRate);
+        exportRows(batch);
+
+        StringBuilder report = new StringBuilder();
+        report.append("File: ").append(file).append(System.lineSeparator());
+        report.append(String.format("Total: %d, Valid: %d, Invalid: %d%n", imported, valid, imported - valid));
+        report.append(String.format("Zero profit removed: %d%n", imported - batch.size()));
+        appendTotals(report, result, taxRate);
+        appendTopGroups(report, batch, taxRate);
+        return report.toString();
+    }
+
+    /**
+     * Runs the pipeline for every CSV file of a folder, several files at a time, and returns
+     * the consolidated report with a line per file, followed by the export and top groups
+     * of all files together when requested.
+     */
+    String processFolder(Path folder, double taxRate) throws IOException {
+        List<Path> files = MultiFileTaxCalculator.findFiles(folder, "*.csv");
+        boolean keepRows = exportFile != null || topGroups > 0;
+        ConsolidatedResult result = new MultiFileTaxCalculator(transactionService, threads)
+                .calculate(files, taxRate, keepRows);
+
+        StringBuilder report = new StringBuilder();
+        report.append("Folder: ").append(folder).append(System.lineSeparator());
+        report.append(String.format("Files: %d, Failed: %d%n", files.size(), result.getFailedCount()));
+        for (FileTotal file : result.getFiles()) {
+            if (file.isFailed()) {
+                report.append(String.format("  %s: Failed: %s%n", file.getFile().getFileName(), file.getError()));
+            } else {
+                report.append(String.format("  %s: Total: %d, Valid: %d, Net Profit: Rs.%.2f, Tax Due: Rs.%.2f%n",
+                        file.getFile().getFileName(), file.getRowCount(), file.getValidCount(),
+                        file.getNetProfit(), file.getTax()));
+            }
+        }
+        report.append(String.format("Total: %d, Valid: %d, Invalid: %d%n", result.getRowCount(),
+                result.getValidCount(), result.getRowCount() - result.getValidCount()));
+        appendTotals(report, result, taxRate);
+
+        if (keepRows) {
+            TransactionBatch batch = result.getRows();
+            transactionService.removeZeroProfitTransactions(batch);
+            exportRows(batch);
+            appendTopGroups(report, batch, taxRate);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Ingests the CSV files of a folder and then the lines appended to them, printing
+     * the running totals after every change, until the folder is deleted or the thread interrupted.
+     */
+    int watchFolder(Path folder, double taxRate, PrintStream out, PrintStream err) {
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, folder, "*.csv")) {
+            if (offsetsFile != null && Files.exists(offsetsFile)) {
+                watcher.loadOffsets(offsetsFile);
+            }
+            watcher.setTailWait(tailWaitMillis);
+            watcher.setListener((file, rows) -> {
+                saveOffsets(watcher, err);
+                TaxCalculationResult totals = watcher.getTotals(taxRate);
+                out.printf("%s: %d new transactions; Total: %d, Valid: %d, Net Profit: Rs.%.2f, Tax Due: Rs.%.2f%n",
+                        file.getFileName(), rows, watcher.getRowCount(), watcher.getValidCount(),
+                        totals.getNetProfit(), totals.getTax());
+                out.flush();
+            });
+            out.println("Watching " + folder + " for transactions...");
+            watcher.watch();
+            return EXIT_OK;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_OK;
+        } catch (IOException e) {
+            err.println("Error: Failed to watch folder: " + e.getMessage());
+            return EXIT_IO_ERROR;
+        }
+    }
+
+    private void saveOffsets(TransactionFolderWatcher watcher, PrintStream err) {
+        if (offsetsFile != null) {
+            try {
+                watcher.saveOffsets(offsetsFile);
+            } catch (IOException e) {
+                // Keep watching; the next change tries again
+                err.println("Error: Failed to save offsets: " + e.getMessage());
+            }
+        }
+    }
+
+    private void exportRows(TransactionBatch batch) throws IOException {
+        if (exportFile != null) {
+            transactionService.exportTransactions(batch, exportFile.toString(),
+                    exportFile.getFileName().toString().endsWith(".gz"));
+        }
+    }
+
+    private static void appendTotals(StringBuilder report, TaxCalculationResult result, double taxRate) {
+        report.append(String.format("Total Profit: Rs.%.2f%n", result.getTotalProfit()));
+        report.append(String.format("Total Loss: Rs.%.2f%n", result.getTotalLoss()));
+        report.append(String.format("Net Profit: Rs.%.2f%n", result.getNetProfit()));
+        report.append(String.format("Tax Due: Rs.%.2f (%.2f%% of Rs.%.2f)%n",
+                result.getTax(), taxRate, result.getNetProfit()));
+    }
+
+    private void appendTopGroups(StringBuilder report, TransactionBatch batch, double taxRate) {
+        if (topGroups > 0) {
+            appendTopGroups(report, "item codes", transactionService.aggregateByItemCode(batch, threads), taxRate);
+            appendTopGroups(report, "bills", transactionService.aggregateByBillNumber(batch, threads), taxRate);
+        }
+    }
+
+    private void appendTopGroups(StringBuilder report, String name, GroupAggregator groups, double taxRate) {
+        report.append(String.format("Top %d %s by net profit:%n", topGroups, name));
+        for (GroupTotal group : groups.top(topGroups, taxRate)) {
+            report.append(String.format("  %s: %d transactions, Net Profit: Rs.%.2f, Tax Due: Rs.%.2f%n",
+                    group.getKey(), group.getCount(), group.getNetProfit(), group.getTax()));
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.iit;
+
+import javafx.collections.ObservableListBase;
+import service.TransactionBatch;
+import service.TransactionService;
+
+import java.util.Arrays;
+
+/**
+ * Observable list view of a {@link TransactionBatch} for the transactions table.
+ * <p>
+ * Rows stay in the batch's primitive columns and a {@link Transaction} is only
+ * created when a row is requested, which for a table means the visible rows.
+ * Created views are kept in a small direct-mapped cache and replaced as the
+ * user scrolls, so memory use does not grow with the number of rows.
+ * <p>
+ * Views are snapshots: after the batch is changed directly, e.g. by
+ * validating it, call {@link #invalidateViews()} and refresh the table.
+ * {@link #set(int, Transaction)} and {@link #remove(int)} write through to the
+ * batch and fire the usual list changes. They can also change the duplicate mark
+ * of other rows with the same bill number, so the table should be refreshed.
+ * <p>
+ * A list can also show only some rows of the batch, e.g. the results of a search,
+ * or the rows in another order, e.g. sorted by a column, given as row numbers.
+ */
+class LazyTransactionList extends ObservableListBase<Transaction> {
+    private static final int CACHE_SIZE = 1024;
+
+    private final TransactionBatch batch;
+    private final TransactionService transactionService;
+    // Cached view per slot and the row it was created for
+    private final Transaction[] views = new Transaction[CACHE_SIZE];
+    private final int[] viewRows = new int[CACHE_SIZE];
+    // Batch rows shown, or null for all rows
+    private int[] rows;
+    private int rowCount;
+
+    LazyTransactionList(TransactionBatch batch, TransactionService transactionService) {
+        this(batch, transactionService, null);
+    }
+
+    /**
+     * Creates a list of the given rows of the batch, in the given order, or of all rows when null.
+     */
+    LazyTransactionList(TransactionBatch batch, TransactionService transactionService, int[] rows) {
+        this.batch = batch;
+        this.transactionService = transactionService;
+        this.rows = rows;
+        this.rowCount = rows == null ? 0 : rows.length;
+    }
+
+    TransactionBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Returns true when the list shows given rows of the batch rather than all rows in batch order.
+     */
+    boolean isFiltered() {
+        return rows != null;
+    }
+
+    /**
+     * Returns the batch rows shown, in list order, or null when the list shows all rows in batch order.
+     */
+    int[] getRows() {
+        return rows == null ? null : Arrays.copyOf(rows, rowCount);
+    }
+
+    // Batch row shown at a list index
+    private int batchRow(int index) {
+        if (rows == null) {
+            return index;
+        }
+        if (index < 0 || index >= rowCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + rowCount);
+        }
+        return rows[index];
+    }
+
+    @Override
+    public Transaction get(int index) {
+        int slot = index & (CACHE_SIZE - 1);
+        Transaction view = views[slot];
+        if (view == null || viewRows[slot] != index) {
+            view = transactionService.toTransaction(batch, batchRow(index));
+            views[slot] = view;
+            viewRows[slot] = index;
+        }
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return rows == null ? batch.size() : rowCount;
+    }
+
+    /**
+     * Replaces a row of the batch with the fields, profit and validation of the transaction.
+     */
+    @Override
+    public Transaction set(int index, Transaction transaction) {
+        Transaction old = get(index);
+        transactionService.updateRow(batch, batchRow(index), transaction);
+        // Rows with the same bill number may have gained or lost their duplicate mark
+        invalidateViews();
+
+        beginChange();
+        nextSet(index, old);
+        endChange();
+        return old;
+    }
+
+    /**
+     * Removes a row from the batch.
+     */
+    @Override
+    public Transaction remove(int index) {
+        Transaction old = get(index);
+        int row = batchRow(index);
+        transactionService.removeRow(batch, row);
+        if (rows != null) {
+            System.arraycopy(rows, index + 1, rows, index, rowCount - index - 1);
+            rowCount--;
+            // Later rows of the batch have moved up by one
+            for (int i = 0; i < rowCount; i++) {
+                if (rows[i] > row) {
+                    rows[i]--;
+                }
+            }
+        }
+        // Every row after the removed one has moved
+        invalidateViews();
+
+        beginChange();
+        nextRemove(index, old);
+        endChange();
+        return old;
+    }
+
+    /**
+     * Reports rows in [from, to) appended to the batch directly, e.g. by an import
+     * in progress. A list of given rows keeps showing only those.
+     */
+    void rowsAdded(int from, int to) {
+        if (rows == null && from < to) {
+            beginChange();
+            nextAdd(from, to);
+            endChange();
+        }
+    }
+
+    /**
+     * Drops all cached views so the next access reads the batch again.
+     */
+    void invalidateViews() {
+        Arrays.fill(views, null);
+    }
+}
@@ -1,21 +1,37 @@
 package org.iit;
-import javafx.collections.ListChangeListener;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import org.iit.TransactionRowSorter.Column;
+import org.iit.TransactionRowSorter.SortKey;
+import service.MultiFileTaxCalculator;
+import service.MultiFileTaxCalculator.ConsolidatedResult;
+import service.MultiFileTaxCalculator.FileTotal;
+import service.TransactionBatch;
+import service.TransactionIndex;
 import service.TransactionService;
+import service.TransactionService.RowUpdate;
 import service.TransactionService.TaxCalculationResult;
+import service.ValidationCode;
+import service.ValidationRules;
 
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.GridPane;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 //import javafx.util.Callback;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 /**
  * Controller class for the main application view.
@@ -50,12 +66,40 @@ public class MainController {
     @FXML private Label totalLossLabel;
     @FXML private Label netProfitLabel;
     @FXML private Label netProfitSummaryLabel;
+    @FXML private ProgressBar taskProgressBar;
+    @FXML private Label taskStatusLabel;
+    @FXML private Button cancelTaskButton;
+    @FXML private TextField billSearchField;
+    @FXML private TextField itemCodeSearchField;
+    @FXML private TextField minProfitField;
+    @FXML private TextField maxProfitField;
+    @FXML private CheckBox invalidOnlyCheckBox;
 
 
     // Service layer for business logic
     private final TransactionService transactionService = new TransactionService();
-    // Observable list to hold transaction data for the table
-    ObservableList<Transaction> transactions = FXCollections.observableArrayList();
+    // Rows of the current file and the lazily created table view of them
+    private TransactionBatch batch = new TransactionBatch();
+    LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+    // Rows processed between progress updates by background operations
+    private static final int CHUNK_SIZE = 10_000;
+    private final int threads = Runtime.getRuntime().availableProcessors();
+    // Validation rules read from the working directory at start-up when present
+    private static final Path VALIDATION_RULES_FILE = Path.of("validation.properties");
+    // Background operation in progress, if any; only used on the FX Application Thread
+    private Task<?> currentTask;
+    // Set before a task is started and cleared once its thread has finished
+    private boolean taskRunning;
+    // Search indexes of the batch, rebuilt once it has changed
+    private TransactionIndex index;
+    // Batch column of each sortable table column
+    private Map<TableColumn<Transaction, ?>, Column> sortColumns;
+    // Whether the table shows search results, and whether it shows them in the order of sorted columns
+    private boolean searchResultsShown;
+    private boolean sortedView;
+    // Running counts and net profit of the transactions
+    private TransactionSummary summary;
+    private boolean summaryUpdateScheduled;
 
     /**
      * Initializes the controller after FXML loading.
@@ -63,10 +107,20 @@ public class MainController {
      */
     @FXML
     private void initialize() {
+        // Publish stage timings to JMX consoles such as JConsole
+        transactionService.getMetrics().registerMBeans();
+        loadValidationRules();
+
         // Configure the table view
-        transactionsTable.setItems(transactions);
+        showBatch(batch);
         transactionsTable.setEditable(true);
         transactionsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        // Sorting reorders the rows shown rather than the batch
+        sortColumns = Map.of(billNumberColumn, Column.BILL_NUMBER, itemCodeColumn, Column.ITEM_CODE,
+                internalPriceColumn, Column.INTERNAL_PRICE, salePriceColumn, Column.SALE_PRICE,
+                quantityColumn, Column.QUANTITY, discountColumn, Column.DISCOUNT, checksumColumn, Column.CHECKSUM,
+                profitColumn, Column.PROFIT, statusColumn, Column.STATUS);
+        transactionsTable.setSortPolicy(table -> sortRows());
 
         // Set cell value factories using PropertyValueFactory
         // Bind table columns to Transaction properties
@@ -88,6 +142,23 @@ public class MainController {
 
     }
 
+    /**
+     * Uses the validation rules in validation.properties when the file exists,
+     * keeping the default rules when it cannot be read.
+     */
+    private void loadValidationRules() {
+        if (!Files.isRegularFile(VALIDATION_RULES_FILE)) {
+            return;
+        }
+        try {
+            transactionService.setValidationRules(ValidationRules.load(VALIDATION_RULES_FILE));
+        } catch (IOException | IllegalArgumentException e) {
+            // The window is not showing yet
+            Platform.runLater(() -> showAlert("Error", "Invalid validation rules in "
+                    + VALIDATION_RULES_FILE.toAbsolutePath() + ": " + e.getMessage()));
+        }
+    }
+
     /**
      * Handles the browse button click to select a transaction file.
      */
@@ -118,29 +189,223 @@ public class MainController {
             return;
         }
 
-        try {
-            // Import transactions and update the table
-            List<Transaction> imported = transactionService.importTransactionsFromFile(filePath);
-            transactions.setAll(imported);
+        if (isTaskRunning()) {
+            return;
+        }
+
+        // Parse columnar chunks on background threads and show each chunk as soon as it is
+        // parsed; only the FX Application Thread adds them to the batch the table shows
+        boolean[] shown = {false};
+        Task<Long> task = new Task<>() {
+            @Override
+            protected Long call() throws IOException {
+                long start = System.nanoTime();
+                long[] imported = {0};
+                updateProgress(-1, 1);
+                updateMessage("Importing " + file.getName() + "...");
+                return transactionService.importTransactionBatches(filePath, threads, chunk -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    Platform.runLater(() -> {
+                        if (shown[0]) {
+                            appendRows(chunk);
+                        } else {
+                            shown[0] = true;
+                            showBatch(chunk);
+                        }
+                    });
+                    imported[0] += chunk.size();
+                    updateMessage(progressMessage("Imported", imported[0], -1, start));
+                });
+            }
+        };
+        runTask(task, imported -> {
+            if (!shown[0]) {
+                showBatch(new TransactionBatch());
+            }
             importStatusLabel.setText("Successfully imported " + transactions.size() + " transactions.");
-            updateSummary();
-        } catch (IOException e) {
-            showAlert("Error", "Failed to read file: " + e.getMessage());
+        }, e -> showAlert("Error", "Failed to read file: " + e.getMessage()));
+    }
+
+    /**
+     * Imports every CSV file of a folder, e.g. one file per branch, and shows all
+     * their transactions together. Files are validated and calculated in parallel.
+     */
+    @FXML
+    private void handleImportFolder() {
+        DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Open Transaction Folder");
+        File directory = directoryChooser.showDialog(filePathField.getScene().getWindow());
+        if (directory == null || isTaskRunning()) {
+            return;
+        }
+
+        Task<ConsolidatedResult> task = new Task<>() {
+            @Override
+            protected ConsolidatedResult call() throws IOException {
+                updateProgress(-1, 1);
+                List<Path> files = MultiFileTaxCalculator.findFiles(directory.toPath(), "*.csv");
+                updateMessage("Importing " + files.size() + " files from " + directory.getName() + "...");
+                // The tax rate is applied later from the Calculate Tax tab
+                return new MultiFileTaxCalculator(transactionService, threads).calculate(files, 0, true);
+            }
+        };
+        runTask(task, result -> {
+            filePathField.setText(directory.getAbsolutePath());
+            showBatch(result.getRows());
+            importStatusLabel.setText(String.format("Successfully imported %d transactions from %d files (%d failed).",
+                    transactions.size(), result.getFiles().size(), result.getFailedCount()));
+            showFileBreakdown(result);
+        }, e -> showAlert("Error", "Failed to read folder: " + e.getMessage()));
+    }
+
+    /**
+     * Shows the rows, valid rows and net profit of every imported file.
+     */
+    private void showFileBreakdown(ConsolidatedResult result) {
+        StringBuilder breakdown = new StringBuilder();
+        for (FileTotal file : result.getFiles()) {
+            breakdown.append(file.getFile().getFileName()).append(": ");
+            if (file.isFailed()) {
+                breakdown.append("Failed: ").append(file.getError());
+            } else {
+                breakdown.append(String.format("%,d transactions, %,d valid, Net Profit: Rs.%.2f",
+                        file.getRowCount(), file.getValidCount(), file.getNetProfit()));
+            }
+            breakdown.append(System.lineSeparator());
+        }
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Folder Imported");
+        alert.setHeaderText(String.format("%,d transactions from %d files, Net Profit: Rs.%.2f",
+                result.getRowCount(), result.getFiles().size(), result.getNetProfit()));
+        TextArea details = new TextArea(breakdown.toString());
+        details.setEditable(false);
+        alert.getDialogPane().setContent(details);
+        alert.showAndWait();
+    }
+
+    /**
+     * Shows only the rows matching every filled-in search field. The indexes are
+     * built in the background the first time and after the batch has changed.
+     */
+    @FXML
+    private void handleSearch() {
+        double minProfit;
+        double maxProfit;
+        try {
+            minProfit = parseProfitBound(minProfitField, Double.NEGATIVE_INFINITY);
+            maxProfit = parseProfitBound(maxProfitField, Double.POSITIVE_INFINITY);
+        } catch (NumberFormatException e) {
+            showAlert("Error", "Please enter valid numbers for the profit range.");
+            return;
+        }
+
+        if (index != null && index.getBatch() == batch && index.isCurrent()) {
+            showSearchResults(minProfit, maxProfit);
+            return;
         }
+        if (isTaskRunning()) {
+            return;
+        }
+        TransactionBatch rows = batch;
+        Task<TransactionIndex> task = new Task<>() {
+            @Override
+            protected TransactionIndex call() {
+                updateProgress(-1, 1);
+                updateMessage("Indexing " + String.format("%,d", rows.size()) + " rows...");
+                return transactionService.indexTransactions(rows);
+            }
+        };
+        runTask(task, built -> {
+            index = built;
+            showSearchResults(minProfit, maxProfit);
+        }, e -> showAlert("Error", "Search failed: " + e.getMessage()));
     }
 
     /**
-     * Validates all transactions in the table.
+     * Clears the search fields and shows all rows again.
+     */
+    @FXML
+    private void handleClearSearch() {
+        billSearchField.clear();
+        itemCodeSearchField.clear();
+        minProfitField.clear();
+        maxProfitField.clear();
+        invalidOnlyCheckBox.setSelected(false);
+        showRows(null);
+    }
+
+    private void showSearchResults(double minProfit, double maxProfit) {
+        long start = System.nanoTime();
+        int[] rows = null;
+        String billNumber = billSearchField.getText().trim();
+        if (!billNumber.isEmpty()) {
+            rows = index.findByBillNumber(billNumber);
+        }
+        String itemCodePrefix = itemCodeSearchField.getText().trim();
+        if (!itemCodePrefix.isEmpty()) {
+            rows = combine(rows, index.findByItemCodePrefix(itemCodePrefix));
+        }
+        if (minProfit > Double.NEGATIVE_INFINITY || maxProfit < Double.POSITIVE_INFINITY) {
+            rows = combine(rows, index.findByProfitRange(minProfit, maxProfit));
+        }
+        if (invalidOnlyCheckBox.isSelected()) {
+            rows = combine(rows, index.findInvalid());
+        }
+        showRows(rows);
+        if (rows != null) {
+            taskStatusLabel.setText(String.format("Found %,d of %,d rows in %.1f ms.", rows.length, batch.size(),
+                    (System.nanoTime() - start) / 1e6));
+        }
+    }
+
+    private static int[] combine(int[] rows, int[] matches) {
+        return rows == null ? matches : TransactionIndex.intersect(rows, matches);
+    }
+
+    private static double parseProfitBound(TextField field, double unbounded) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? unbounded : Double.parseDouble(text);
+    }
+
+    /**
+     * Shows the calls, rows and timings of every processing stage so far.
+     */
+    @FXML
+    private void handleShowMetrics() {
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Metrics");
+        alert.setHeaderText("Processing stages");
+        TextArea details = new TextArea(transactionService.getMetrics().dump());
+        details.setEditable(false);
+        details.setStyle("-fx-font-family: monospace;");
+        details.setPrefColumnCount(130);
+        alert.getDialogPane().setContent(details);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
+    /**
+     * Validates the transactions added or edited since the last validation.
      */
     @FXML
     void handleValidate() {
-        transactionService.validateTransactions(transactions);
-        updateSummary();
+        if (isTaskRunning()) {
+            return;
+        }
 
-        // Show validation results
-        long validCount = transactions.stream().filter(t -> t.getStatus().startsWith("Valid")).count();
-        long invalidCount = transactions.size() - validCount;
-        showAlert("Validation Complete", "Valid records: " + validCount + "\nInvalid records: " + invalidCount);
+        runTask(rowTask("Validated", transactionService.revalidateChangedRowsLater(batch)), ignored -> {
+            // Show validation results
+            int validCount = summary.getValid();
+            int invalidCount = summary.getInvalid();
+            if (transactionService.getChecksumCache() != null) {
+                taskStatusLabel.setText(String.format("Checksum cache hit rate: %.1f%%",
+                        transactionService.getChecksumCache().getHitRate() * 100));
+            }
+            showAlert("Validation Complete", "Valid records: " + validCount + "\nInvalid records: " + invalidCount);
+        }, e -> showAlert("Error", "Validation failed: " + e.getMessage()));
     }
 
 
@@ -150,7 +415,7 @@ public class MainController {
     @FXML
     private void handleEdit() {
         Transaction selectedTransaction = transactionsTable.getSelectionModel().getSelectedItem();
-        if (selectedTransaction == null) return;
+        if (selectedTransaction == null || isTaskRunning()) return;
 
         // Create a dialog to edit the transaction
         Dialog<Transaction> dialog = new Dialog<>();
@@ -205,7 +470,7 @@ public class MainController {
                     Transaction updatedTransaction = new Transaction(
                             billNumber, itemCode, internalPrice, salePrice, quantity, discount, 0);
                     updatedTransaction.setChecksum(transactionService.calculateChecksum(updatedTransaction));
-                    updatedTransaction.setStatus("Valid"); // Assume edited records are valid
+                    updatedTransaction.setValidation(ValidationCode.VALID, updatedTransaction.getChecksum()); // Assume edited records are valid
 
                     // Calculate profit if it was already calculated
                     if (selectedTransaction.getProfit() != null) {
@@ -227,7 +492,7 @@ public class MainController {
         result.ifPresent(updatedTransaction -> {
             int selectedIndex = transactionsTable.getSelectionModel().getSelectedIndex();
             transactions.set(selectedIndex, updatedTransaction);
-            updateSummary();
+            transactionsTable.refresh();
         });
     }
 
@@ -236,21 +501,25 @@ public class MainController {
      */
     @FXML
     private void handleDelete() {
-        Transaction selectedTransaction = transactionsTable.getSelectionModel().getSelectedItem();
-        if (selectedTransaction != null) {
-            transactions.remove(selectedTransaction);
-            updateSummary();
+        int selectedIndex = transactionsTable.getSelectionModel().getSelectedIndex();
+        if (selectedIndex >= 0 && !isTaskRunning()) {
+            transactions.remove(selectedIndex);
+            transactionsTable.refresh();
         }
     }
 
     /**
-     * Calculates profit for all transactions.
+     * Calculates profit for the transactions added or edited since profit was last calculated.
      */
     @FXML
     void handleCalculateProfit() {
-        transactionService.calculateProfits(transactions);
-        transactionsTable.refresh();
-        updateSummary();
+        if (isTaskRunning()) {
+            return;
+        }
+
+        runTask(rowTask("Calculated profit for", transactionService.recalculateChangedProfitsLater(batch)),
+                ignored -> taskStatusLabel.setText(String.format("Calculated profit for %,d rows.", summary.getTotal())),
+                e -> showAlert("Error", "Profit calculation failed: " + e.getMessage()));
     }
 
     /**
@@ -258,14 +527,30 @@ public class MainController {
      */
     @FXML
     void handleRemoveZeroProfit() {
-        if (transactions.stream().noneMatch(t -> t.getProfit() != null)) {
+        if (transactions.isEmpty()) {
             showAlert("Error", "Please calculate profit first.");
             return;
         }
 
-        transactionService.removeZeroProfitTransactions(transactions);
-        updateSummary();
-        showAlert("Success", "Removed all transactions with zero profit.");
+        if (isTaskRunning()) {
+            return;
+        }
+
+        // Copies the remaining rows in the background while the table keeps showing the
+        // batch, then shows the copy in its place
+        TransactionBatch rows = batch;
+        Task<TransactionBatch> task = new Task<>() {
+            @Override
+            protected TransactionBatch call() {
+                updateProgress(-1, 1);
+                updateMessage("Removing zero profit rows of " + String.format("%,d", rows.size()) + " rows...");
+                return transactionService.copyWithoutZeroProfitTransactions(rows);
+            }
+        };
+        runTask(task, remaining -> {
+            showBatch(remaining);
+            showAlert("Success", "Removed all transactions with zero profit.");
+        }, e -> showAlert("Error", "Failed to remove zero profit transactions: " + e.getMessage()));
     }
 
     /**
@@ -276,19 +561,32 @@ public class MainController {
         try {
             double taxRate = Double.parseDouble(taxRateField.getText());
 
-            if (transactions.stream().noneMatch(t -> t.getProfit() != null)) {
+            if (transactions.isEmpty()) {
                 showAlert("Error", "Please calculate profit first.");
                 return;
             }
 
-            // Calculate tax and update UI
-            TaxCalculationResult result = transactionService.calculateTax(transactions, taxRate);
+            if (isTaskRunning()) {
+                return;
+            }
 
-            totalProfitLabel.setText(String.format("Total Profit: Rs.%.2f", result.getTotalProfit()));
-            totalLossLabel.setText(String.format("Total Loss: Rs.%.2f", result.getTotalLoss()));
-            netProfitLabel.setText(String.format("Net Profit: Rs.%.2f", result.getNetProfit()));
-            taxResultLabel.setText(String.format("Tax Due: Rs.%.2f (%.2f%% of Rs.%.2f)",
-                    result.getTax(), taxRate, result.getNetProfit()));
+            // Calculate tax on the batch in the background and update UI
+            TransactionBatch rows = batch;
+            Task<TaxCalculationResult> task = new Task<>() {
+                @Override
+                protected TaxCalculationResult call() {
+                    updateProgress(-1, 1);
+                    updateMessage("Calculating tax for " + String.format("%,d", rows.size()) + " rows...");
+                    return transactionService.calculateTax(rows, taxRate);
+                }
+            };
+            runTask(task, result -> {
+                totalProfitLabel.setText(String.format("Total Profit: Rs.%.2f", result.getTotalProfit()));
+                totalLossLabel.setText(String.format("Total Loss: Rs.%.2f", result.getTotalLoss()));
+                netProfitLabel.setText(String.format("Net Profit: Rs.%.2f", result.getNetProfit()));
+                taxResultLabel.setText(String.format("Tax Due: Rs.%.2f (%.2f%% of Rs.%.2f)",
+                        result.getTax(), taxRate, result.getNetProfit()));
+            }, e -> showAlert("Error", "Tax calculation failed: " + e.getMessage()));
         } catch (NumberFormatException e) {
             showAlert("Error", "Please enter a valid tax rate.");
         }
@@ -306,55 +604,266 @@ public class MainController {
 
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Save Transactions to CSV");
-        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV Files", "*.csv"),
+                new FileChooser.ExtensionFilter("Compressed CSV Files", "*.csv.gz"));
         File file = fileChooser.showSaveDialog(filePathField.getScene().getWindow());
 
-        if (file != null) {
-            try (PrintWriter writer = new PrintWriter(file)) {
-                // Write header
-                writer.println("BillNumber,ItemCode,InternalPrice,SalePrice,Quantity,Discount,Checksum");
-
-                // Write data
-                for (Transaction transaction : transactions) {
-                    writer.println(String.format("%s,%s,%.2f,%.2f,%d,%.2f,%d",
-                            transaction.getBillNumber(),
-                            transaction.getItemCode(),
-                            transaction.getInternalPrice(),
-                            transaction.getSalePrice(),
-                            transaction.getQuantity(),
-                            transaction.getDiscount(),
-                            transaction.getChecksum()));
+        if (file != null && !isTaskRunning()) {
+            // Write the batch columns in the background, compressed for .gz files
+            boolean gzip = file.getName().endsWith(".gz");
+            TransactionBatch rows = batch;
+            Task<Void> task = new Task<>() {
+                @Override
+                protected Void call() throws IOException {
+                    updateProgress(-1, 1);
+                    updateMessage("Saving " + String.format("%,d", rows.size()) + " rows...");
+                    transactionService.exportTransactions(rows, file.getPath(), gzip);
+                    return null;
                 }
+            };
+            runTask(task, ignored -> showAlert("Success", "Transactions saved successfully to: " + file.getAbsolutePath()),
+                    e -> showAlert("Error", "Failed to save file: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Cancels the running background operation.
+     */
+    @FXML
+    private void handleCancelTask() {
+        if (currentTask != null) {
+            currentTask.cancel();
+        }
+    }
+
+    /**
+     * Returns true, after telling the user, when another operation is still running.
+     */
+    private boolean isTaskRunning() {
+        if (taskRunning) {
+            showAlert("Busy", "Please wait for the current operation to finish or cancel it.");
+            return true;
+        }
+        return false;
+    }
 
-                showAlert("Success", "Transactions saved successfully to: " + file.getAbsolutePath());
-            } catch (IOException e) {
-                showAlert("Error", "Failed to save file: " + e.getMessage());
+    /**
+     * Runs a task on a background thread, showing its progress in the status bar.
+     * The callbacks run on the FX Application Thread once the thread has finished,
+     * so a cancelled task never overlaps the next one.
+     */
+    private <T> void runTask(Task<T> task, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        taskRunning = true;
+        currentTask = task;
+        taskProgressBar.progressProperty().bind(task.progressProperty());
+        taskStatusLabel.textProperty().bind(task.messageProperty());
+        cancelTaskButton.setDisable(false);
+
+        Thread.ofVirtual().name("transaction-task").start(() -> {
+            task.run();
+            // Queued after the task's own state updates, so its state is final here
+            Platform.runLater(() -> {
+                finishTask();
+                switch (task.getState()) {
+                    case SUCCEEDED -> onSuccess.accept(task.getValue());
+                    case FAILED -> onFailure.accept(task.getException());
+                    default -> taskStatusLabel.setText("Cancelled.");
+                }
+            });
+        });
+    }
+
+    private void finishTask() {
+        // Rows changed by the task are shown from the batch again
+        refreshViews();
+
+        taskProgressBar.progressProperty().unbind();
+        taskStatusLabel.textProperty().unbind();
+        taskProgressBar.setProgress(0);
+        taskStatusLabel.setText("Ready.");
+        cancelTaskButton.setDisable(true);
+        currentTask = null;
+        taskRunning = false;
+    }
+
+    /**
+     * Creates a task that works through the rows of the current batch in chunks in the
+     * background. The background thread only reads the batch; the results of each chunk
+     * are stored on the FX Application Thread, the only thread that changes or reads the
+     * batch for the table and summary, which then show the chunk.
+     */
+    private Task<Void> rowTask(String action, RowUpdate update) {
+        int size = batch.size();
+        return new Task<>() {
+            @Override
+            protected Void call() {
+                long start = System.nanoTime();
+                for (int from = 0; from < size && !isCancelled(); from += CHUNK_SIZE) {
+                    int to = Math.min(size, from + CHUNK_SIZE);
+                    Runnable store = update.compute(from, to);
+                    Platform.runLater(() -> {
+                        store.run();
+                        refreshViews();
+                    });
+                    updateProgress(to, size);
+                    updateMessage(progressMessage(action, to, size, start));
+                }
+                return null;
             }
+        };
+    }
+
+    // Shows rows changed in the batch; the summary reads the batch's running counts
+    private void refreshViews() {
+        transactions.invalidateViews();
+        transactionsTable.refresh();
+        scheduleSummaryUpdate();
+    }
+
+    /**
+     * Formats a progress message with the processing rate, e.g. "Validated 20,000 of 50,000 rows (1,234 rows/s)".
+     */
+    private static String progressMessage(String action, long done, long total, long startNanos) {
+        double seconds = Math.max((System.nanoTime() - startNanos) / 1e9, 1e-3);
+        String count = total < 0 ? String.format("%,d", done) : String.format("%,d of %,d", done, total);
+        return String.format("%s %s rows (%,.0f rows/s)", action, count, done / seconds);
+    }
+
+    /**
+     * Shows the rows of a batch in the table and starts summarising them.
+     */
+    private void showBatch(TransactionBatch newBatch) {
+        batch = newBatch;
+        showRows(null);
+    }
+
+    /**
+     * Shows the given rows of the batch in the table, or all rows when null, in batch order.
+     * The summary always covers the whole batch.
+     */
+    private void showRows(int[] rows) {
+        searchResultsShown = rows != null;
+        sortedView = false;
+        display(rows);
+        // The new rows are not sorted, so no column may show a sort arrow
+        transactionsTable.getSortOrder().clear();
+    }
+
+    // Shows the rows of the batch in the given order, or all rows in batch order when null
+    private void display(int[] rows) {
+        transactions = new LazyTransactionList(batch, transactionService, rows);
+        transactionsTable.setItems(transactions);
+        summary = new TransactionSummary(transactions, this::scheduleSummaryUpdate);
+    }
+
+    /**
+     * Appends rows imported in the background to the batch shown.
+     */
+    private void appendRows(TransactionBatch rows) {
+        int from = batch.size();
+        batch.addAll(rows);
+        transactions.rowsAdded(from, batch.size());
+    }
+
+    /**
+     * Sort policy of the table: shows the rows in the order of the sorted columns.
+     * The order is worked out in the background as a permutation of the rows
+     * shown, so the batch keeps its file order. A sort by profit alone reads the
+     * radix-sorted profit order of the search index. Returns false, which keeps
+     * the previous order, while another operation is running.
+     */
+    private boolean sortRows() {
+        List<TableColumn<Transaction, ?>> sortOrder = transactionsTable.getSortOrder();
+        if (sortOrder.isEmpty()) {
+            if (sortedView) {
+                // Back to batch order
+                sortedView = false;
+                int[] rows = searchResultsShown ? transactions.getRows() : null;
+                if (rows != null) {
+                    Arrays.sort(rows);
+                }
+                display(rows);
+            }
+            return true;
+        }
+        if (taskRunning) {
+            return false;
         }
+
+        List<SortKey> keys = new ArrayList<>();
+        for (TableColumn<Transaction, ?> column : sortOrder) {
+            keys.add(new SortKey(sortColumns.get(column), column.getSortType() == TableColumn.SortType.DESCENDING));
+        }
+        TransactionBatch rows = batch;
+        // Sorting is stable, so rows that are equal keep the order they are shown in
+        int[] shownRows = transactions.getRows();
+        int count = transactions.size();
+        boolean byProfit = keys.size() == 1 && keys.get(0).column == Column.PROFIT && isAscending(shownRows);
+        TransactionIndex[] profitIndex = {index != null && index.getBatch() == rows && index.isCurrent() ? index : null};
+        Task<int[]> task = new Task<>() {
+            @Override
+            protected int[] call() {
+                updateProgress(-1, 1);
+                updateMessage("Sorting " + String.format("%,d", count) + " rows...");
+                if (byProfit) {
+                    if (profitIndex[0] == null) {
+                        profitIndex[0] = transactionService.indexTransactions(rows);
+                    }
+                    return TransactionRowSorter.sortByProfit(profitIndex[0], shownRows, keys.get(0).descending);
+                }
+                return new TransactionRowSorter(rows).sort(shownRows, keys);
+            }
+        };
+        runTask(task, order -> {
+            if (profitIndex[0] != null) {
+                index = profitIndex[0];
+            }
+            display(order);
+            sortedView = true;
+        }, e -> {
+            transactionsTable.getSortOrder().clear();
+            showAlert("Error", "Sorting failed: " + e.getMessage());
+        });
+        // The sort arrows already show the new order, so the sort has to finish
+        cancelTaskButton.setDisable(true);
+        return true;
+    }
+
+    private static boolean isAscending(int[] rows) {
+        if (rows != null) {
+            for (int i = 1; i < rows.length; i++) {
+                if (rows[i - 1] > rows[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
      * Updates the summary labels with current transaction statistics.
+     * The statistics are kept up to date by the batch, so this is constant time.
      */
     void updateSummary() {
-        // Calculate record counts
-        int total = transactions.size();
-        int valid = (int) transactions.stream().filter(t -> t.getStatus().startsWith("Valid")).count();
-        int invalid = total - valid;
-
-        // Update count labels
-        totalRecordsLabel.setText("Total: " + total);
-        validRecordsLabel.setText("Valid: " + valid);
-        invalidRecordsLabel.setText("Invalid: " + invalid);
-
-        // Calculate and display net profit
-        double netProfit = transactions.stream()
-                .filter(t -> t.getProfit() != null)
-                .mapToDouble(Transaction::getProfit)
-                .sum();
-
-        netProfitSummaryLabel.setText(String.format("Net Profit: Rs.%.2f", netProfit));
-        transactionsTable.refresh();
+        summaryUpdateScheduled = false;
+
+        // Update count labels from the running statistics
+        totalRecordsLabel.setText("Total: " + summary.getTotal());
+        validRecordsLabel.setText("Valid: " + summary.getValid());
+        invalidRecordsLabel.setText("Invalid: " + summary.getInvalid());
+
+        netProfitSummaryLabel.setText(String.format("Net Profit: Rs.%.2f", summary.getNetProfit()));
+    }
+
+    /**
+     * Schedules one label update for any number of statistics changes in the same pulse.
+     */
+    private void scheduleSummaryUpdate() {
+        if (!summaryUpdateScheduled) {
+            summaryUpdateScheduled = true;
+            Platform.runLater(this::updateSummary);
+        }
     }
 
     /**
@@ -1,72 +1,253 @@
 package org.iit;
 
 import javafx.beans.property.*;
+import service.ValidationCode;
 
 /**
  * Model class representing a transaction in the tax system.
- * Uses JavaFX properties for observable data binding.
+ * Uses JavaFX properties for observable data binding. Fields are kept as plain
+ * values and each property is only created when it is first asked for, e.g. by
+ * a visible table cell, so transactions that are never bound stay small.
  */
 public class Transaction {
-    // Properties for transaction data
-    private final StringProperty billNumber;
-    private final StringProperty itemCode;
-    private final DoubleProperty internalPrice;
-    private final DoubleProperty salePrice;
-    private final IntegerProperty quantity;
-    private final DoubleProperty discount;
-    private final IntegerProperty checksum;
-    private final DoubleProperty profit;
-    private final StringProperty status;
+    // Values of the fields, until their properties are created on first use
+    private String billNumberValue;
+    private String itemCodeValue;
+    private double internalPriceValue;
+    private double salePriceValue;
+    private int quantityValue;
+    private double discountValue;
+    private int checksumValue;
+    private double profitValue;
+    private int validationCodeValue = ValidationCode.NOT_VALIDATED;
+    // Properties for transaction data, null until first used
+    private StringProperty billNumber;
+    private StringProperty itemCode;
+    private DoubleProperty internalPrice;
+    private DoubleProperty salePrice;
+    private IntegerProperty quantity;
+    private DoubleProperty discount;
+    private IntegerProperty checksum;
+    private DoubleProperty profit;
+    private ReadOnlyIntegerWrapper validationCode;
+    // Checksum found by the last validation, used to render the status text
+    private int calculatedChecksum;
+    // Free-text status that does not map to a validation code
+    private String statusText;
+    private ReadOnlyStringWrapper status;
 
     /**
      * Constructs a new Transaction with the given parameters.
      */
     public Transaction(String billNumber, String itemCode, double internalPrice, double salePrice, int quantity, double discount, int checksum) {
-        this.billNumber = new SimpleStringProperty(billNumber);
-        this.itemCode = new SimpleStringProperty(itemCode);
-        this.internalPrice = new SimpleDoubleProperty(internalPrice);
-        this.salePrice = new SimpleDoubleProperty(salePrice);
-        this.quantity = new SimpleIntegerProperty(quantity);
-        this.discount = new SimpleDoubleProperty(discount);
-        this.checksum = new SimpleIntegerProperty(checksum);
-        this.profit = new SimpleDoubleProperty();
-        this.status = new SimpleStringProperty("Not validated");
+        this.billNumberValue = billNumber;
+        this.itemCodeValue = itemCode;
+        this.internalPriceValue = internalPrice;
+        this.salePriceValue = salePrice;
+        this.quantityValue = quantity;
+        this.discountValue = discount;
+        this.checksumValue = checksum;
     }
 
     // Getters and setters
-    public String getBillNumber() { return billNumber.get(); }
-    public void setBillNumber(String value) { billNumber.set(value); }
-    public StringProperty billNumberProperty() { return billNumber; }
-
-    public String getItemCode() { return itemCode.get(); }
-    public void setItemCode(String value) { itemCode.set(value); }
-    public StringProperty itemCodeProperty() { return itemCode; }
-
-    public double getInternalPrice() { return internalPrice.get(); }
-    public void setInternalPrice(double value) { internalPrice.set(value); }
-    public DoubleProperty internalPriceProperty() { return internalPrice; }
-
-    public double getSalePrice() { return salePrice.get(); }
-    public void setSalePrice(double value) { salePrice.set(value); }
-    public DoubleProperty salePriceProperty() { return salePrice; }
-
-    public int getQuantity() { return quantity.get(); }
-    public void setQuantity(int value) { quantity.set(value); }
-    public IntegerProperty quantityProperty() { return quantity; }
-
-    public double getDiscount() { return discount.get(); }
-    public void setDiscount(double value) { discount.set(value); }
-    public DoubleProperty discountProperty() { return discount; }
-
-    public int getChecksum() { return checksum.get(); }
-    public void setChecksum(int value) { checksum.set(value); }
-    public IntegerProperty checksumProperty() { return checksum; }
-
-    public Double getProfit() { return profit.get(); }
-    public void setProfit(double value) { profit.set(value); }
-    public DoubleProperty profitProperty() { return profit; }
-
-    public String getStatus() { return status.get(); }
-    public void setStatus(String value) { status.set(value); }
-    public StringProperty statusProperty() { return status; }
-}
\ No newline at end of file
+    public String getBillNumber() { return billNumber == null ? billNumberValue : billNumber.get(); }
+
+    public void setBillNumber(String value) {
+        if (billNumber == null) {
+            billNumberValue = value;
+        } else {
+            billNumber.set(value);
+        }
+    }
+
+    public StringProperty billNumberProperty() {
+        if (billNumber == null) {
+            billNumber = new SimpleStringProperty(this, "billNumber", billNumberValue);
+            billNumberValue = null;
+        }
+        return billNumber;
+    }
+
+    public String getItemCode() { return itemCode == null ? itemCodeValue : itemCode.get(); }
+
+    public void setItemCode(String value) {
+        if (itemCode == null) {
+            itemCodeValue = value;
+        } else {
+            itemCode.set(value);
+        }
+    }
+
+    public StringProperty itemCodeProperty() {
+        if (itemCode == null) {
+            itemCode = new SimpleStringProperty(this, "itemCode", itemCodeValue);
+            itemCodeValue = null;
+        }
+        return itemCode;
+    }
+
+    public double getInternalPrice() { return internalPrice == null ? internalPriceValue : internalPrice.get(); }
+
+    public void setInternalPrice(double value) {
+        if (internalPrice == null) {
+            internalPriceValue = value;
+        } else {
+            internalPrice.set(value);
+        }
+    }
+
+    public DoubleProperty internalPriceProperty() {
+        if (internalPrice == null) {
+            internalPrice = new SimpleDoubleProperty(this, "internalPrice", internalPriceValue);
+        }
+        return internalPrice;
+    }
+
+    public double getSalePrice() { return salePrice == null ? salePriceValue : salePrice.get(); }
+
+    public void setSalePrice(double value) {
+        if (salePrice == null) {
+            salePriceValue = value;
+        } else {
+            salePrice.set(value);
+        }
+    }
+
+    public DoubleProperty salePriceProperty() {
+        if (salePrice == null) {
+            salePrice = new SimpleDoubleProperty(this, "salePrice", salePriceValue);
+        }
+        return salePrice;
+    }
+
+    public int getQuantity() { return quantity == null ? quantityValue : quantity.get(); }
+
+    public void setQuantity(int value) {
+        if (quantity == null) {
+            quantityValue = value;
+        } else {
+            quantity.set(value);
+        }
+    }
+
+    public IntegerProperty quantityProperty() {
+        if (quantity == null) {
+            quantity = new SimpleIntegerProperty(this, "quantity", quantityValue);
+        }
+        return quantity;
+    }
+
+    public double getDiscount() { return discount == null ? discountValue : discount.get(); }
+
+    public void setDiscount(double value) {
+        if (discount == null) {
+            discountValue = value;
+        } else {
+            discount.set(value);
+        }
+    }
+
+    public DoubleProperty discountProperty() {
+        if (discount == null) {
+            discount = new SimpleDoubleProperty(this, "discount", discountValue);
+        }
+        return discount;
+    }
+
+    public int getChecksum() { return checksum == null ? checksumValue : checksum.get(); }
+
+    public void setChecksum(int value) {
+        if (checksum == null) {
+            checksumValue = value;
+        } else {
+            checksum.set(value);
+        }
+        updateStatus();
+    }
+
+    public IntegerProperty checksumProperty() {
+        if (checksum == null) {
+            checksum = new SimpleIntegerProperty(this, "checksum", checksumValue);
+        }
+        return checksum;
+    }
+
+    public Double getProfit() { return profit == null ? profitValue : profit.get(); }
+
+    public void setProfit(double value) {
+        if (profit == null) {
+            profitValue = value;
+        } else {
+            profit.set(value);
+        }
+    }
+
+    public DoubleProperty profitProperty() {
+        if (profit == null) {
+            profit = new SimpleDoubleProperty(this, "profit", profitValue);
+        }
+        return profit;
+    }
+
+    public int getValidationCode() { return validationCode == null ? validationCodeValue : validationCode.get(); }
+
+    public ReadOnlyIntegerProperty validationCodeProperty() {
+        if (validationCode == null) {
+            validationCode = new ReadOnlyIntegerWrapper(this, "validationCode", validationCodeValue);
+        }
+        return validationCode.getReadOnlyProperty();
+    }
+
+    public int getCalculatedChecksum() { return calculatedChecksum; }
+    public boolean isValid() { return ValidationCode.isValid(getValidationCode()); }
+
+    /**
+     * Stores the outcome of validation as a code and the checksum that was calculated.
+     */
+    public void setValidation(int code, int calculatedChecksum) {
+        this.calculatedChecksum = calculatedChecksum;
+        this.statusText = null;
+        setValidationCode(code);
+    }
+
+    /**
+     * Returns the status text, rendered from the validation code.
+     */
+    public String getStatus() {
+        return statusText != null
+                ? statusText : ValidationCode.describe(getValidationCode(), getChecksum(), calculatedChecksum);
+    }
+
+    /**
+     * Sets the status from text. "Valid" and "Not validated" map to their codes,
+     * any other text marks the transaction invalid and is kept as is.
+     */
+    public void setStatus(String value) {
+        int code = ValidationCode.fromStatus(value);
+        this.statusText = code == ValidationCode.OTHER ? value : null;
+        this.calculatedChecksum = getChecksum();
+        setValidationCode(code);
+    }
+
+    public ReadOnlyStringProperty statusProperty() {
+        if (status == null) {
+            status = new ReadOnlyStringWrapper(this, "status", getStatus());
+        }
+        return status.getReadOnlyProperty();
+    }
+
+    private void setValidationCode(int code) {
+        if (validationCode == null) {
+            validationCodeValue = code;
+        } else {
+            validationCode.set(code);
+        }
+        updateStatus();
+    }
+
+    private void updateStatus() {
+        if (status != null) {
+            status.set(getStatus());
+        }
+    }
+}
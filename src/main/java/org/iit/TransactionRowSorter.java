@@ -0,0 +1,220 @@
+package org.iit;
+
+import service.TransactionBatch;
+import service.TransactionIndex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Sorts rows of a {@link TransactionBatch} by the columns of the transactions table.
+ * <p>
+ * The result is the row numbers in their new order, to be shown through a
+ * {@link LazyTransactionList}, so sorting neither rewrites the batch nor creates a
+ * {@link Transaction} per row. Rows compare like their transactions would under
+ * the columns' default comparators, with null first, and the sort is stable, so
+ * rows that compare equal keep their order. A sort by profit alone can instead read
+ * the radix-sorted profit order of a {@link TransactionIndex}.
+ */
+final class TransactionRowSorter {
+    // Runs this short are sorted by insertion before they are merged
+    private static final int RUN_LENGTH = 32;
+
+    /**
+     * Columns of the batch the table can be sorted by.
+     */
+    enum Column {
+        BILL_NUMBER, ITEM_CODE, INTERNAL_PRICE, SALE_PRICE, QUANTITY, DISCOUNT, CHECKSUM, PROFIT, STATUS
+    }
+
+    /**
+     * One column of a sort and its direction.
+     */
+    static final class SortKey {
+        final Column column;
+        final boolean descending;
+
+        SortKey(Column column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+    }
+
+    // Compares two positions in the rows being sorted
+    private interface PositionComparator {
+        int compare(int position, int other);
+    }
+
+    private final TransactionBatch batch;
+
+    TransactionRowSorter(TransactionBatch batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Returns the rows, or all rows of the batch when null, sorted by the keys,
+     * the first key deciding first. The given array is not changed.
+     */
+    int[] sort(int[] rows, List<SortKey> keys) {
+        int count = rows == null ? batch.size() : rows.length;
+        PositionComparator comparator = null;
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            PositionComparator key = comparator(rows, count, keys.get(i));
+            PositionComparator next = comparator;
+            comparator = next == null ? key : (position, other) -> {
+                int result = key.compare(position, other);
+                return result != 0 ? result : next.compare(position, other);
+            };
+        }
+
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = i;
+        }
+        if (comparator != null) {
+            mergeSort(positions, comparator);
+        }
+        if (rows != null) {
+            for (int i = 0; i < count; i++) {
+                positions[i] = rows[positions[i]];
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the rows, or all rows of the batch when null, sorted by profit through
+     * the profit order of a current index of the batch. Rows with equal profits stay
+     * in row order, so the result matches {@link #sort(int[], List)} when the rows
+     * are given in ascending order.
+     */
+    static int[] sortByProfit(TransactionIndex index, int[] rows, boolean descending) {
+        int[] order = index.rowsByProfit();
+        if (rows != null) {
+            long[] shown = new long[(order.length + 63) >>> 6];
+            for (int row : rows) {
+                shown[row >>> 6] |= 1L << row;
+            }
+            int count = 0;
+            for (int row : order) {
+                if ((shown[row >>> 6] & (1L << row)) != 0) {
+                    order[count++] = row;
+                }
+            }
+            order = Arrays.copyOf(order, count);
+        }
+        if (!descending) {
+            return order;
+        }
+
+        // Reversed run by run, so that rows with equal profits keep their order
+        TransactionBatch batch = index.getBatch();
+        int[] reversed = new int[order.length];
+        int filled = 0;
+        for (int end = order.length; end > 0; ) {
+            double profit = batch.getProfit(order[end - 1]);
+            int start = end - 1;
+            while (start > 0 && Double.compare(batch.getProfit(order[start - 1]), profit) == 0) {
+                start--;
+            }
+            System.arraycopy(order, start, reversed, filled, end - start);
+            filled += end - start;
+            end = start;
+        }
+        return reversed;
+    }
+
+    private PositionComparator comparator(int[] rows, int count, SortKey key) {
+        PositionComparator comparator = switch (key.column) {
+            case BILL_NUMBER -> strings(rows, count, batch::getBillNumber);
+            case ITEM_CODE -> strings(rows, count, batch::getItemCode);
+            case STATUS -> strings(rows, count, batch::getStatus);
+            case INTERNAL_PRICE -> doubles(rows, count, batch::getInternalPrice);
+            case SALE_PRICE -> doubles(rows, count, batch::getSalePrice);
+            case DISCOUNT -> doubles(rows, count, batch::getDiscount);
+            case PROFIT -> doubles(rows, count, batch::getProfit);
+            case QUANTITY -> ints(rows, count, batch::getQuantity);
+            case CHECKSUM -> ints(rows, count, batch::getChecksum);
+        };
+        return key.descending ? (position, other) -> comparator.compare(other, position) : comparator;
+    }
+
+    // Each key is read once per row rather than once per comparison
+    private static PositionComparator strings(int[] rows, int count, IntFunction<String> column) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = column.apply(rows == null ? i : rows[i]);
+        }
+        return (position, other) -> {
+            String value = values[position];
+            String otherValue = values[other];
+            if (value == null || otherValue == null) {
+                return value == null ? (otherValue == null ? 0 : -1) : 1;
+            }
+            return value.compareTo(otherValue);
+        };
+    }
+
+    private static PositionComparator doubles(int[] rows, int count, IntToDoubleFunction column) {
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = column.applyAsDouble(rows == null ? i : rows[i]);
+        }
+        return (position, other) -> Double.compare(values[position], values[other]);
+    }
+
+    private static PositionComparator ints(int[] rows, int count, IntUnaryOperator column) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = column.applyAsInt(rows == null ? i : rows[i]);
+        }
+        return (position, other) -> Integer.compare(values[position], values[other]);
+    }
+
+    /**
+     * Sorts the positions with a stable bottom-up merge sort.
+     */
+    private static void mergeSort(int[] positions, PositionComparator comparator) {
+        int count = positions.length;
+        for (int start = 0; start < count; start += RUN_LENGTH) {
+            int end = Math.min(start + RUN_LENGTH, count);
+            for (int i = start + 1; i < end; i++) {
+                int position = positions[i];
+                int j = i - 1;
+                while (j >= start && comparator.compare(positions[j], position) > 0) {
+                    positions[j + 1] = positions[j];
+                    j--;
+                }
+                positions[j + 1] = position;
+            }
+        }
+
+        int[] source = positions;
+        int[] target = new int[count];
+        for (int width = RUN_LENGTH; width < count; width *= 2) {
+            for (int start = 0; start < count; start += 2 * width) {
+                int middle = Math.min(start + width, count);
+                int end = Math.min(start + 2 * width, count);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    // Taking from the left on ties keeps the sort stable
+                    if (left < middle && (right == end || comparator.compare(source[left], source[right]) <= 0)) {
+                        target[i] = source[left++];
+                    } else {
+                        target[i] = source[right++];
+                    }
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != positions) {
+            System.arraycopy(source, 0, positions, 0, count);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.iit;
+
+import javafx.collections.ListChangeListener;
+import service.TransactionBatch;
+
+/**
+ * Running summary statistics for the transactions shown in the table.
+ * <p>
+ * The batch adjusts its valid row count and profit sum on every change, whether
+ * made through the list or in bulk, e.g. by storing the results of a background
+ * validation, so the statistics are read in constant time and never recounted.
+ * Changes made through the list are reported right away; after bulk changes the
+ * owner updates its labels itself. The statistics are read on the thread that
+ * changes the batch, the FX Application Thread.
+ */
+class TransactionSummary {
+    private final TransactionBatch batch;
+
+    /**
+     * Starts tracking the list. onChange runs after every change made through the list.
+     */
+    TransactionSummary(LazyTransactionList transactions, Runnable onChange) {
+        this.batch = transactions.getBatch();
+        transactions.addListener((ListChangeListener<Transaction>) change -> onChange.run());
+        onChange.run();
+    }
+
+    // Getters for the current statistics
+    int getTotal() { return batch.size(); }
+    int getValid() { return batch.countValid(); }
+    int getInvalid() { return batch.size() - batch.countValid(); }
+    double getNetProfit() { return batch.getProfitSum(); }
+}
@@ -0,0 +1,170 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Rows of a {@link TransactionBatch} grouped by bill number, kept up to date as
+ * single rows are added, replaced and removed, so that the rows of one bill can
+ * be visited without scanning the batch.
+ * <p>
+ * Each distinct bill number gets an id from a {@link ByteKeyTable}; a null bill
+ * number has the id {@link #NULL_BILL}. The rows of a bill are chained in row
+ * order. Ids of bill numbers no row has any more stay valid with no rows.
+ * Not thread-safe.
+ */
+final class BillRowIndex {
+    static final int NULL_BILL = -1;
+    private static final int END = -1;
+    private static final int EXPECTED_BILL_LENGTH = 16;
+
+    private final ByteKeyTable keys;
+    private int size;
+    // Per row: its bill id and the next row of the same bill
+    private int[] billOfRow;
+    private int[] nextRow;
+    // First and last row per bill id + 1, so that index 0 holds the null bill
+    private int[] firstRow;
+    private int[] lastRow;
+
+    /**
+     * Indexes the first size rows of the bill number columns.
+     */
+    BillRowIndex(byte[] pool, int[] starts, int[] lengths, int size) {
+        keys = new ByteKeyTable(size, EXPECTED_BILL_LENGTH);
+        billOfRow = new int[Math.max(size, 16)];
+        nextRow = new int[billOfRow.length];
+        firstRow = newHeads(Math.max(size, 16));
+        lastRow = newHeads(firstRow.length);
+        for (int row = 0; row < size; row++) {
+            add(pool, starts[row], lengths[row]);
+        }
+    }
+
+    int billOf(int row) {
+        return billOfRow[row];
+    }
+
+    /**
+     * Returns the first row with the bill id, or -1 when no row has it.
+     */
+    int firstRow(int bill) {
+        return firstRow[bill + 1];
+    }
+
+    /**
+     * Returns the next row with the same bill number, or -1 after the last one.
+     */
+    int nextRow(int row) {
+        return nextRow[row];
+    }
+
+    /**
+     * Adds a row after the last one; a negative length is a null bill number.
+     */
+    void add(byte[] pool, int start, int length) {
+        if (size == billOfRow.length) {
+            billOfRow = Arrays.copyOf(billOfRow, size * 2);
+            nextRow = Arrays.copyOf(nextRow, size * 2);
+        }
+        int row = size++;
+        int bill = idOf(pool, start, length);
+        billOfRow[row] = bill;
+        nextRow[row] = END;
+        int last = lastRow[bill + 1];
+        if (last == END) {
+            firstRow[bill + 1] = row;
+        } else {
+            nextRow[last] = row;
+        }
+        lastRow[bill + 1] = row;
+    }
+
+    /**
+     * Moves a row to the chain of its new bill number.
+     */
+    void replace(int row, byte[] pool, int start, int length) {
+        int bill = idOf(pool, start, length);
+        if (bill != billOfRow[row]) {
+            unlink(row);
+            billOfRow[row] = bill;
+            link(row);
+        }
+    }
+
+    /**
+     * Removes a row; the rows after it move up by one, as in the batch.
+     */
+    void remove(int row) {
+        unlink(row);
+        System.arraycopy(billOfRow, row + 1, billOfRow, row, size - row - 1);
+        System.arraycopy(nextRow, row + 1, nextRow, row, size - row - 1);
+        size--;
+        for (int r = 0; r < size; r++) {
+            if (nextRow[r] > row) {
+                nextRow[r]--;
+            }
+        }
+        for (int head = 0; head <= keys.size(); head++) {
+            if (firstRow[head] > row) {
+                firstRow[head]--;
+            }
+            if (lastRow[head] > row) {
+                lastRow[head]--;
+            }
+        }
+    }
+
+    private int idOf(byte[] pool, int start, int length) {
+        if (length < 0) {
+            return NULL_BILL;
+        }
+        int bill = keys.add(pool, start, length, ByteKeyTable.hash(pool, start, length));
+        if (bill + 1 == firstRow.length) {
+            firstRow = Arrays.copyOf(firstRow, firstRow.length * 2);
+            lastRow = Arrays.copyOf(lastRow, firstRow.length);
+            Arrays.fill(firstRow, bill + 1, firstRow.length, END);
+            Arrays.fill(lastRow, bill + 1, lastRow.length, END);
+        }
+        return bill;
+    }
+
+    private void unlink(int row) {
+        int head = billOfRow[row] + 1;
+        int previous = END;
+        for (int r = firstRow[head]; r != row; r = nextRow[r]) {
+            previous = r;
+        }
+        if (previous == END) {
+            firstRow[head] = nextRow[row];
+        } else {
+            nextRow[previous] = nextRow[row];
+        }
+        if (lastRow[head] == row) {
+            lastRow[head] = previous;
+        }
+    }
+
+    // Inserts a row into the chain of its bill, keeping the chain in row order
+    private void link(int row) {
+        int head = billOfRow[row] + 1;
+        int previous = END;
+        for (int r = firstRow[head]; r != END && r < row; r = nextRow[r]) {
+            previous = r;
+        }
+        nextRow[row] = previous == END ? firstRow[head] : nextRow[previous];
+        if (previous == END) {
+            firstRow[head] = row;
+        } else {
+            nextRow[previous] = row;
+        }
+        if (nextRow[row] == END) {
+            lastRow[head] = row;
+        }
+    }
+
+    private static int[] newHeads(int length) {
+        int[] heads = new int[length];
+        Arrays.fill(heads, END);
+        return heads;
+    }
+}
@@ -0,0 +1,170 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table that numbers distinct byte string keys 0, 1, 2, ...
+ * in order of first appearance.
+ * <p>
+ * Keys are copied into one shared pool and compared exactly, so a hash
+ * collision never merges two keys, and adding a key neither boxes nor
+ * allocates once the arrays are large enough. Owners keep whatever they need
+ * per key in their own arrays, indexed by the key number. Not thread-safe.
+ */
+class ByteKeyTable {
+    // Hash table of key numbers, -1 marks an empty slot
+    private int[] table;
+    private int tableMask;
+
+    // Bytes of all keys
+    private byte[] keyPool;
+    private int keyPoolSize;
+
+    // Per key, in order of first appearance
+    private int size;
+    private int[] keyStarts;
+    private int[] keyLengths;
+    private int[] hashes;
+
+    /**
+     * Creates an empty table sized for the given number of keys of about the given length.
+     */
+    ByteKeyTable(int expectedKeys, int expectedKeyLength) {
+        int capacity = Math.max(expectedKeys, 16);
+        keyPool = new byte[capacity * Math.max(expectedKeyLength, 1)];
+        keyStarts = new int[capacity];
+        keyLengths = new int[capacity];
+        hashes = new int[capacity];
+        table = newTable(Integer.highestOneBit(capacity - 1) << 2);
+    }
+
+    /**
+     * Returns the number of the key, or -1 when it was never added.
+     */
+    int find(byte[] key, int start, int length, int hash) {
+        for (int slot = hash & tableMask, id; (id = table[slot]) >= 0; slot = (slot + 1) & tableMask) {
+            if (hashes[id] == hash && keyEquals(id, key, start, length)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of the key, adding it when it is new. A new key gets
+     * the number {@link #size()} had before the call.
+     */
+    int add(byte[] key, int start, int length, int hash) {
+        int slot = hash & tableMask;
+        for (int id; (id = table[slot]) >= 0; slot = (slot + 1) & tableMask) {
+            if (hashes[id] == hash && keyEquals(id, key, start, length)) {
+                return id;
+            }
+        }
+
+        if (size == keyStarts.length) {
+            int capacity = size * 2;
+            keyStarts = Arrays.copyOf(keyStarts, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        if (keyPool.length - keyPoolSize < length) {
+            keyPool = Arrays.copyOf(keyPool, Math.max(keyPool.length * 2, keyPoolSize + length));
+        }
+        int id = size++;
+        System.arraycopy(key, start, keyPool, keyPoolSize, length);
+        keyStarts[id] = keyPoolSize;
+        keyLengths[id] = length;
+        keyPoolSize += length;
+        hashes[id] = hash;
+        table[slot] = id;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    int size() {
+        return size;
+    }
+
+    int hash(int id) {
+        return hashes[id];
+    }
+
+    // The pool is replaced when it grows, so it is only valid until the next add
+    byte[] keyPool() {
+        return keyPool;
+    }
+
+    int keyStart(int id) {
+        return keyStarts[id];
+    }
+
+    int keyLength(int id) {
+        return keyLengths[id];
+    }
+
+    /**
+     * Returns the key decoded as UTF-8.
+     */
+    String key(int id) {
+        return new String(keyPool, keyStarts[id], keyLengths[id], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two keys byte by byte as unsigned values, which for UTF-8 keys
+     * is the order of their code points.
+     */
+    int compare(int id, int other) {
+        return Arrays.compareUnsigned(keyPool, keyStarts[id], keyStarts[id] + keyLengths[id],
+                keyPool, keyStarts[other], keyStarts[other] + keyLengths[other]);
+    }
+
+    /**
+     * Hashes a byte string; ASCII bytes hash like the String of the same chars
+     * before it is spread.
+     */
+    static int hash(byte[] bytes, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return spread(hash);
+    }
+
+    /**
+     * Mixes the high bits of a polynomial hash into the low bits that pick the slot.
+     */
+    static int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private boolean keyEquals(int id, byte[] key, int start, int length) {
+        return keyLengths[id] == length && Arrays.equals(keyPool, keyStarts[id], keyStarts[id] + length,
+                key, start, start + length);
+    }
+
+    private void rehash() {
+        table = newTable(table.length * 2);
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & tableMask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & tableMask;
+            }
+            table[slot] = id;
+        }
+    }
+
+    private int[] newTable(int length) {
+        int[] newTable = new int[length];
+        Arrays.fill(newTable, -1);
+        tableMask = length - 1;
+        return newTable;
+    }
+}
@@ -0,0 +1,194 @@
+package service;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of checksums keyed on the five checksum inputs.
+ * <p>
+ * Bill files repeat the same item code, prices, quantity and discount many
+ * times, so validation can look the checksum up instead of recalculating it.
+ * Entries live in parallel primitive arrays organised as 4-way set-associative
+ * buckets; each bucket evicts with the CLOCK algorithm, so a full cache keeps
+ * recently used entries without any per-entry objects. Buckets are guarded by
+ * striped locks and the cache can be shared by the validation threads.
+ * Keys compare the exact bit patterns of the doubles, so only identical inputs hit.
+ * The checksum depends on the decimal separator of the default format locale,
+ * so the locale is part of the key and changing it never returns stale
+ * checksums. A null item code is a key like any other.
+ */
+public class ChecksumCache {
+    /** Returned by {@link #get} when the checksum is not cached. */
+    public static final int MISS = -1;
+
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+
+    private final int setMask;
+    private final Object[] locks = new Object[STRIPES];
+    // One entry per slot, slot = set * WAYS + way; a null locale marks an empty slot
+    private final Locale[] locales;
+    private final String[] itemCodes;
+    private final long[] internalPriceBits;
+    private final long[] salePriceBits;
+    private final long[] discountBits;
+    private final int[] quantities;
+    private final int[] checksums;
+    private final boolean[] referenced;
+    // Next way to consider for eviction, per set
+    private final byte[] clockHands;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache holding at least the given number of entries, rounded up to a power of two.
+     */
+    public ChecksumCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int sets = Integer.highestOneBit(Math.max((capacity + WAYS - 1) / WAYS, 1) * 2 - 1);
+        setMask = sets - 1;
+        int slots = sets * WAYS;
+        locales = new Locale[slots];
+        itemCodes = new String[slots];
+        internalPriceBits = new long[slots];
+        salePriceBits = new long[slots];
+        discountBits = new long[slots];
+        quantities = new int[slots];
+        checksums = new int[slots];
+        referenced = new boolean[slots];
+        clockHands = new byte[sets];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Returns the cached checksum for the inputs, or {@link #MISS}.
+     */
+    public int get(String itemCode, double internalPrice, double salePrice, int quantity, double discount) {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        long internalBits = Double.doubleToLongBits(internalPrice);
+        long saleBits = Double.doubleToLongBits(salePrice);
+        long discountBits = Double.doubleToLongBits(discount);
+        int set = set(itemCode, internalBits, saleBits, quantity, discountBits);
+
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int slot = find(set, locale, itemCode, internalBits, saleBits, quantity, discountBits);
+            if (slot >= 0) {
+                referenced[slot] = true;
+                hits.increment();
+                return checksums[slot];
+            }
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * Caches the checksum for the inputs, evicting an entry of the same bucket if it is full.
+     */
+    public void put(String itemCode, double internalPrice, double salePrice, int quantity, double discount,
+                    int checksum) {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        long internalBits = Double.doubleToLongBits(internalPrice);
+        long saleBits = Double.doubleToLongBits(salePrice);
+        long discountBits = Double.doubleToLongBits(discount);
+        int set = set(itemCode, internalBits, saleBits, quantity, discountBits);
+
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int slot = find(set, locale, itemCode, internalBits, saleBits, quantity, discountBits);
+            // New entries only earn a second chance once they are hit
+            boolean existing = slot >= 0;
+            if (!existing) {
+                slot = freeSlot(set);
+            }
+            locales[slot] = locale;
+            itemCodes[slot] = itemCode;
+            internalPriceBits[slot] = internalBits;
+            salePriceBits[slot] = saleBits;
+            this.discountBits[slot] = discountBits;
+            quantities[slot] = quantity;
+            checksums[slot] = checksum;
+            referenced[slot] = existing;
+        }
+    }
+
+    private int find(int set, Locale locale, String itemCode, long internalBits, long saleBits, int quantity,
+                     long discountBits) {
+        for (int slot = set * WAYS; slot < (set + 1) * WAYS; slot++) {
+            if (locales[slot] == locale && internalPriceBits[slot] == internalBits
+                    && salePriceBits[slot] == saleBits && quantities[slot] == quantity
+                    && this.discountBits[slot] == discountBits && Objects.equals(itemCodes[slot], itemCode)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // Returns an empty slot of the set, or evicts the first entry the clock hand finds unreferenced
+    private int freeSlot(int set) {
+        int first = set * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (locales[slot] == null) {
+                return slot;
+            }
+        }
+        int hand = clockHands[set];
+        while (referenced[first + hand]) {
+            referenced[first + hand] = false;
+            hand = (hand + 1) & (WAYS - 1);
+        }
+        clockHands[set] = (byte) ((hand + 1) & (WAYS - 1));
+        evictions.increment();
+        return first + hand;
+    }
+
+    private int set(String itemCode, long internalBits, long saleBits, int quantity, long discountBits) {
+        long hash = Objects.hashCode(itemCode);
+        hash = hash * 0x9E3779B97F4A7C15L + internalBits;
+        hash = hash * 0x9E3779B97F4A7C15L + saleBits;
+        hash = hash * 0x9E3779B97F4A7C15L + quantity;
+        hash = hash * 0x9E3779B97F4A7C15L + discountBits;
+        hash ^= hash >>> 29;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 32;
+        return (int) hash & setMask;
+    }
+
+    /**
+     * Removes all entries. The hit, miss and eviction counts are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < STRIPES; i++) {
+            synchronized (locks[i]) {
+                for (int set = i; set <= setMask; set += STRIPES) {
+                    for (int slot = set * WAYS; slot < (set + 1) * WAYS; slot++) {
+                        locales[slot] = null;
+                        itemCodes[slot] = null;
+                        referenced[slot] = false;
+                    }
+                }
+            }
+        }
+    }
+
+    // Metrics
+    public int getCapacity() { return itemCodes.length; }
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+
+    /**
+     * Returns the share of lookups that were hits, or 0 before the first lookup.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+}
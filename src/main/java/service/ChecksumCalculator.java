@@ -0,0 +1,95 @@
+package service;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Computes transaction checksums without building the formatted line.
+ * <p>
+ * The checksum is defined as the number of capital letters, simple letters,
+ * digits and dots in
+ * {@code String.format("Item: %s, Internal Price: %.2f, Sale Price: %.2f, Quantity: %d, Discount: %.2f", ...)}.
+ * This class gets the same count arithmetically: the letters of the fixed label
+ * text are counted once, the item code is classified in place and the numbers
+ * only contribute their digit counts, so no string is created per row.
+ */
+public class ChecksumCalculator {
+    // Label text of the checksum line with the values left out
+    private static final String LABEL_TEXT = "Item: , Internal Price: , Sale Price: , Quantity: , Discount: ";
+    private static final int LABEL_COUNT = countCharacters(LABEL_TEXT);
+
+    // Decimal separator weight for the current default locale
+    private volatile LocaleWeight localeWeight = new LocaleWeight(null, 1);
+
+    /**
+     * Calculates the checksum for the given transaction fields.
+     */
+    public int calculate(String itemCode, double internalPrice, double salePrice, int quantity, double discount) {
+        int separatorWeight = separatorWeight();
+        return LABEL_COUNT
+                + countCharacters(itemCode == null ? "null" : itemCode)
+                + countDecimal(internalPrice, separatorWeight)
+                + countDecimal(salePrice, separatorWeight)
+                + FixedTwoDecimal.digitCount(Math.abs((long) quantity))
+                + countDecimal(discount, separatorWeight);
+    }
+
+    /**
+     * Counts the characters of a %.2f formatted value that take part in the checksum.
+     */
+    private static int countDecimal(double value, int separatorWeight) {
+        long cents = FixedTwoDecimal.roundedCents(value);
+        if (cents == FixedTwoDecimal.UNDECIDED) {
+            // Rare edge case, let the formatter decide
+            return countCharacters(String.format("%.2f", value));
+        }
+        // Integer digits, the separator and two decimals; the sign never counts
+        return FixedTwoDecimal.digitCount(cents / 100) + separatorWeight + 2;
+    }
+
+    /**
+     * Counts capital letters, simple letters, digits and dots in the given text.
+     */
+    static int countCharacters(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCounted(text.charAt(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isCounted(char c) {
+        return Character.isUpperCase(c) || Character.isLowerCase(c) || Character.isDigit(c) || c == '.';
+    }
+
+    /**
+     * Returns 1 when the decimal separator of the default format locale is counted.
+     */
+    private int separatorWeight() {
+        Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+        LocaleWeight current = localeWeight;
+        if (current.locale != locale) {
+            // Formatter always uses '.' for Locale.US, otherwise the locale symbol
+            char separator = locale.equals(Locale.US)
+                    ? '.' : DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+            current = new LocaleWeight(locale, isCounted(separator) ? 1 : 0);
+            localeWeight = current;
+        }
+        return current.weight;
+    }
+
+    /**
+     * Separator weight cached together with the locale it was derived from.
+     */
+    private static class LocaleWeight {
+        private final Locale locale;
+        private final int weight;
+
+        LocaleWeight(Locale locale, int weight) {
+            this.locale = locale;
+            this.weight = weight;
+        }
+    }
+}
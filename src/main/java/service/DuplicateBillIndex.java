@@ -0,0 +1,91 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Set of the bill number and item code pairs seen so far, used to flag
+ * re-uploaded rows as duplicates.
+ * <p>
+ * Each distinct pair is stored once in a {@link ByteKeyTable}, so a lookup is
+ * O(1) and memory grows with the number of distinct pairs rather than the
+ * number of rows. A pair is keyed by the lengths of its bill number and item
+ * code followed by their UTF-8 bytes, so keys are compared exactly, a hash
+ * collision never flags a row by mistake, and a null bill number or item code
+ * is kept apart from the text "null". The index can be kept across the batches
+ * of a streaming import. Not thread-safe.
+ */
+public class DuplicateBillIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EXPECTED_KEY_LENGTH = 24;
+    // Length of a null bill number or item code
+    private static final int NULL_LENGTH = -1;
+    // The two lengths in front of the bytes of a key
+    private static final int HEADER_LENGTH = 8;
+
+    private final ByteKeyTable keys;
+    // Key of the pair being added
+    private byte[] scratch = new byte[EXPECTED_KEY_LENGTH * 2];
+
+    public DuplicateBillIndex() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Creates an index sized for the given number of pairs, e.g. the rows of one bill.
+     */
+    DuplicateBillIndex(int expectedPairs) {
+        keys = new ByteKeyTable(expectedPairs, EXPECTED_KEY_LENGTH);
+    }
+
+    /**
+     * Records the pair and returns true when it was not seen before.
+     */
+    public boolean add(String billNumber, String itemCode) {
+        if (billNumber == null) {
+            return add(null, 0, NULL_LENGTH, itemCode == null ? null : itemCode.getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] bill = billNumber.getBytes(StandardCharsets.UTF_8);
+        return add(bill, 0, bill.length, itemCode == null ? null : itemCode.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Records the pair of a bill number slice and encoded item code; a negative
+     * bill length stands for a null bill number and a null array for a null item code.
+     */
+    boolean add(byte[] bill, int billStart, int billLength, byte[] itemCode) {
+        billLength = Math.max(billLength, NULL_LENGTH);
+        int itemLength = itemCode == null ? NULL_LENGTH : itemCode.length;
+        int billBytes = Math.max(billLength, 0);
+        int itemBytes = Math.max(itemLength, 0);
+        int length = HEADER_LENGTH + billBytes + itemBytes;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(scratch.length * 2, length)];
+        }
+        putInt(scratch, 0, billLength);
+        putInt(scratch, 4, itemLength);
+        if (billBytes > 0) {
+            System.arraycopy(bill, billStart, scratch, HEADER_LENGTH, billBytes);
+        }
+        if (itemBytes > 0) {
+            System.arraycopy(itemCode, 0, scratch, HEADER_LENGTH + billBytes, itemBytes);
+        }
+
+        int size = keys.size();
+        keys.add(scratch, 0, length, ByteKeyTable.hash(scratch, 0, length));
+        return keys.size() > size;
+    }
+
+    /**
+     * Returns the number of distinct pairs.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    private static void putInt(byte[] bytes, int index, int value) {
+        bytes[index] = (byte) (value >>> 24);
+        bytes[index + 1] = (byte) (value >>> 16);
+        bytes[index + 2] = (byte) (value >>> 8);
+        bytes[index + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,52 @@
+package service;
+
+/**
+ * Fixed two-decimal rounding that matches {@code String.format("%.2f", value)}.
+ * <p>
+ * The formatter rounds the shortest decimal representation of a double half-up,
+ * so {@code 1.005} becomes {@code 1.01} even though the stored binary value is
+ * slightly below it. Plain {@code Math.round(value * 100)} gets such values wrong.
+ * Values that are close enough to a half cent for this to matter, or too large for
+ * the cents to be exact, are reported as {@link #UNDECIDED} and the caller falls
+ * back to the formatter for that single value.
+ */
+final class FixedTwoDecimal {
+    /** Returned when the rounded value cannot be decided without formatting. */
+    static final long UNDECIDED = -1;
+
+    // Below this magnitude the error of value * 100 stays far below HALF_CENT_MARGIN
+    private static final double FAST_PATH_LIMIT = 1e7;
+    private static final double HALF_CENT_MARGIN = 1e-5;
+
+    private FixedTwoDecimal() {
+    }
+
+    /**
+     * Returns the absolute value rounded to whole cents, or {@link #UNDECIDED}.
+     */
+    static long roundedCents(double value) {
+        double absValue = Math.abs(value);
+        if (!(absValue < FAST_PATH_LIMIT)) {
+            return UNDECIDED; // Large, infinite or NaN
+        }
+        double scaled = absValue * 100;
+        double whole = Math.floor(scaled);
+        double fraction = scaled - whole;
+        if (Math.abs(fraction - 0.5) < HALF_CENT_MARGIN) {
+            return UNDECIDED;
+        }
+        return (long) whole + (fraction > 0.5 ? 1 : 0);
+    }
+
+    /**
+     * Returns the number of decimal digits needed to print a non-negative value.
+     */
+    static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
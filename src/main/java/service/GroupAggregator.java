@@ -0,0 +1,303 @@
+package service;
+
+import service.TransactionService.TaxCalculationResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Accumulates profit and loss totals per key, e.g. per item code or per bill number.
+ * <p>
+ * Keys are kept as UTF-8 bytes in a {@link ByteKeyTable} and the totals of each
+ * group in parallel primitive arrays, summed with the same compensated step as
+ * {@link TaxAggregator}, so adding a row from a {@link TransactionBatch} for a
+ * known key neither boxes nor allocates. A null key has a group of its own,
+ * apart from the text "null", and sorts before every other key. Groups are
+ * ordered by the code points of their keys. Aggregators filled on different
+ * threads can be combined with {@link #merge(GroupAggregator)}.
+ */
+public class GroupAggregator {
+    private static final int DEFAULT_EXPECTED_KEYS = 1024;
+    private static final int EXPECTED_KEY_LENGTH = 8;
+    // Group of the null key; the group of every other key is its key number + 1
+    private static final int NULL_GROUP = 0;
+
+    private final ByteKeyTable keys;
+
+    // Per group, in order of first appearance after the null group
+    private double[] profitSums;
+    private double[] profitCompensations;
+    private double[] lossSums;
+    private double[] lossCompensations;
+    // Rows per group; 0 for the null group until a null key is added
+    private long[] counts;
+
+    /**
+     * Creates an empty aggregator.
+     */
+    public GroupAggregator() {
+        this(DEFAULT_EXPECTED_KEYS);
+    }
+
+    /**
+     * Creates an empty aggregator sized for the given number of distinct keys.
+     */
+    public GroupAggregator(int expectedKeys) {
+        int capacity = Math.max(expectedKeys, 16);
+        keys = new ByteKeyTable(capacity, EXPECTED_KEY_LENGTH);
+        profitSums = new double[capacity + 1];
+        profitCompensations = new double[capacity + 1];
+        lossSums = new double[capacity + 1];
+        lossCompensations = new double[capacity + 1];
+        counts = new long[capacity + 1];
+    }
+
+    /**
+     * Adds the profit of one valid transaction to the group of the key;
+     * negative profits count as loss.
+     */
+    public void add(String key, double profit) {
+        if (key == null) {
+            add(null, 0, -1, profit);
+            return;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        add(bytes, 0, bytes.length, profit);
+    }
+
+    /**
+     * Adds a profit to the group whose key is the given UTF-8 bytes; a negative
+     * length stands for a null key.
+     */
+    void add(byte[] key, int start, int length, double profit) {
+        int group = length < 0 ? NULL_GROUP : group(key, start, length, ByteKeyTable.hash(key, start, length));
+        if (profit > 0) {
+            addCompensated(profitSums, profitCompensations, group, profit);
+        } else {
+            addCompensated(lossSums, lossCompensations, group, Math.abs(profit));
+        }
+        counts[group]++;
+    }
+
+    /**
+     * Adds the totals of another aggregator to this one.
+     */
+    public void merge(GroupAggregator other) {
+        ByteKeyTable otherKeys = other.keys;
+        for (int otherGroup = NULL_GROUP; otherGroup <= otherKeys.size(); otherGroup++) {
+            if (other.counts[otherGroup] == 0) {
+                continue;
+            }
+            int group = NULL_GROUP;
+            if (otherGroup != NULL_GROUP) {
+                int key = otherGroup - 1;
+                group = group(otherKeys.keyPool(), otherKeys.keyStart(key), otherKeys.keyLength(key),
+                        otherKeys.hash(key));
+            }
+            addCompensated(profitSums, profitCompensations, group, other.profitSums[otherGroup]);
+            addCompensated(profitSums, profitCompensations, group, other.profitCompensations[otherGroup]);
+            addCompensated(lossSums, lossCompensations, group, other.lossSums[otherGroup]);
+            addCompensated(lossSums, lossCompensations, group, other.lossCompensations[otherGroup]);
+            counts[group] += other.counts[otherGroup];
+        }
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    public int size() {
+        return keys.size() + (counts[NULL_GROUP] > 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the totals for one key, or null when the key was never added.
+     */
+    public GroupTotal get(String key, double taxRate) {
+        if (key == null) {
+            return counts[NULL_GROUP] == 0 ? null : total(NULL_GROUP, taxRate);
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int found = keys.find(bytes, 0, bytes.length, ByteKeyTable.hash(bytes, 0, bytes.length));
+        return found < 0 ? null : total(found + 1, taxRate);
+    }
+
+    /**
+     * Returns the totals of every key, sorted by key, with the null key first.
+     */
+    public List<GroupTotal> breakdown(double taxRate) {
+        // Sort a permutation of the group numbers; the null group is already first
+        int first = counts[NULL_GROUP] > 0 ? NULL_GROUP : NULL_GROUP + 1;
+        int[] groups = new int[keys.size() + 1 - first];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = first + i;
+        }
+        sort(groups, 1 - first, groups.length, new int[groups.length]);
+        List<GroupTotal> totals = new ArrayList<>(groups.length);
+        for (int group : groups) {
+            totals.add(total(group, taxRate));
+        }
+        return totals;
+    }
+
+    /**
+     * Returns the n keys with the highest net profit, highest first. Ties are
+     * ordered by key, as in {@link #breakdown(double)}.
+     */
+    public List<GroupTotal> top(int n, double taxRate) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        // Min-heap of the best n groups seen so far; the root is the weakest of them
+        int[] heap = new int[Math.min(n, size())];
+        int heapSize = 0;
+        for (int group = NULL_GROUP; group <= keys.size(); group++) {
+            if (counts[group] == 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize++] = group;
+                siftUp(heap, heapSize - 1);
+            } else if (heapSize > 0 && ranksBefore(group, heap[0])) {
+                heap[0] = group;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        List<GroupTotal> totals = new ArrayList<>(heapSize);
+        while (heapSize > 0) {
+            totals.add(total(heap[0], taxRate));
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        // The heap yields the weakest first
+        Collections.reverse(totals);
+        return totals;
+    }
+
+    private boolean ranksBefore(int group, int other) {
+        int compare = Double.compare(netProfit(group), netProfit(other));
+        if (compare != 0) {
+            return compare > 0;
+        }
+        return compareKeys(group, other) < 0;
+    }
+
+    // Orders groups by key, the null key first
+    private int compareKeys(int group, int other) {
+        if (group == NULL_GROUP || other == NULL_GROUP) {
+            return Integer.compare(group, other);
+        }
+        return keys.compare(group - 1, other - 1);
+    }
+
+    // Merge sort of groups[from, to) by key, without boxing the group numbers
+    private void sort(int[] groups, int from, int to, int[] scratch) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(groups, from, middle, scratch);
+        sort(groups, middle, to, scratch);
+        if (compareKeys(groups[middle - 1], groups[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(groups, from, scratch, from, to - from);
+        for (int i = from, left = from, right = middle; i < to; i++) {
+            if (right == to || left < middle && compareKeys(scratch[left], scratch[right]) <= 0) {
+                groups[i] = scratch[left++];
+            } else {
+                groups[i] = scratch[right++];
+            }
+        }
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBefore(heap[parent], heap[index])) {
+                break;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int weakest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && ranksBefore(heap[weakest], heap[left])) {
+                weakest = left;
+            }
+            if (right < heapSize && ranksBefore(heap[weakest], heap[right])) {
+                weakest = right;
+            }
+            if (weakest == index) {
+                return;
+            }
+            swap(heap, index, weakest);
+            index = weakest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int value = heap[i];
+        heap[i] = heap[j];
+        heap[j] = value;
+    }
+
+    private double netProfit(int group) {
+        return (profitSums[group] + profitCompensations[group]) - (lossSums[group] + lossCompensations[group]);
+    }
+
+    private GroupTotal total(int group, double taxRate) {
+        double profit = profitSums[group] + profitCompensations[group];
+        double loss = lossSums[group] + lossCompensations[group];
+        double netProfit = profit - loss;
+        String key = group == NULL_GROUP ? null : keys.key(group - 1);
+        return new GroupTotal(key, counts[group], profit, loss, netProfit, netProfit * taxRate / 100);
+    }
+
+    // Returns the group of a non-null key, creating it when the key is new
+    private int group(byte[] key, int start, int length, int hash) {
+        int group = keys.add(key, start, length, hash) + 1;
+        if (group == counts.length) {
+            int capacity = counts.length * 2;
+            profitSums = Arrays.copyOf(profitSums, capacity);
+            profitCompensations = Arrays.copyOf(profitCompensations, capacity);
+            lossSums = Arrays.copyOf(lossSums, capacity);
+            lossCompensations = Arrays.copyOf(lossCompensations, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        return group;
+    }
+
+    private static void addCompensated(double[] sums, double[] compensations, int group, double value) {
+        double sum = sums[group];
+        double total = sum + value;
+        compensations[group] += TaxAggregator.roundingError(sum, value, total);
+        sums[group] = total;
+    }
+
+    /**
+     * Totals of one group: the tax calculation result plus the key and row count.
+     */
+    public static class GroupTotal extends TaxCalculationResult {
+        private final String key;
+        private final long count;
+
+        public GroupTotal(String key, long count, double totalProfit, double totalLoss, double netProfit, double tax) {
+            super(totalProfit, totalLoss, netProfit, tax);
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getKey() { return key; }
+        public long getCount() { return count; }
+    }
+}
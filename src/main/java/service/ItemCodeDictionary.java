@@ -0,0 +1,228 @@
+package service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Dictionary of the item codes seen in a session, shared by every import of a
+ * {@link TransactionService}.
+ * <p>
+ * Each distinct code gets an int id and one canonical String, so repeated codes
+ * share a single instance however many rows and files they appear in. Whether a
+ * code is alphanumeric, which validation checks for every row, and its UTF-8
+ * bytes are worked out once when the code is added and then read from the entry.
+ * Batches store the ids, so every import of a session uses the same ids. A null
+ * code is an entry of its own, kept apart from the text "null".
+ * <p>
+ * Codes are found through an open-addressing hash table. Lookups do not lock:
+ * an entry is written before its slot is published through an
+ * {@link AtomicIntegerArray}, and a grown table replaces the old one through a
+ * volatile field, so readers always see complete entries. Adding a new code
+ * takes a lock, which is rare once the codes of a catalogue have been seen, so
+ * the parallel importers can share one dictionary.
+ */
+public class ItemCodeDictionary {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * One generation of the table; replaced as a whole when it grows.
+     */
+    private static final class Table {
+        // Entry id + 1 per slot, 0 marks an empty slot
+        final AtomicIntegerArray slots;
+        final int mask;
+        // Per entry
+        final String[] codes;
+        final boolean[] alphanumeric;
+        final byte[][] encoded;
+
+        Table(int slotCount, String[] codes, boolean[] alphanumeric, byte[][] encoded) {
+            this.slots = new AtomicIntegerArray(slotCount);
+            this.mask = slotCount - 1;
+            this.codes = codes;
+            this.alphanumeric = alphanumeric;
+            this.encoded = encoded;
+        }
+    }
+
+    private volatile Table table = new Table(INITIAL_CAPACITY * 2,
+            new String[INITIAL_CAPACITY], new boolean[INITIAL_CAPACITY], new byte[INITIAL_CAPACITY][]);
+    private volatile int size;
+
+    /**
+     * Returns the id of the code, adding it when it is new.
+     */
+    public int idOf(String code) {
+        int hash = Objects.hashCode(code);
+        int id = find(table, code, hash);
+        return id >= 0 ? id : add(code, hash);
+    }
+
+    /**
+     * Returns the canonical instance of the code, adding it when it is new.
+     */
+    public String canonical(String code) {
+        return get(idOf(code));
+    }
+
+    // The id is checked against the size before the table is read, so the table has its entry
+    public String get(int id) {
+        checkId(id);
+        return table.codes[id];
+    }
+
+    public boolean isAlphanumeric(int id) {
+        checkId(id);
+        return table.alphanumeric[id];
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a code, or null for the null code. The array is shared and must not be changed.
+     */
+    byte[] bytes(int id) {
+        checkId(id);
+        return table.encoded[id];
+    }
+
+    /**
+     * Returns true when the code consists of ASCII letters and digits only,
+     * adding the code when it is new.
+     */
+    public boolean isAlphanumeric(String code) {
+        int hash = Objects.hashCode(code);
+        Table current = table;
+        int id = find(current, code, hash);
+        if (id >= 0) {
+            return current.alphanumeric[id];
+        }
+        return isAlphanumeric(add(code, hash));
+    }
+
+    /**
+     * Returns the number of distinct codes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the canonical instance of the code in the given bytes, decoding
+     * them only when the code is new or not plain ASCII.
+     */
+    String intern(ByteBuffer buffer, int from, int to, Charset charset) {
+        // ASCII bytes encode the same chars in every byte-parsable charset, so they
+        // hash and compare like the String would
+        int hash = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < 0) {
+                return canonical(decode(buffer, from, to, charset));
+            }
+            hash = 31 * hash + b;
+        }
+
+        Table current = table;
+        for (int slot = ByteKeyTable.spread(hash) & current.mask, entry; (entry = current.slots.get(slot)) != 0;
+             slot = (slot + 1) & current.mask) {
+            String code = current.codes[entry - 1];
+            if (code != null && code.hashCode() == hash && matches(code, buffer, from, to)) {
+                return code;
+            }
+        }
+        String code = decode(buffer, from, to, charset);
+        return get(add(code, hash));
+    }
+
+    private static int find(Table current, String code, int hash) {
+        for (int slot = ByteKeyTable.spread(hash) & current.mask, entry; (entry = current.slots.get(slot)) != 0;
+             slot = (slot + 1) & current.mask) {
+            String candidate = current.codes[entry - 1];
+            if (candidate == code || candidate != null && candidate.hashCode() == hash && candidate.equals(code)) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized int add(String code, int hash) {
+        // Another thread may have added it since the lock-free lookup
+        Table current = table;
+        int id = find(current, code, hash);
+        if (id >= 0) {
+            return id;
+        }
+
+        id = size;
+        if (id == current.codes.length || (id + 1) * 2 > current.slots.length()) {
+            current = grow(current);
+        }
+        current.codes[id] = code;
+        current.alphanumeric[id] = checkAlphanumeric(code);
+        current.encoded[id] = code == null ? null : code.getBytes(StandardCharsets.UTF_8);
+        int slot = ByteKeyTable.spread(hash) & current.mask;
+        while (current.slots.get(slot) != 0) {
+            slot = (slot + 1) & current.mask;
+        }
+        current.slots.set(slot, id + 1);
+        size = id + 1;
+        return id;
+    }
+
+    private Table grow(Table current) {
+        int capacity = current.codes.length * 2;
+        Table grown = new Table(capacity * 2, Arrays.copyOf(current.codes, capacity),
+                Arrays.copyOf(current.alphanumeric, capacity), Arrays.copyOf(current.encoded, capacity));
+        for (int id = 0; id < size; id++) {
+            int slot = ByteKeyTable.spread(Objects.hashCode(grown.codes[id])) & grown.mask;
+            while (grown.slots.get(slot) != 0) {
+                slot = (slot + 1) & grown.mask;
+            }
+            grown.slots.set(slot, id + 1);
+        }
+        table = grown;
+        return grown;
+    }
+
+    private int checkId(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("Item code id " + id + " out of bounds for size " + size);
+        }
+        return id;
+    }
+
+    // Same rule as the [a-zA-Z0-9]+ pattern validation used per row
+    private static boolean checkAlphanumeric(String code) {
+        if (code == null || code.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String code, ByteBuffer buffer, int from, int to) {
+        if (code.length() != to - from) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (code.charAt(i - from) != buffer.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer buffer, int from, int to, Charset charset) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, charset);
+    }
+}
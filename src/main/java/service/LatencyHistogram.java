@@ -0,0 +1,77 @@
+package service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ * <p>
+ * Bucket i counts the durations whose highest set bit is bit i, i.e. from 2^i
+ * up to 2^(i+1) - 1 ns, so recording is one array increment and percentiles
+ * are accurate to within a factor of two. Any number of threads can record at
+ * the same time.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one duration; negative durations count as zero.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() { return count.sum(); }
+    public long getTotalNanos() { return totalNanos.sum(); }
+    public long getMaxNanos() { return maxNanos.get(); }
+
+    public double getMeanNanos() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : (double) totalNanos.sum() / recorded;
+    }
+
+    /**
+     * Returns an upper bound of the given percentile, e.g. 99 for p99, or 0 when nothing was recorded.
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            recorded += counts[i];
+        }
+        if (recorded == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(recorded * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(rank, 1)) {
+                // Upper end of the bucket, but never above the largest recorded value
+                long upper = i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                return Math.min(upper, maxNanos.get());
+            }
+        }
+        return maxNanos.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+}
@@ -0,0 +1,258 @@
+package service;
+
+import service.TransactionService.TaxCalculationResult;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Imports, validates and calculates the profit of many transaction files at once,
+ * e.g. one file per branch, and merges their tax results.
+ * <p>
+ * Each file is processed on its own worker, with at most the given number of
+ * files in progress. Every file gets its own result; the consolidated totals
+ * are merged from the per-file {@link TaxAggregator}s in file order, so the
+ * result does not depend on which file finishes first. A file that cannot be
+ * read is reported in its result and does not stop the other files.
+ */
+public class MultiFileTaxCalculator {
+    private final TransactionService transactionService;
+    private final int concurrency;
+
+    /**
+     * Creates a calculator that processes up to concurrency files at the same time.
+     */
+    public MultiFileTaxCalculator(TransactionService transactionService, int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.transactionService = transactionService;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Returns the files of a directory whose names match the glob, e.g. "*.csv", sorted by name.
+     */
+    public static List<Path> findFiles(Path directory, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Processes the files and returns the consolidated result with one breakdown per file.
+     * With keepRows the rows of all files are also returned in one batch, in file order.
+     */
+    public ConsolidatedResult calculate(List<Path> files, double taxRate, boolean keepRows) throws IOException {
+        List<FileOutcome> outcomes = new ArrayList<>(files.size());
+        if (!files.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, files.size()));
+            try {
+                List<Future<FileOutcome>> futures = new ArrayList<>(files.size());
+                for (Path file : files) {
+                    futures.add(executor.submit(() -> process(file, keepRows)));
+                }
+                for (Future<FileOutcome> future : futures) {
+                    outcomes.add(await(future));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        // Merge in file order
+        TaxAggregator total = new TaxAggregator();
+        List<FileTotal> fileTotals = new ArrayList<>(outcomes.size());
+        TransactionBatch rows = null;
+        if (keepRows) {
+            int rowCount = 0;
+            for (FileOutcome outcome : outcomes) {
+                rowCount += outcome.batch == null ? 0 : outcome.batch.size();
+            }
+            rows = new TransactionBatch(rowCount, transactionService.getItemCodeDictionary());
+        }
+        long rowCount = 0;
+        long validCount = 0;
+        for (FileOutcome outcome : outcomes) {
+            total.merge(outcome.totals);
+            rowCount += outcome.rowCount;
+            validCount += outcome.validCount;
+            fileTotals.add(outcome.toFileTotal(taxRate));
+            if (rows != null && outcome.batch != null) {
+                rows.addAll(outcome.batch);
+            }
+        }
+        if (rows != null) {
+            // The rows were validated and calculated per file
+            rows.markValidated(0, rows.size());
+            rows.markProfitsCalculated(0, rows.size());
+            TaxAggregator rowTotals = new TaxAggregator();
+            rowTotals.merge(total);
+            rows.setValidTotals(rowTotals);
+        }
+
+        TaxCalculationResult result = total.toResult(taxRate);
+        return new ConsolidatedResult(fileTotals, rows, rowCount, validCount, result.getTotalProfit(),
+                result.getTotalLoss(), result.getNetProfit(), result.getTax());
+    }
+
+    /**
+     * Imports, validates and calculates the profit of one file on the current worker.
+     */
+    private FileOutcome process(Path file, boolean keepRows) {
+        TransactionBatch batch;
+        try {
+            batch = transactionService.importTransactionBatch(file.toString(), 1);
+        } catch (IOException e) {
+            return new FileOutcome(file, e);
+        }
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+
+        TaxAggregator totals = new TaxAggregator();
+        int valid = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            if (batch.isValid(row)) {
+                totals.add(batch.getProfit(row));
+                valid++;
+            }
+        }
+        return new FileOutcome(file, totals, batch.size(), valid, keepRows ? batch : null);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * What a worker found for one file, before the tax rate is applied.
+     */
+    private static class FileOutcome {
+        final Path file;
+        final TaxAggregator totals;
+        final int rowCount;
+        final int validCount;
+        final TransactionBatch batch;
+        final String error;
+
+        FileOutcome(Path file, TaxAggregator totals, int rowCount, int validCount, TransactionBatch batch) {
+            this.file = file;
+            this.totals = totals;
+            this.rowCount = rowCount;
+            this.validCount = validCount;
+            this.batch = batch;
+            this.error = null;
+        }
+
+        FileOutcome(Path file, IOException error) {
+            this.file = file;
+            this.totals = new TaxAggregator();
+            this.rowCount = 0;
+            this.validCount = 0;
+            this.batch = null;
+            this.error = error.getMessage() == null ? error.toString() : error.getMessage();
+        }
+
+        FileTotal toFileTotal(double taxRate) {
+            TaxCalculationResult result = totals.toResult(taxRate);
+            return new FileTotal(file, rowCount, validCount, error, result.getTotalProfit(),
+                    result.getTotalLoss(), result.getNetProfit(), result.getTax());
+        }
+    }
+
+    /**
+     * Tax result of one file plus its row counts. A file that could not be read has an error and no rows.
+     */
+    public static class FileTotal extends TaxCalculationResult {
+        private final Path file;
+        private final int rowCount;
+        private final int validCount;
+        private final String error;
+
+        public FileTotal(Path file, int rowCount, int validCount, String error,
+                         double totalProfit, double totalLoss, double netProfit, double tax) {
+            super(totalProfit, totalLoss, netProfit, tax);
+            this.file = file;
+            this.rowCount = rowCount;
+            this.validCount = validCount;
+            this.error = error;
+        }
+
+        public Path getFile() { return file; }
+        public int getRowCount() { return rowCount; }
+        public int getValidCount() { return validCount; }
+        public String getError() { return error; }
+        public boolean isFailed() { return error != null; }
+    }
+
+    /**
+     * Tax result of all files together with the breakdown per file.
+     */
+    public static class ConsolidatedResult extends TaxCalculationResult {
+        private final List<FileTotal> files;
+        private final TransactionBatch rows;
+        private final long rowCount;
+        private final long validCount;
+
+        public ConsolidatedResult(List<FileTotal> files, TransactionBatch rows, long rowCount, long validCount,
+                                  double totalProfit, double totalLoss, double netProfit, double tax) {
+            super(totalProfit, totalLoss, netProfit, tax);
+            this.files = Collections.unmodifiableList(files);
+            this.rows = rows;
+            this.rowCount = rowCount;
+            this.validCount = validCount;
+        }
+
+        public List<FileTotal> getFiles() { return files; }
+        public long getRowCount() { return rowCount; }
+        public long getValidCount() { return validCount; }
+
+        /**
+         * Returns the rows of all files, or null when they were not kept.
+         */
+        public TransactionBatch getRows() { return rows; }
+
+        /**
+         * Returns the number of files that could not be read.
+         */
+        public int getFailedCount() {
+            int failed = 0;
+            for (FileTotal file : files) {
+                if (file.isFailed()) {
+                    failed++;
+                }
+            }
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package service;
+
+import org.iit.Transaction;
+import service.TransactionMetrics.SkipReason;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Parses a transaction CSV file on several threads.
+ * <p>
+ * The file is split into newline-aligned chunks, each chunk is memory-mapped and
+ * parsed from bytes on a worker thread, and the per-chunk results are merged in
+ * file order. The result is identical to
+ * {@link TransactionService#importTransactionsFromFile(String)}, including the
+ * silent skipping of malformed lines.
+ */
+public class ParallelTransactionParser {
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+
+    private final int threads;
+    private final long chunkSize;
+    private final Charset charset;
+    private final ItemCodeDictionary itemCodes;
+    // Rejected lines per reason, merged from all chunks
+    private final long[] skipped = new long[SkipReason.values().length];
+
+    /**
+     * Creates a parser using the given number of worker threads.
+     */
+    public ParallelTransactionParser(int threads) {
+        this(threads, 0, Charset.defaultCharset());
+    }
+
+    /**
+     * Creates a parser with a fixed chunk size, or 0 to size chunks from the file.
+     */
+    ParallelTransactionParser(int threads, long chunkSize, Charset charset) {
+        this(threads, chunkSize, charset, new ItemCodeDictionary());
+    }
+
+    /**
+     * Creates a parser that shares the item codes of the dictionary, e.g. the one of a service.
+     */
+    ParallelTransactionParser(int threads, long chunkSize, Charset charset, ItemCodeDictionary itemCodes) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+        this.charset = charset;
+        this.itemCodes = itemCodes;
+    }
+
+    /**
+     * Returns true when files in the given charset can be parsed by this class.
+     */
+    public static boolean supports(Charset charset) {
+        return TransactionLineParser.supports(charset);
+    }
+
+    /**
+     * Returns how many lines were rejected for the given reason by all parses so far.
+     */
+    synchronized long getSkipped(SkipReason reason) {
+        return skipped[reason.ordinal()];
+    }
+
+    /**
+     * Parses all transactions in the file, in file order.
+     */
+    public List<Transaction> parse(Path file) throws IOException {
+        List<List<Transaction>> chunks = parseChunks(file, ArrayList::new,
+                (parser, buffer, start, end, transactions) -> {
+                    Transaction transaction = parser.parse(buffer, start, end);
+                    if (transaction != null) {
+                        transactions.add(transaction);
+                    }
+                });
+
+        // Merge chunk results in file order
+        int total = 0;
+        for (List<Transaction> chunk : chunks) {
+            total += chunk.size();
+        }
+        List<Transaction> transactions = new ArrayList<>(total);
+        for (List<Transaction> chunk : chunks) {
+            transactions.addAll(chunk);
+        }
+        return transactions;
+    }
+
+    /**
+     * Parses all transactions in the file into a columnar batch, in file order.
+     */
+    public TransactionBatch parseBatch(Path file) throws IOException {
+        List<TransactionBatch> chunks = parseChunks(file, () -> new TransactionBatch(itemCodes),
+                (parser, buffer, start, end, batch) -> parser.parseInto(buffer, start, end, batch));
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+
+        int total = 0;
+        for (TransactionBatch chunk : chunks) {
+            total += chunk.size();
+        }
+        TransactionBatch batch = new TransactionBatch(total, itemCodes);
+        for (TransactionBatch chunk : chunks) {
+            batch.addAll(chunk);
+        }
+        return batch;
+    }
+
+    /**
+     * Parses the file into one columnar batch per chunk and hands each batch to the
+     * consumer on the calling thread, in file order, as soon as it and the chunks
+     * before it are parsed. An exception thrown by the consumer stops the parse.
+     */
+    public void parseBatches(Path file, Consumer<TransactionBatch> chunkConsumer) throws IOException {
+        parseChunks(file, () -> new TransactionBatch(itemCodes),
+                (parser, buffer, start, end, batch) -> parser.parseInto(buffer, start, end, batch), chunkConsumer);
+    }
+
+    /**
+     * Parses every chunk of the file into its own result, returned in file order.
+     */
+    private <T> List<T> parseChunks(Path file, Supplier<T> resultFactory, LineSink<T> sink) throws IOException {
+        List<T> results = new ArrayList<>();
+        parseChunks(file, resultFactory, sink, results::add);
+        return results;
+    }
+
+    /**
+     * Parses every chunk of the file into its own result and hands the results to
+     * the consumer in file order while later chunks are still being parsed.
+     */
+    private <T> void parseChunks(Path file, Supplier<T> resultFactory, LineSink<T> sink,
+                                 Consumer<T> resultConsumer) throws IOException {
+        if (!supports(charset)) {
+            throw new IOException("Unsupported charset for byte parsing: " + charset);
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = chunkBoundaries(channel);
+            int chunkCount = boundaries.length - 1;
+            if (chunkCount == 1) {
+                resultConsumer.accept(parseChunk(channel, boundaries[0], boundaries[1], resultFactory.get(), sink));
+                return;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunkCount));
+            try {
+                List<Future<T>> futures = new ArrayList<>(chunkCount);
+                for (int i = 0; i < chunkCount; i++) {
+                    long start = boundaries[i];
+                    long end = boundaries[i + 1];
+                    futures.add(executor.submit(() -> parseChunk(channel, start, end, resultFactory.get(), sink)));
+                }
+
+                for (int i = 0; i < chunkCount; i++) {
+                    // Dropped once handed over, so the consumer decides how long a result is kept
+                    resultConsumer.accept(await(futures.set(i, null)));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits the file into chunks that each start right after a line feed.
+     */
+    private long[] chunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long targetSize = chunkSize > 0 ? chunkSize
+                : Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (threads * 4L)));
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        long position = 0;
+        while (size - position > targetSize) {
+            long next = lineStartAfter(channel, position + targetSize);
+            if (next >= size) {
+                break;
+            }
+            if (next - position > Integer.MAX_VALUE) {
+                throw new IOException("Line too long near offset " + position);
+            }
+            boundaries.add(next);
+            position = next;
+        }
+        if (size - position > Integer.MAX_VALUE) {
+            throw new IOException("Line too long near offset " + position);
+        }
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the offset just past the first line feed at or after position.
+     */
+    private static long lineStartAfter(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Maps and parses one chunk. Lines end at \n, \r or \r\n like BufferedReader.readLine.
+     */
+    private <T> T parseChunk(FileChannel channel, long start, long end, T result, LineSink<T> sink) throws IOException {
+        if (end == start) {
+            return result;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        TransactionLineParser parser = new TransactionLineParser(charset, itemCodes);
+
+        int limit = buffer.limit();
+        int lineStart = 0;
+        int i = 0;
+        while (i < limit) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                sink.accept(parser, buffer, lineStart, i, result);
+                i++;
+                if (b == '\r' && i < limit && buffer.get(i) == '\n') {
+                    i++;
+                }
+                lineStart = i;
+            } else {
+                i++;
+            }
+        }
+        if (lineStart < limit) {
+            sink.accept(parser, buffer, lineStart, limit, result);
+        }
+        synchronized (this) {
+            for (SkipReason reason : SkipReason.values()) {
+                skipped[reason.ordinal()] += parser.getSkipped(reason);
+            }
+        }
+        return result;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Receives each line of a chunk together with the chunk's result.
+     */
+    private interface LineSink<T> {
+        void accept(TransactionLineParser parser, ByteBuffer buffer, int start, int end, T result);
+    }
+}
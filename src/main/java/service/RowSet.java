@@ -0,0 +1,132 @@
+package service;
+
+import java.util.Arrays;
+
+/**
+ * Set of row numbers kept as a two-level bitmap.
+ * <p>
+ * Besides one bit per row there is one summary bit per 64-row word telling
+ * whether the word has any bit set, so finding the next row skips 4096 empty
+ * rows per summary word. A handful of changed rows among millions is found in
+ * microseconds, where a flat bitmap would scan every word.
+ */
+final class RowSet {
+    private long[] words = new long[16];
+    private long[] summary = new long[1];
+
+    void add(int row) {
+        int word = row >>> 6;
+        if (word >= words.length) {
+            grow(word);
+        }
+        words[word] |= 1L << row;
+        summary[word >>> 6] |= 1L << word;
+    }
+
+    void remove(int row) {
+        int word = row >>> 6;
+        if (word < words.length && (words[word] &= ~(1L << row)) == 0) {
+            summary[word >>> 6] &= ~(1L << word);
+        }
+    }
+
+    boolean contains(int row) {
+        int word = row >>> 6;
+        return word < words.length && (words[word] & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns the first row in the set at or after from, or -1 when there is none.
+     */
+    int next(int from) {
+        int word = from >>> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        if (bits != 0) {
+            return (word << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        // Find the next non-empty word through the summary
+        int summaryWord = (word + 1) >>> 6;
+        if (summaryWord >= summary.length) {
+            return -1;
+        }
+        long nonEmpty = summary[summaryWord] & (-1L << (word + 1));
+        while (nonEmpty == 0) {
+            if (++summaryWord == summary.length) {
+                return -1;
+            }
+            nonEmpty = summary[summaryWord];
+        }
+        word = (summaryWord << 6) + Long.numberOfTrailingZeros(nonEmpty);
+        return (word << 6) + Long.numberOfTrailingZeros(words[word]);
+    }
+
+    /**
+     * Adds every row in [0, size).
+     */
+    void addAll(int size) {
+        if (size == 0) {
+            return;
+        }
+        int lastWord = (size - 1) >>> 6;
+        if (lastWord >= words.length) {
+            grow(lastWord);
+        }
+        Arrays.fill(words, 0, lastWord, -1L);
+        words[lastWord] |= -1L >>> (63 - ((size - 1) & 63));
+        for (int word = 0; word <= lastWord; word++) {
+            summary[word >>> 6] |= 1L << word;
+        }
+    }
+
+    /**
+     * Removes every row in [from, to).
+     */
+    void removeRange(int from, int to) {
+        for (int row = next(from); row >= 0 && row < to; row = next(row + 1)) {
+            remove(row);
+        }
+    }
+
+    /**
+     * Returns the number of rows in the set.
+     */
+    int size() {
+        int count = 0;
+        for (int summaryWord = 0; summaryWord < summary.length; summaryWord++) {
+            for (long nonEmpty = summary[summaryWord]; nonEmpty != 0; nonEmpty &= nonEmpty - 1) {
+                count += Long.bitCount(words[(summaryWord << 6) + Long.numberOfTrailingZeros(nonEmpty)]);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Takes out a deleted row and moves the rows after it down by one.
+     */
+    void removeRow(int row) {
+        remove(row);
+        for (int next = next(row + 1); next >= 0; next = next(next + 1)) {
+            remove(next);
+            add(next - 1);
+        }
+    }
+
+    /**
+     * Returns an independent copy of the set.
+     */
+    RowSet copy() {
+        RowSet copy = new RowSet();
+        copy.words = words.clone();
+        copy.summary = summary.clone();
+        return copy;
+    }
+
+    private void grow(int word) {
+        int length = Math.max(words.length * 2, word + 1);
+        words = Arrays.copyOf(words, length);
+        summary = Arrays.copyOf(summary, (length + 63) >>> 6);
+    }
+}
@@ -0,0 +1,36 @@
+package service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one call of a processing stage, committed by {@link StageTimer}.
+ * Its duration is the time the call took.
+ */
+@Name("service.TransactionStage")
+@Label("Transaction Stage")
+@Category("Transactions")
+@Description("One call of a transaction processing stage")
+@StackTrace(false)
+class StageEvent extends jdk.jfr.Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Skipped Rows")
+    long skippedRows;
+
+    @Label("Bytes Read")
+    @DataAmount
+    long bytesRead;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
@@ -0,0 +1,100 @@
+package service;
+
+import service.TransactionMetrics.SkipReason;
+import service.TransactionMetrics.Stage;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of one processing stage.
+ * <p>
+ * All counters are {@link LongAdder}s, which spread concurrent updates over
+ * separate cells, so worker threads can record without contending.
+ */
+public class StageMetrics implements StageMetricsMXBean {
+    private final Stage stage;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder[] skipped = new LongAdder[SkipReason.values().length];
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LatencyHistogram times = new LatencyHistogram();
+
+    StageMetrics(Stage stage) {
+        this.stage = stage;
+        for (int i = 0; i < skipped.length; i++) {
+            skipped[i] = new LongAdder();
+        }
+    }
+
+    public Stage getStage() { return stage; }
+
+    /**
+     * Returns the histogram of the time each call took.
+     */
+    public LatencyHistogram getTimes() { return times; }
+
+    // Recording
+    void addRows(long count) { rows.add(count); }
+    void addSkipped(SkipReason reason, long count) { skipped[reason.ordinal()].add(count); }
+    void skip(SkipReason reason) { skipped[reason.ordinal()].increment(); }
+    void addBytesRead(long count) { bytesRead.add(count); }
+
+    void recordCall(long nanos, long allocated) {
+        calls.increment();
+        times.record(nanos);
+        if (allocated > 0) {
+            allocatedBytes.add(allocated);
+        }
+    }
+
+    @Override public long getCalls() { return calls.sum(); }
+    @Override public long getRows() { return rows.sum(); }
+    @Override public long getBytesRead() { return bytesRead.sum(); }
+    @Override public long getAllocatedBytes() { return allocatedBytes.sum(); }
+
+    public long getSkippedRows(SkipReason reason) {
+        return skipped[reason.ordinal()].sum();
+    }
+
+    @Override
+    public long getSkippedRows() {
+        long total = 0;
+        for (LongAdder count : skipped) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getSkippedRowsByReason() {
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (SkipReason reason : SkipReason.values()) {
+            long count = getSkippedRows(reason);
+            if (count > 0) {
+                byReason.put(reason.name(), count);
+            }
+        }
+        return byReason;
+    }
+
+    @Override public double getTotalTimeMillis() { return times.getTotalNanos() / 1e6; }
+    @Override public double getMeanTimeMillis() { return times.getMeanNanos() / 1e6; }
+    @Override public double getP50TimeMillis() { return times.getPercentileNanos(50) / 1e6; }
+    @Override public double getP99TimeMillis() { return times.getPercentileNanos(99) / 1e6; }
+    @Override public double getMaxTimeMillis() { return times.getMaxNanos() / 1e6; }
+
+    @Override
+    public void reset() {
+        calls.reset();
+        rows.reset();
+        for (LongAdder count : skipped) {
+            count.reset();
+        }
+        bytesRead.reset();
+        allocatedBytes.reset();
+        times.reset();
+    }
+}
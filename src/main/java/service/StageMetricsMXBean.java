@@ -0,0 +1,22 @@
+package service;
+
+import java.util.Map;
+
+/**
+ * JMX view of the metrics of one processing stage, registered by
+ * {@link TransactionMetrics#registerMBeans()}.
+ */
+public interface StageMetricsMXBean {
+    long getCalls();
+    long getRows();
+    long getSkippedRows();
+    Map<String, Long> getSkippedRowsByReason();
+    long getBytesRead();
+    long getAllocatedBytes();
+    double getTotalTimeMillis();
+    double getMeanTimeMillis();
+    double getP50TimeMillis();
+    double getP99TimeMillis();
+    double getMaxTimeMillis();
+    void reset();
+}
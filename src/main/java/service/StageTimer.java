@@ -0,0 +1,72 @@
+package service;
+
+import jdk.jfr.FlightRecorder;
+import service.TransactionMetrics.SkipReason;
+
+/**
+ * Times one call of a stage and collects what it processed, then records it all
+ * in the stage's metrics and as a JFR event when closed. Used by one thread.
+ * <p>
+ * Registering the event class is slow, so it is only loaded once Flight Recorder
+ * has been started, e.g. with {@code -XX:StartFlightRecording} or {@code jcmd}.
+ */
+final class StageTimer implements AutoCloseable {
+    private final StageMetrics metrics;
+    // Null while Flight Recorder is not running
+    private final StageEvent event = FlightRecorder.isInitialized() ? new StageEvent() : null;
+    private final long startNanos;
+    private final long startAllocated;
+    private long rows;
+    private long skipped;
+    private long bytesRead;
+
+    StageTimer(StageMetrics metrics) {
+        this.metrics = metrics;
+        if (event != null) {
+            event.begin();
+        }
+        startAllocated = TransactionMetrics.allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    void addRows(long count) {
+        rows += count;
+    }
+
+    void skip(SkipReason reason) {
+        skip(reason, 1);
+    }
+
+    void skip(SkipReason reason, long count) {
+        if (count > 0) {
+            metrics.addSkipped(reason, count);
+            skipped += count;
+        }
+    }
+
+    void addBytesRead(long count) {
+        bytesRead += count;
+    }
+
+    @Override
+    public void close() {
+        long nanos = System.nanoTime() - startNanos;
+        long allocated = startAllocated < 0 ? 0 : TransactionMetrics.allocatedBytes() - startAllocated;
+        metrics.addRows(rows);
+        metrics.addBytesRead(bytesRead);
+        metrics.recordCall(nanos, allocated);
+
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = metrics.getStage().name();
+            event.rows = rows;
+            event.skippedRows = skipped;
+            event.bytesRead = bytesRead;
+            event.allocatedBytes = allocated;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package service;
+
+import service.TransactionService.TaxCalculationResult;
+
+/**
+ * Accumulates profit and loss totals for tax calculation.
+ * <p>
+ * Totals are kept with Neumaier compensated summation, so summing millions of
+ * profits does not drift the way a plain double sum does. Aggregators filled
+ * on different threads can be combined with {@link #merge(TaxAggregator)}.
+ */
+public class TaxAggregator {
+    private final CompensatedSum totalProfit = new CompensatedSum();
+    private final CompensatedSum totalLoss = new CompensatedSum();
+    private long count;
+
+    /**
+     * Adds the profit of one valid transaction; negative profits count as loss.
+     */
+    public void add(double profit) {
+        if (profit > 0) {
+            totalProfit.add(profit);
+        } else {
+            totalLoss.add(Math.abs(profit));
+        }
+        count++;
+    }
+
+    /**
+     * Takes back the profit of a transaction added earlier, e.g. after it was edited.
+     */
+    public void remove(double profit) {
+        if (profit > 0) {
+            totalProfit.add(-profit);
+        } else {
+            totalLoss.add(-Math.abs(profit));
+        }
+        count--;
+    }
+
+    /**
+     * Adds the totals of another aggregator to this one.
+     */
+    public void merge(TaxAggregator other) {
+        totalProfit.add(other.totalProfit);
+        totalLoss.add(other.totalLoss);
+        count += other.count;
+    }
+
+    // Getters for the accumulated totals
+    public double getTotalProfit() { return totalProfit.value(); }
+    public double getTotalLoss() { return totalLoss.value(); }
+    public long getCount() { return count; }
+
+    /**
+     * Returns the tax calculation result for the accumulated totals.
+     */
+    public TaxCalculationResult toResult(double taxRate) {
+        double profit = getTotalProfit();
+        double loss = getTotalLoss();
+        double netProfit = profit - loss;
+        return new TaxCalculationResult(profit, loss, netProfit, netProfit * taxRate / 100);
+    }
+
+    /**
+     * Returns the low-order bits lost when sum and value were added into total,
+     * the Neumaier step shared by every compensated sum, including the ones kept
+     * in primitive arrays.
+     */
+    static double roundingError(double sum, double value, double total) {
+        if (Math.abs(sum) >= Math.abs(value)) {
+            return (sum - total) + value;
+        }
+        return (value - total) + sum;
+    }
+
+    /**
+     * Running sum with a compensation term for lost low-order bits.
+     */
+    static class CompensatedSum {
+        private double sum;
+        private double compensation;
+
+        void add(double value) {
+            double total = sum + value;
+            compensation += roundingError(sum, value, total);
+            sum = total;
+        }
+
+        void add(CompensatedSum other) {
+            add(other.sum);
+            add(other.compensation);
+        }
+
+        double value() {
+            return sum + compensation;
+        }
+    }
+}
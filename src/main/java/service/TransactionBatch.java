@@ -0,0 +1,671 @@
+package service;
+
+import service.TaxAggregator.CompensatedSum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Columnar container for transaction rows.
+ * <p>
+ * Each field is kept in its own primitive array, item codes are dictionary
+ * encoded and bill numbers are kept as UTF-8 bytes in a shared pool, so a row
+ * costs a few dozen bytes instead of a full {@link org.iit.Transaction} with
+ * its JavaFX properties. This class has no JavaFX dependency and is meant for
+ * headless and bulk processing.
+ * <p>
+ * The batch remembers which rows were added or replaced since they were last
+ * validated and since their profit was last calculated, so that only those rows
+ * have to be processed again. Once the totals of the valid rows have been
+ * calculated, every later change to a row adjusts them by its difference.
+ * The number of valid rows and the sum of all profits are kept the same way
+ * from the start, so summaries of the batch never have to scan it.
+ */
+public class TransactionBatch {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int NULL_LENGTH = -1;
+    // Flags of pending(int)
+    static final int PENDING_VALIDATION = 1;
+    static final int PENDING_PROFIT = 2;
+
+    private int size;
+    // Bill numbers are slices of the byte pool
+    private int[] billNumberStarts;
+    private int[] billNumberLengths;
+    private byte[] billNumberPool = new byte[4096];
+    private int billNumberPoolSize;
+    private int[] itemCodeIds;
+    private double[] internalPrices;
+    private double[] salePrices;
+    private int[] quantities;
+    private double[] discounts;
+    private int[] checksums;
+    private double[] profits;
+    private int[] validationCodes;
+    private int[] calculatedChecksums;
+
+    // Rows changed since they were last validated, and since their profit was last calculated
+    private RowSet rowsToValidate = new RowSet();
+    private RowSet rowsToCalculateProfit = new RowSet();
+    // Profit and loss of the valid rows, null until calculated
+    private TaxAggregator validTotals;
+    // Number of valid rows and sum of the profits of all rows, adjusted by every change
+    // unless counting was stopped while rows are changed from several threads
+    private int validCount;
+    private CompensatedSum profitSum = new CompensatedSum();
+    private boolean counting = true;
+    // Changes since the count was last read, e.g. by a TransactionIndex
+    private int modificationCount;
+    private boolean modificationCountRead;
+
+    // Rows per bill number, built on first use and dropped by bulk changes
+    private BillRowIndex billRows;
+
+    // Item code dictionary, shared with the other batches of a session
+    private final ItemCodeDictionary itemCodes;
+
+    /**
+     * Creates an empty batch.
+     */
+    public TransactionBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty batch whose item code ids come from the given dictionary.
+     */
+    public TransactionBatch(ItemCodeDictionary itemCodes) {
+        this(DEFAULT_CAPACITY, itemCodes);
+    }
+
+    /**
+     * Creates an empty batch with room for the given number of rows.
+     */
+    public TransactionBatch(int capacity) {
+        this(capacity, new ItemCodeDictionary());
+    }
+
+    /**
+     * Creates an empty batch with room for the given number of rows, whose item
+     * code ids come from the given dictionary.
+     */
+    public TransactionBatch(int capacity, ItemCodeDictionary itemCodes) {
+        this.itemCodes = Objects.requireNonNull(itemCodes, "itemCodes");
+        capacity = Math.max(capacity, 1);
+        billNumberStarts = new int[capacity];
+        billNumberLengths = new int[capacity];
+        itemCodeIds = new int[capacity];
+        internalPrices = new double[capacity];
+        salePrices = new double[capacity];
+        quantities = new int[capacity];
+        discounts = new double[capacity];
+        checksums = new int[capacity];
+        profits = new double[capacity];
+        validationCodes = new int[capacity];
+        calculatedChecksums = new int[capacity];
+    }
+
+    /**
+     * Appends a row and returns its index.
+     */
+    public int add(String billNumber, String itemCode, double internalPrice, double salePrice,
+                   int quantity, double discount, int checksum) {
+        if (size == itemCodeIds.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        write(row, billNumber, itemCode, internalPrice, salePrice, quantity, discount, checksum);
+        if (billRows != null) {
+            billRows.add(billNumberPool, billNumberStarts[row], billNumberLengths[row]);
+        }
+        return row;
+    }
+
+    /**
+     * Replaces the fields of a row. The profit is cleared and the row becomes not validated.
+     */
+    public void set(int row, String billNumber, String itemCode, double internalPrice, double salePrice,
+                    int quantity, double discount, int checksum) {
+        untrack(checkRow(row));
+        write(row, billNumber, itemCode, internalPrice, salePrice, quantity, discount, checksum);
+        if (billRows != null) {
+            billRows.replace(row, billNumberPool, billNumberStarts[row], billNumberLengths[row]);
+        }
+    }
+
+    private void write(int row, String billNumber, String itemCode, double internalPrice, double salePrice,
+                       int quantity, double discount, int checksum) {
+        setBillNumber(row, billNumber);
+        itemCodeIds[row] = itemCodeId(itemCode);
+        internalPrices[row] = internalPrice;
+        salePrices[row] = salePrice;
+        quantities[row] = quantity;
+        discounts[row] = discount;
+        checksums[row] = checksum;
+        profits[row] = 0;
+        validationCodes[row] = ValidationCode.NOT_VALIDATED;
+        calculatedChecksums[row] = checksum;
+        rowsToValidate.add(row);
+        rowsToCalculateProfit.add(row);
+        modified();
+    }
+
+    /**
+     * Appends all rows of another batch, including computed profit and validation
+     * and which rows still have to be processed.
+     * <p>
+     * The columns and the bill number pool are copied as blocks. Item code ids
+     * are copied as they are when both batches use the same dictionary, and
+     * otherwise looked up once per distinct code.
+     */
+    public void addAll(TransactionBatch other) {
+        int count = other.size;
+        if (count == 0) {
+            return;
+        }
+        int first = size;
+        if ((long) first + count > itemCodeIds.length) {
+            grow((int) Math.min(Math.max((long) first + count, 2L * itemCodeIds.length), Integer.MAX_VALUE - 8));
+        }
+
+        int poolOffset = billNumberPoolSize;
+        reservePool(other.billNumberPoolSize);
+        System.arraycopy(other.billNumberPool, 0, billNumberPool, poolOffset, other.billNumberPoolSize);
+        billNumberPoolSize += other.billNumberPoolSize;
+        System.arraycopy(other.billNumberLengths, 0, billNumberLengths, first, count);
+        for (int row = 0; row < count; row++) {
+            int length = other.billNumberLengths[row];
+            billNumberStarts[first + row] = length == NULL_LENGTH ? 0 : other.billNumberStarts[row] + poolOffset;
+        }
+
+        if (other.itemCodes == itemCodes) {
+            System.arraycopy(other.itemCodeIds, 0, itemCodeIds, first, count);
+        } else {
+            int[] idMap = new int[other.itemCodes.size()];
+            Arrays.fill(idMap, -1);
+            for (int row = 0; row < count; row++) {
+                int id = other.itemCodeIds[row];
+                if (idMap[id] < 0) {
+                    idMap[id] = itemCodes.idOf(other.itemCodes.get(id));
+                }
+                itemCodeIds[first + row] = idMap[id];
+            }
+        }
+
+        System.arraycopy(other.internalPrices, 0, internalPrices, first, count);
+        System.arraycopy(other.salePrices, 0, salePrices, first, count);
+        System.arraycopy(other.quantities, 0, quantities, first, count);
+        System.arraycopy(other.discounts, 0, discounts, first, count);
+        System.arraycopy(other.checksums, 0, checksums, first, count);
+        System.arraycopy(other.profits, 0, profits, first, count);
+        System.arraycopy(other.validationCodes, 0, validationCodes, first, count);
+        System.arraycopy(other.calculatedChecksums, 0, calculatedChecksums, first, count);
+        for (int row = other.rowsToValidate.next(0); row >= 0; row = other.rowsToValidate.next(row + 1)) {
+            rowsToValidate.add(first + row);
+        }
+        for (int row = other.rowsToCalculateProfit.next(0); row >= 0;
+             row = other.rowsToCalculateProfit.next(row + 1)) {
+            rowsToCalculateProfit.add(first + row);
+        }
+        size += count;
+        billRows = null;
+
+        if (counting && other.counting) {
+            validCount += other.validCount;
+            profitSum.add(other.profitSum);
+        }
+        if (validTotals != null && other.validTotals != null) {
+            validTotals.merge(other.validTotals);
+        } else if (validTotals != null || counting && !other.counting) {
+            for (int row = first; row < size; row++) {
+                boolean valid = ValidationCode.isValid(validationCodes[row]);
+                if (validTotals != null && valid) {
+                    validTotals.add(profits[row]);
+                }
+                if (counting && !other.counting) {
+                    validCount += valid ? 1 : 0;
+                    profitSum.add(profits[row]);
+                }
+            }
+        }
+        modified();
+    }
+
+    /**
+     * Removes one row, shifting the rows after it up by one.
+     */
+    public void remove(int row) {
+        untrack(checkRow(row));
+        rowsToValidate.removeRow(row);
+        rowsToCalculateProfit.removeRow(row);
+        int moved = size - row - 1;
+        System.arraycopy(billNumberStarts, row + 1, billNumberStarts, row, moved);
+        System.arraycopy(billNumberLengths, row + 1, billNumberLengths, row, moved);
+        System.arraycopy(itemCodeIds, row + 1, itemCodeIds, row, moved);
+        System.arraycopy(internalPrices, row + 1, internalPrices, row, moved);
+        System.arraycopy(salePrices, row + 1, salePrices, row, moved);
+        System.arraycopy(quantities, row + 1, quantities, row, moved);
+        System.arraycopy(discounts, row + 1, discounts, row, moved);
+        System.arraycopy(checksums, row + 1, checksums, row, moved);
+        System.arraycopy(profits, row + 1, profits, row, moved);
+        System.arraycopy(validationCodes, row + 1, validationCodes, row, moved);
+        System.arraycopy(calculatedChecksums, row + 1, calculatedChecksums, row, moved);
+        size--;
+        if (billRows != null) {
+            billRows.remove(row);
+        }
+        modified();
+    }
+
+    /**
+     * Removes the rows for which keep is false, preserving the order of the rest.
+     */
+    void retainRows(boolean[] keep) {
+        RowSet keptToValidate = new RowSet();
+        RowSet keptToCalculateProfit = new RowSet();
+        int target = 0;
+        for (int row = 0; row < size; row++) {
+            if (!keep[row]) {
+                untrack(row);
+            } else {
+                if (rowsToValidate.contains(row)) {
+                    keptToValidate.add(target);
+                }
+                if (rowsToCalculateProfit.contains(row)) {
+                    keptToCalculateProfit.add(target);
+                }
+                if (target != row) {
+                    billNumberStarts[target] = billNumberStarts[row];
+                    billNumberLengths[target] = billNumberLengths[row];
+                    itemCodeIds[target] = itemCodeIds[row];
+                    internalPrices[target] = internalPrices[row];
+                    salePrices[target] = salePrices[row];
+                    quantities[target] = quantities[row];
+                    discounts[target] = discounts[row];
+                    checksums[target] = checksums[row];
+                    profits[target] = profits[row];
+                    validationCodes[target] = validationCodes[row];
+                    calculatedChecksums[target] = calculatedChecksums[row];
+                }
+                target++;
+            }
+        }
+        size = target;
+        billRows = null;
+        rowsToValidate = keptToValidate;
+        rowsToCalculateProfit = keptToCalculateProfit;
+        modified();
+    }
+
+    /**
+     * Returns a new batch of the rows for which keep is true, in order, leaving this
+     * batch unchanged, e.g. while another thread still reads it.
+     */
+    TransactionBatch copyRows(boolean[] keep) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (keep[row]) {
+                count++;
+            }
+        }
+        TransactionBatch copy = new TransactionBatch(count, itemCodes);
+        copy.billNumberPool = Arrays.copyOf(billNumberPool, Math.max(billNumberPoolSize, 1));
+        copy.billNumberPoolSize = billNumberPoolSize;
+        int target = 0;
+        for (int row = 0; row < size; row++) {
+            if (!keep[row]) {
+                continue;
+            }
+            if (rowsToValidate.contains(row)) {
+                copy.rowsToValidate.add(target);
+            }
+            if (rowsToCalculateProfit.contains(row)) {
+                copy.rowsToCalculateProfit.add(target);
+            }
+            copy.billNumberStarts[target] = billNumberStarts[row];
+            copy.billNumberLengths[target] = billNumberLengths[row];
+            copy.itemCodeIds[target] = itemCodeIds[row];
+            copy.internalPrices[target] = internalPrices[row];
+            copy.salePrices[target] = salePrices[row];
+            copy.quantities[target] = quantities[row];
+            copy.discounts[target] = discounts[row];
+            copy.checksums[target] = checksums[row];
+            copy.profits[target] = profits[row];
+            copy.validationCodes[target] = validationCodes[row];
+            copy.calculatedChecksums[target] = calculatedChecksums[row];
+            if (ValidationCode.isValid(validationCodes[row])) {
+                copy.validCount++;
+            }
+            copy.profitSum.add(profits[row]);
+            target++;
+        }
+        copy.size = count;
+        return copy;
+    }
+
+    private void modified() {
+        // Only the first change after a read writes the count, so threads changing
+        // different rows in parallel do not all write the same field
+        if (modificationCountRead) {
+            modificationCountRead = false;
+            modificationCount++;
+        }
+    }
+
+    // Takes a row out of the valid totals, e.g. before it is replaced or removed
+    private void untrack(int row) {
+        boolean valid = ValidationCode.isValid(validationCodes[row]);
+        if (validTotals != null && valid) {
+            validTotals.remove(profits[row]);
+        }
+        if (counting) {
+            validCount -= valid ? 1 : 0;
+            profitSum.add(-profits[row]);
+        }
+    }
+
+    private void setBillNumber(int row, String billNumber) {
+        if (billNumber == null) {
+            billNumberStarts[row] = 0;
+            billNumberLengths[row] = NULL_LENGTH;
+            return;
+        }
+        // Replaced and removed bill numbers stay in the pool until the batch is dropped
+        byte[] bytes = billNumber.getBytes(StandardCharsets.UTF_8);
+        reservePool(bytes.length);
+        System.arraycopy(bytes, 0, billNumberPool, billNumberPoolSize, bytes.length);
+        billNumberStarts[row] = billNumberPoolSize;
+        billNumberLengths[row] = bytes.length;
+        billNumberPoolSize += bytes.length;
+    }
+
+    private void reservePool(int length) {
+        if (billNumberPool.length - billNumberPoolSize < length) {
+            long capacity = Math.max(2L * billNumberPool.length, (long) billNumberPoolSize + length);
+            if (capacity > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("Bill number storage is full");
+            }
+            billNumberPool = Arrays.copyOf(billNumberPool, (int) capacity);
+        }
+    }
+
+    private int itemCodeId(String itemCode) {
+        return itemCodes.idOf(itemCode);
+    }
+
+    private void grow(int capacity) {
+        billNumberStarts = Arrays.copyOf(billNumberStarts, capacity);
+        billNumberLengths = Arrays.copyOf(billNumberLengths, capacity);
+        itemCodeIds = Arrays.copyOf(itemCodeIds, capacity);
+        internalPrices = Arrays.copyOf(internalPrices, capacity);
+        salePrices = Arrays.copyOf(salePrices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        discounts = Arrays.copyOf(discounts, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+        profits = Arrays.copyOf(profits, capacity);
+        validationCodes = Arrays.copyOf(validationCodes, capacity);
+        calculatedChecksums = Arrays.copyOf(calculatedChecksums, capacity);
+    }
+
+    // Row accessors
+    public int size() { return size; }
+
+    /**
+     * Decodes the bill number of a row; every call returns a new String.
+     */
+    public String getBillNumber(int row) {
+        int length = billNumberLengths[checkRow(row)];
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        return new String(billNumberPool, billNumberStarts[row], length, StandardCharsets.UTF_8);
+    }
+
+    public String getItemCode(int row) { return itemCodes.get(itemCodeIds[checkRow(row)]); }
+    public int getItemCodeId(int row) { return itemCodeIds[checkRow(row)]; }
+
+    public double getInternalPrice(int row) { return internalPrices[checkRow(row)]; }
+    public double getSalePrice(int row) { return salePrices[checkRow(row)]; }
+    public int getQuantity(int row) { return quantities[checkRow(row)]; }
+    public double getDiscount(int row) { return discounts[checkRow(row)]; }
+    public int getChecksum(int row) { return checksums[checkRow(row)]; }
+
+    public double getProfit(int row) { return profits[checkRow(row)]; }
+
+    public void setProfit(int row, double value) {
+        double previous = profits[checkRow(row)];
+        profits[row] = value;
+        modified();
+        if (counting && Double.compare(previous, value) != 0) {
+            profitSum.add(-previous);
+            profitSum.add(value);
+        }
+        if (validTotals != null && ValidationCode.isValid(validationCodes[row])
+                && Double.compare(previous, value) != 0) {
+            validTotals.remove(previous);
+            validTotals.add(value);
+        }
+    }
+
+    public int getValidationCode(int row) { return validationCodes[checkRow(row)]; }
+    public int getCalculatedChecksum(int row) { return calculatedChecksums[checkRow(row)]; }
+    public boolean isValid(int row) { return ValidationCode.isValid(validationCodes[checkRow(row)]); }
+
+    public void setValidation(int row, int code, int calculatedChecksum) {
+        boolean wasValid = ValidationCode.isValid(validationCodes[checkRow(row)]);
+        validationCodes[row] = code;
+        calculatedChecksums[row] = calculatedChecksum;
+        modified();
+        if (counting && wasValid != ValidationCode.isValid(code)) {
+            validCount += wasValid ? -1 : 1;
+        }
+        if (validTotals != null && wasValid != ValidationCode.isValid(code)) {
+            if (wasValid) {
+                validTotals.remove(profits[row]);
+            } else {
+                validTotals.add(profits[row]);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows added or replaced since they were last validated.
+     */
+    public int countRowsToValidate() {
+        return rowsToValidate.size();
+    }
+
+    /**
+     * Returns the number of rows added or replaced since their profit was last calculated.
+     */
+    public int countRowsToCalculateProfit() {
+        return rowsToCalculateProfit.size();
+    }
+
+    // Change tracking for TransactionService; next* return -1 when there are no more rows
+    int nextRowToValidate(int from) { return rowsToValidate.next(from); }
+    int nextRowToCalculateProfit(int from) { return rowsToCalculateProfit.next(from); }
+    void markValidated(int from, int to) { rowsToValidate.removeRange(from, to); }
+    void markProfitsCalculated(int from, int to) { rowsToCalculateProfit.removeRange(from, to); }
+    // Copies for threads that must not read the sets while the batch changes
+    RowSet copyRowsToValidate() { return rowsToValidate.copy(); }
+    RowSet copyRowsToCalculateProfit() { return rowsToCalculateProfit.copy(); }
+
+    /**
+     * Returns the running totals of the valid rows, or null when they were not calculated yet.
+     */
+    TaxAggregator getValidTotals() {
+        return validTotals;
+    }
+
+    /**
+     * Starts keeping the given totals of the valid rows up to date; null stops it,
+     * e.g. while rows are changed from several threads.
+     */
+    void setValidTotals(TaxAggregator totals) {
+        validTotals = totals;
+    }
+
+    /**
+     * Returns the number of valid rows, kept up to date by every change.
+     */
+    public int countValid() {
+        return validCount;
+    }
+
+    /**
+     * Returns the sum of the profits of all rows, valid or not, kept up to date by every change.
+     */
+    public double getProfitSum() {
+        return size == 0 ? 0 : profitSum.value();
+    }
+
+    /**
+     * Stops adjusting the valid row count and profit sum, e.g. while rows are
+     * changed from several threads, until {@link #recount()}.
+     */
+    void stopCounting() {
+        counting = false;
+    }
+
+    /**
+     * Calculates the valid row count and profit sum from the columns and keeps them up to date again.
+     */
+    void recount() {
+        validCount = 0;
+        profitSum = new CompensatedSum();
+        for (int row = 0; row < size; row++) {
+            if (ValidationCode.isValid(validationCodes[row])) {
+                validCount++;
+            }
+            profitSum.add(profits[row]);
+        }
+        counting = true;
+    }
+
+    /**
+     * Returns a count that changes whenever a row is added, replaced, removed or
+     * given a new profit or validation after the count was last read.
+     */
+    int getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Returns the modification count and starts counting the next change.
+     */
+    int readModificationCount() {
+        modificationCountRead = true;
+        return modificationCount;
+    }
+
+    /**
+     * Renders the status text of a row from its validation code.
+     */
+    public String getStatus(int row) {
+        return ValidationCode.describe(validationCodes[checkRow(row)], checksums[row], calculatedChecksums[row]);
+    }
+
+    /**
+     * Returns the id of the row's bill number, which stays the same for other
+     * rows with that bill number until the batch is changed in bulk. The first
+     * call indexes the bill numbers of all rows; later single-row changes keep
+     * the index up to date.
+     */
+    int getBillId(int row) {
+        checkRow(row);
+        if (billRows == null) {
+            billRows = new BillRowIndex(billNumberPool, billNumberStarts, billNumberLengths, size);
+        }
+        return billRows.billOf(row);
+    }
+
+    /**
+     * Returns the first row with a bill id from {@link #getBillId(int)}, or -1 when no row has it.
+     */
+    int firstRowOfBill(int billId) {
+        return billRows == null ? -1 : billRows.firstRow(billId);
+    }
+
+    /**
+     * Returns the next row with the same bill number as the row, or -1 after the last one.
+     */
+    int nextRowOfBill(int row) {
+        getBillId(row);
+        return billRows.nextRow(row);
+    }
+
+    // Item code dictionary accessors; ids are shared by all batches using the same dictionary
+    public int getItemCodeCount() { return itemCodes.size(); }
+    public String getItemCodeById(int id) { return itemCodes.get(id); }
+    ItemCodeDictionary getItemCodeDictionary() { return itemCodes; }
+
+    // Raw column access for TransactionSnapshot; arrays can be longer than size()
+    int[] billNumberStarts() { return billNumberStarts; }
+    int[] billNumberLengths() { return billNumberLengths; }
+    byte[] billNumberPool() { return billNumberPool; }
+    int billNumberPoolSize() { return billNumberPoolSize; }
+    int[] itemCodeIds() { return itemCodeIds; }
+    double[] internalPrices() { return internalPrices; }
+    double[] salePrices() { return salePrices; }
+    int[] quantities() { return quantities; }
+    double[] discounts() { return discounts; }
+    int[] checksums() { return checksums; }
+    double[] profits() { return profits; }
+    int[] validationCodes() { return validationCodes; }
+    int[] calculatedChecksums() { return calculatedChecksums; }
+
+    /**
+     * Returns the PENDING_ flags of a row: whether it still has to be validated
+     * and whether its profit still has to be calculated.
+     */
+    int pending(int row) {
+        checkRow(row);
+        return (rowsToValidate.contains(row) ? PENDING_VALIDATION : 0)
+                | (rowsToCalculateProfit.contains(row) ? PENDING_PROFIT : 0);
+    }
+
+    /**
+     * Sets the row count and bill number pool after the columns were filled directly.
+     * Only the rows with PENDING_ flags are processed again; the totals of the valid
+     * rows are rebuilt from the restored profits and validation codes.
+     */
+    void restore(int size, byte[] billNumberPool, int billNumberPoolSize, byte[] pending) {
+        if (size > itemCodeIds.length) {
+            grow(size);
+        }
+        this.size = size;
+        this.billNumberPool = billNumberPool;
+        this.billNumberPoolSize = billNumberPoolSize;
+        billRows = null;
+        rowsToValidate = new RowSet();
+        rowsToCalculateProfit = new RowSet();
+        TaxAggregator totals = new TaxAggregator();
+        validCount = 0;
+        profitSum = new CompensatedSum();
+        for (int row = 0; row < size; row++) {
+            if ((pending[row] & PENDING_VALIDATION) != 0) {
+                rowsToValidate.add(row);
+            }
+            if ((pending[row] & PENDING_PROFIT) != 0) {
+                rowsToCalculateProfit.add(row);
+            }
+            if (ValidationCode.isValid(validationCodes[row])) {
+                totals.add(profits[row]);
+                validCount++;
+            }
+            profitSum.add(profits[row]);
+        }
+        validTotals = totals;
+        counting = true;
+        modified();
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,180 @@
+package service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes transactions as CSV in the format read by the import.
+ * <p>
+ * Rows are encoded straight into a large byte buffer: prices are written with
+ * {@link FixedTwoDecimal}, integers digit by digit and text as UTF-8, so no
+ * String or Formatter is created per row. The output matches
+ * {@code String.format(Locale.ROOT, "%s,%s,%.2f,%.2f,%d,%.2f,%d")} for every row.
+ * Rows can be written one at a time, so large exports can be streamed.
+ */
+public class TransactionCsvWriter implements Closeable {
+    public static final String HEADER = "BillNumber,ItemCode,InternalPrice,SalePrice,Quantity,Discount,Checksum";
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Longest number the fast paths write, e.g. "-9999999.99" or "-2147483648"
+    private static final int MAX_NUMBER_LENGTH = 24;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private long rowCount;
+
+    /**
+     * Creates a writer and writes the header line. Closing the writer closes the stream.
+     */
+    public TransactionCsvWriter(OutputStream out) throws IOException {
+        this.out = out;
+        writeText(HEADER);
+        writeLineSeparator();
+    }
+
+    /**
+     * Writes one row.
+     */
+    public void writeRow(String billNumber, String itemCode, double internalPrice, double salePrice,
+                         int quantity, double discount, int checksum) throws IOException {
+        writeText(billNumber);
+        writeByte(',');
+        writeText(itemCode);
+        writeByte(',');
+        writeDecimal(internalPrice);
+        writeByte(',');
+        writeDecimal(salePrice);
+        writeByte(',');
+        writeInteger(quantity);
+        writeByte(',');
+        writeDecimal(discount);
+        writeByte(',');
+        writeInteger(checksum);
+        writeLineSeparator();
+        rowCount++;
+    }
+
+    /**
+     * Writes every row of a batch.
+     */
+    public void writeRows(TransactionBatch batch) throws IOException {
+        for (int row = 0; row < batch.size(); row++) {
+            writeRow(batch.getBillNumber(row), batch.getItemCode(row), batch.getInternalPrice(row),
+                    batch.getSalePrice(row), batch.getQuantity(row), batch.getDiscount(row), batch.getChecksum(row));
+        }
+    }
+
+    /**
+     * Returns the number of rows written so far, not counting the header.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeText(String text) throws IOException {
+        if (text == null) {
+            text = "null"; // As %s prints it
+        }
+        int length = text.length();
+        if (length * 3 > buffer.length - position) {
+            flushBuffer();
+            if (length * 3 > buffer.length) {
+                out.write(text.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Not ASCII, encode the rest of the text in one go
+                byte[] bytes = text.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(bytes, 0, buffer, position, bytes.length);
+                position += bytes.length;
+                return;
+            }
+            buffer[position++] = (byte) c;
+        }
+    }
+
+    private void writeDecimal(double value) throws IOException {
+        long cents = FixedTwoDecimal.roundedCents(value);
+        if (cents == FixedTwoDecimal.UNDECIDED) {
+            // Rare edge case, let the formatter decide
+            writeText(String.format(Locale.ROOT, "%.2f", value));
+            return;
+        }
+        ensureRemaining(MAX_NUMBER_LENGTH);
+        // The formatter keeps the sign of values that round to zero, e.g. "-0.00"
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer[position++] = '-';
+        }
+        writeDigits(cents / 100);
+        long fraction = cents % 100;
+        buffer[position++] = '.';
+        buffer[position++] = (byte) ('0' + fraction / 10);
+        buffer[position++] = (byte) ('0' + fraction % 10);
+    }
+
+    private void writeInteger(int value) throws IOException {
+        ensureRemaining(MAX_NUMBER_LENGTH);
+        long absValue = value;
+        if (absValue < 0) {
+            buffer[position++] = '-';
+            absValue = -absValue;
+        }
+        writeDigits(absValue);
+    }
+
+    private void writeDigits(long value) {
+        int end = position + FixedTwoDecimal.digitCount(value);
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    private void writeByte(char c) throws IOException {
+        ensureRemaining(1);
+        buffer[position++] = (byte) c;
+    }
+
+    private void writeLineSeparator() throws IOException {
+        ensureRemaining(LINE_SEPARATOR.length);
+        for (byte b : LINE_SEPARATOR) {
+            buffer[position++] = b;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.length - position < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package service;
+
+import org.iit.Transaction;
+import service.TransactionMetrics.SkipReason;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the transactions of a CSV file one at a time on the calling thread.
+ * <p>
+ * The file is read through a {@link FileChannel} into one reusable buffer and
+ * each line is tokenized and parsed in place by {@link TransactionLineParser},
+ * so no String is created for the line or its numeric fields, only for the bill
+ * number; item codes come from the service's {@link ItemCodeDictionary}. Lines
+ * end at \n, \r or \r\n like {@link BufferedReader#readLine()} and malformed lines are skipped
+ * exactly as {@code String.split} and {@code parseDouble}/{@code parseInt} would
+ * reject them. For charsets whose line breaks are not single bytes the file is
+ * read line by line as Strings instead, with the same results.
+ * <p>
+ * Not thread-safe.
+ */
+final class TransactionFileReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int FIELD_COUNT = 7;
+
+    private final FileChannel channel;
+    private final TransactionLineParser parser;
+    private ByteBuffer buffer;
+    private boolean endOfFile;
+    // The last line ended with \r, so a \n starting the next read belongs to it
+    private boolean skipLineFeed;
+
+    // Used when the charset cannot be parsed byte by byte
+    private final BufferedReader reader;
+    private final ItemCodeDictionary itemCodes;
+    private final long[] skipped = new long[SkipReason.values().length];
+
+    TransactionFileReader(Path file, Charset charset, ItemCodeDictionary itemCodes) throws IOException {
+        this.itemCodes = itemCodes;
+        if (TransactionLineParser.supports(charset)) {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            parser = new TransactionLineParser(charset, itemCodes);
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.limit(0);
+            reader = null;
+        } else {
+            channel = null;
+            parser = null;
+            reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), charset));
+        }
+    }
+
+    /**
+     * Returns the next well-formed transaction, or null at the end of the file.
+     */
+    Transaction next() throws IOException {
+        if (reader != null) {
+            return nextFromLines();
+        }
+        while (true) {
+            if (skipLineFeed && buffer.hasRemaining()) {
+                if (buffer.get(buffer.position()) == '\n') {
+                    buffer.position(buffer.position() + 1);
+                }
+                skipLineFeed = false;
+            }
+
+            int start = buffer.position();
+            int end = findLineEnd(start);
+            if (end < 0) {
+                if (!endOfFile) {
+                    fill();
+                    continue;
+                }
+                if (start == buffer.limit()) {
+                    return null;
+                }
+                end = buffer.limit(); // Last line without a line break
+                buffer.position(end);
+            } else {
+                skipLineFeed = buffer.get(end) == '\r';
+                buffer.position(end + 1);
+            }
+
+            Transaction transaction = parser.parse(buffer, start, end);
+            if (transaction != null) {
+                return transaction;
+            }
+        }
+    }
+
+    /**
+     * Adds the skipped lines to the timer and clears the counts.
+     */
+    void drainSkipped(StageTimer timer) {
+        if (parser != null) {
+            parser.drainSkipped(timer);
+        }
+        for (SkipReason reason : SkipReason.values()) {
+            timer.skip(reason, skipped[reason.ordinal()]);
+            skipped[reason.ordinal()] = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        } else {
+            reader.close();
+        }
+    }
+
+    private int findLineEnd(int from) {
+        int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads more after them,
+     * growing the buffer when a single line fills it.
+     */
+    private void fill() throws IOException {
+        if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.compact();
+        }
+        if (channel.read(buffer) < 0) {
+            endOfFile = true;
+        }
+        buffer.flip();
+    }
+
+    private Transaction nextFromLines() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Transaction transaction = parseLine(line);
+            if (transaction != null) {
+                return transaction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses one CSV line, returning null for malformed lines.
+     */
+    private Transaction parseLine(String line) {
+        String[] parts = line.split(",");
+        if (parts.length != FIELD_COUNT) {
+            skipped[SkipReason.WRONG_FIELD_COUNT.ordinal()]++;
+            return null;
+        }
+        try {
+            // Parse transaction data from CSV line
+            String billNumber = parts[0].trim();
+            String itemCode = itemCodes.canonical(parts[1].trim());
+            double internalPrice = Double.parseDouble(parts[2].trim());
+            double salePrice = Double.parseDouble(parts[3].trim());
+            int quantity = Integer.parseInt(parts[4].trim());
+            double discount = Double.parseDouble(parts[5].trim());
+            int checksum = Integer.parseInt(parts[6].trim());
+
+            return new Transaction(billNumber, itemCode, internalPrice, salePrice,
+                    quantity, discount, checksum);
+        } catch (NumberFormatException e) {
+            // Skip malformed lines
+            skipped[SkipReason.MALFORMED_NUMBER.ordinal()]++;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package service;
+
+import service.TransactionService.TaxCalculationResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Continuously ingests transaction files that branches upload into a folder.
+ * <p>
+ * For every file matching the glob the watcher remembers the byte offset up to
+ * which it has read complete lines. Each scan reads only the bytes appended
+ * since then, so a growing file is tailed rather than imported again, and a
+ * line still being written is left for the next scan. New rows are checked for
+ * duplicates against all rows seen so far, validated and calculated, and the
+ * valid ones are added to running tax totals, so the tax for everything
+ * ingested so far is available at any time without reading the files again.
+ * <p>
+ * {@link #watch()} scans once and then rescans changed files whenever the
+ * {@link WatchService} reports them, until {@link #close()} is called. Lines
+ * end at \n or \r\n. A last line without a line break cannot be told apart
+ * from a row the uploader has not finished writing, so by default it is only
+ * ingested on an explicit end-of-file signal: {@link #finish(Path)} for one
+ * file, or {@link #close()} for every file. {@link #setTailWait(long)} can
+ * instead ingest it once the file has kept its size for a while; an uploader
+ * that pauses mid-row for longer than that has the partial row ingested, and
+ * the rest of the row is then read as a separate, invalid line. A file that
+ * becomes shorter than its offset was replaced and is read again from the start.
+ * <p>
+ * The offsets can be saved with {@link #saveOffsets(Path)} and loaded by a later
+ * run with {@link #loadOffsets(Path)}, which then only ingests the lines appended
+ * in between; its totals start from those lines.
+ */
+public class TransactionFolderWatcher implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Receives the rows ingested from a file, on the watching thread.
+     */
+    public interface Listener {
+        void rowsIngested(Path file, int rows);
+    }
+
+    private final TransactionService transactionService;
+    private final Path directory;
+    private final PathMatcher matcher;
+    private final TransactionLineParser parser;
+    private Listener listener = (file, rows) -> { };
+
+    // Offset just past the last complete line read from each file
+    private final Map<Path, Long> offsets = new HashMap<>();
+    // Size of each file whose last line had no line break when it was last read
+    private final Map<Path, Long> unterminatedSizes = new HashMap<>();
+    // Files whose last line was ingested without its line break, which may still follow
+    private final Set<Path> lineBreakMayFollow = new HashSet<>();
+    private final DuplicateBillIndex duplicates = new DuplicateBillIndex();
+    private final TaxAggregator totals = new TaxAggregator();
+    private long rowCount;
+    private long validCount;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private volatile WatchService watchService;
+    private volatile boolean closed;
+    // How long a file ending without a line break must keep its size before its last line is ingested, 0 for never
+    private volatile long tailWaitMillis;
+
+    /**
+     * Creates a watcher for the files of a directory whose names match the glob, e.g. "*.csv".
+     */
+    public TransactionFolderWatcher(TransactionService transactionService, Path directory, String glob)
+            throws IOException {
+        if (!TransactionLineParser.supports(Charset.defaultCharset())) {
+            throw new IOException("Unsupported charset for byte parsing: " + Charset.defaultCharset());
+        }
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        this.transactionService = transactionService;
+        this.directory = directory;
+        this.matcher = directory.getFileSystem().getPathMatcher("glob:" + glob);
+        this.parser = new TransactionLineParser(Charset.defaultCharset(), transactionService.getItemCodeDictionary());
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ingests a last line without a line break once its file has kept the same size
+     * for the given time, instead of waiting for {@link #finish(Path)} or {@link #close()}.
+     * Only safe when uploaders never pause mid-row for that long; 0, the default,
+     * turns it off. {@link #scan()} counts one unchanged scan as the wait.
+     */
+    public void setTailWait(long millis) {
+        if (millis < 0) {
+            throw new IllegalArgumentException("Tail wait must not be negative: " + millis);
+        }
+        tailWaitMillis = millis;
+    }
+
+    /**
+     * Starts reading a file at the given offset instead of its beginning, e.g. to resume
+     * from an offset saved by an earlier run or to skip rows that were already processed.
+     */
+    public synchronized void setOffset(Path file, long offset) {
+        offsets.put(file, offset);
+    }
+
+    /**
+     * Returns the offset up to which each file has been read.
+     */
+    public synchronized Map<Path, Long> getOffsets() {
+        return new HashMap<>(offsets);
+    }
+
+    /**
+     * Loads offsets saved by {@link #saveOffsets(Path)}; files are read from their
+     * saved offset instead of their beginning.
+     */
+    public synchronized void loadOffsets(Path file) throws IOException {
+        Properties saved = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            saved.load(reader);
+        }
+        for (String name : saved.stringPropertyNames()) {
+            try {
+                offsets.put(directory.resolve(name), Long.parseLong(saved.getProperty(name)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid offset for " + name + " in " + file);
+            }
+        }
+    }
+
+    /**
+     * Saves the offset of every file read so far, by file name. The file is replaced
+     * as a whole, so a crash while saving leaves the previous offsets.
+     */
+    public synchronized void saveOffsets(Path file) throws IOException {
+        Properties saved = new Properties();
+        offsets.forEach((path, offset) -> saved.setProperty(path.getFileName().toString(), offset.toString()));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            saved.store(writer, "Transaction folder offsets");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads the new lines of every matching file and returns the number of rows ingested.
+     */
+    public synchronized int scan() throws IOException {
+        int rows = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                rows += ingestIfMatching(file, false);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Signals that a file is complete, e.g. once its uploader has renamed it from a
+     * temporary name, and ingests its new lines including a last line without a
+     * line break. Returns the number of rows ingested.
+     */
+    public synchronized int finish(Path file) throws IOException {
+        return ingestIfMatching(file, true);
+    }
+
+    /**
+     * Scans the directory, then ingests changed files as they are reported until
+     * {@link #close()} is called or the directory is deleted.
+     */
+    public void watch() throws IOException, InterruptedException {
+        WatchService service = directory.getFileSystem().newWatchService();
+        watchService = service;
+        try {
+            // Registered before the first scan, so no change in between is missed
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            if (closed) {
+                return;
+            }
+            scan();
+            while (!closed) {
+                long tailWait = tailWaitMillis;
+                WatchKey key = tailWait > 0 && hasUnterminatedFiles()
+                        ? service.poll(tailWait, TimeUnit.MILLISECONDS) : service.take();
+                if (key == null) {
+                    // Nothing changed for the tail wait, so unfinished last lines count as complete
+                    synchronized (this) {
+                        for (Path file : new ArrayList<>(unterminatedSizes.keySet())) {
+                            ingestIfMatching(file, false);
+                        }
+                    }
+                    continue;
+                }
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        changed.add(directory.resolve((Path) event.context()));
+                    }
+                }
+                if (overflow) {
+                    // Events were lost, look at every file
+                    scan();
+                } else {
+                    for (Path file : changed) {
+                        synchronized (this) {
+                            ingestIfMatching(file, false);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    return; // The directory is gone
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed from another thread
+        } finally {
+            service.close();
+        }
+    }
+
+    /**
+     * Stops {@link #watch()} and ingests the last lines without a line break, as the
+     * files are taken to be complete. The totals stay available.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        WatchService service = watchService;
+        if (service != null) {
+            service.close();
+        }
+        synchronized (this) {
+            for (Path file : new ArrayList<>(unterminatedSizes.keySet())) {
+                ingestIfMatching(file, true);
+            }
+        }
+    }
+
+    /**
+     * Returns the tax result for the valid rows ingested so far.
+     */
+    public synchronized TaxCalculationResult getTotals(double taxRate) {
+        return totals.toResult(taxRate);
+    }
+
+    // Counts of the rows ingested so far
+    public synchronized long getRowCount() { return rowCount; }
+    public synchronized long getValidCount() { return validCount; }
+
+    private synchronized boolean hasUnterminatedFiles() {
+        return !unterminatedSizes.isEmpty();
+    }
+
+    private int ingestIfMatching(Path file, boolean endOfFile) throws IOException {
+        if (!matcher.matches(file.getFileName()) || !Files.isRegularFile(file)) {
+            unterminatedSizes.remove(file);
+            return 0;
+        }
+        int rows = ingest(file, endOfFile);
+        if (rows > 0) {
+            listener.rowsIngested(file, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the complete lines appended to a file since its offset and adds them to the totals,
+     * and a last line without a line break at the end of the file, or with a tail wait set
+     * when the file has not grown since the previous read.
+     */
+    private int ingest(Path file, boolean endOfFile) throws IOException {
+        long offset = offsets.getOrDefault(file, 0L);
+        TransactionBatch batch = new TransactionBatch(transactionService.getItemCodeDictionary());
+        long size;
+        try (StageTimer timer = transactionService.getMetrics().start(TransactionMetrics.Stage.IMPORT);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size < offset) {
+                offset = 0; // Replaced by a shorter file
+                lineBreakMayFollow.remove(file);
+            }
+            long startOffset = offset;
+            while (offset < size) {
+                buffer.clear();
+                int read = channel.read(buffer, offset);
+                if (read <= 0) {
+                    break;
+                }
+                // The line break of a last line ingested earlier is not an empty line
+                int lineBreak = lineBreakMayFollow.remove(file) ? lineBreakLength(read) : 0;
+                int consumed = parseLines(lineBreak, read, batch);
+                if (consumed == 0) {
+                    if (read < buffer.capacity()) {
+                        // Only a line without a line break is left
+                        if (endOfFile || tailWaitMillis > 0 && unterminatedSizes.getOrDefault(file, -1L) == size) {
+                            parser.parseInto(buffer, 0, buffer.get(read - 1) == '\r' ? read - 1 : read, batch);
+                            offset += read;
+                            lineBreakMayFollow.add(file);
+                        }
+                        break;
+                    }
+                    // A line longer than the buffer
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                    continue;
+                }
+                offset += consumed;
+            }
+            timer.addBytesRead(offset - startOffset);
+            timer.addRows(batch.size());
+            parser.drainSkipped(timer);
+        }
+        offsets.put(file, offset);
+        if (offset < size) {
+            unterminatedSizes.put(file, size);
+        } else {
+            unterminatedSizes.remove(file);
+        }
+        if (batch.size() == 0) {
+            return 0;
+        }
+
+        transactionService.markDuplicates(batch, duplicates);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+        for (int row = 0; row < batch.size(); row++) {
+            if (batch.isValid(row)) {
+                totals.add(batch.getProfit(row));
+                validCount++;
+            }
+        }
+        rowCount += batch.size();
+        return batch.size();
+    }
+
+    /**
+     * Parses the complete lines from the given position among the first read bytes of
+     * the buffer and returns the position after the last of them, past its line feed.
+     */
+    private int parseLines(int from, int read, TransactionBatch batch) {
+        int lineStart = from;
+        for (int i = from; i < read; i++) {
+            if (buffer.get(i) == '\n') {
+                int end = i > lineStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+                parser.parseInto(buffer, lineStart, end, batch);
+                lineStart = i + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    // Length of a line break at the start of the buffer
+    private int lineBreakLength(int read) {
+        if (buffer.get(0) == '\n') {
+            return 1;
+        }
+        return read > 1 && buffer.get(0) == '\r' && buffer.get(1) == '\n' ? 2 : 0;
+    }
+}
@@ -0,0 +1,397 @@
+package service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Secondary indexes over the rows of a {@link TransactionBatch} for looking rows
+ * up without scanning or sorting the batch.
+ * <p>
+ * Built in one pass over the primitive columns, the index answers:
+ * <ul>
+ *   <li>bill number lookups in O(1) from an open-addressing hash table over the
+ *       bill number bytes, with the rows of each bill chained in row order;</li>
+ *   <li>item code prefix searches in O(log n) from the batch's item codes in
+ *       sorted order, each with its rows;</li>
+ *   <li>profit ranges in O(log n) from the rows sorted by profit with a
+ *       primitive radix sort, which also gives the profit order of all rows;</li>
+ *   <li>the invalid rows, which are collected up front.</li>
+ * </ul>
+ * Every search returns row numbers in ascending order, so results can be
+ * combined with {@link #intersect(int[], int[])}. Rows gathered from several
+ * item codes or from a profit range are put in row order through a bitmap
+ * of the rows rather than sorted. The index is a snapshot: once
+ * the batch is changed {@link #isCurrent()} returns false, queries throw
+ * {@link IllegalStateException} and a new index has to be built. Queries are
+ * read-only and can run on any number of threads.
+ */
+public class TransactionIndex {
+    private static final int[] NO_ROWS = new int[0];
+
+    private final TransactionBatch batch;
+    private final int modificationCount;
+    private final int size;
+
+    // Hash table of the first row of each bill number, -1 marks an empty slot
+    private final int[] billTable;
+    private final int billTableMask;
+    // Next row with the same bill number, -1 at the end
+    private final int[] nextRowOfBill;
+    private final int[] billHashes;
+
+    // Item codes in sorted order, nulls left out, and the rows of each code in row order
+    private final String[] sortedItemCodes;
+    private final int[] sortedItemCodeIds;
+    private final int[] itemCodeRowStarts;
+    private final int[] itemCodeRows;
+
+    // Rows sorted by profit; NaN profits sort last and never match a range
+    private final double[] sortedProfits;
+    private final int[] rowsByProfit;
+    private final int comparableProfits;
+
+    private final int[] invalidRows;
+
+    TransactionIndex(TransactionBatch batch) {
+        this.batch = batch;
+        this.modificationCount = batch.readModificationCount();
+        this.size = batch.size();
+
+        int tableLength = Integer.highestOneBit(Math.max(size, 8) * 2 - 1) << 1;
+        billTable = new int[tableLength];
+        Arrays.fill(billTable, -1);
+        billTableMask = tableLength - 1;
+        nextRowOfBill = new int[size];
+        billHashes = new int[size];
+        indexBillNumbers();
+
+        int codeCount = batch.getItemCodeCount();
+        Integer[] ids = new Integer[codeCount];
+        int nonNull = 0;
+        for (int id = 0; id < codeCount; id++) {
+            if (batch.getItemCodeById(id) != null) {
+                ids[nonNull++] = id;
+            }
+        }
+        ids = Arrays.copyOf(ids, nonNull);
+        Arrays.sort(ids, Comparator.comparing(batch::getItemCodeById));
+        sortedItemCodes = new String[nonNull];
+        sortedItemCodeIds = new int[nonNull];
+        for (int i = 0; i < nonNull; i++) {
+            sortedItemCodeIds[i] = ids[i];
+            sortedItemCodes[i] = batch.getItemCodeById(ids[i]);
+        }
+        itemCodeRowStarts = new int[codeCount + 1];
+        itemCodeRows = new int[size];
+        indexItemCodes();
+
+        sortedProfits = new double[size];
+        rowsByProfit = new int[size];
+        comparableProfits = sortProfits();
+
+        invalidRows = collectInvalidRows();
+    }
+
+    /**
+     * Returns true while the batch has not been changed since the index was built.
+     */
+    public boolean isCurrent() {
+        return batch.getModificationCount() == modificationCount && batch.size() == size;
+    }
+
+    public TransactionBatch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Returns the rows with exactly the given bill number.
+     */
+    public int[] findByBillNumber(String billNumber) {
+        checkCurrent();
+        if (billNumber == null) {
+            return NO_ROWS;
+        }
+        byte[] key = billNumber.getBytes(StandardCharsets.UTF_8);
+        int hash = ByteKeyTable.hash(key, 0, key.length);
+        byte[] pool = batch.billNumberPool();
+        int[] starts = batch.billNumberStarts();
+        int[] lengths = batch.billNumberLengths();
+        for (int slot = hash & billTableMask, row; (row = billTable[slot]) >= 0; slot = (slot + 1) & billTableMask) {
+            if (billHashes[row] == hash && lengths[row] == key.length
+                    && Arrays.equals(pool, starts[row], starts[row] + key.length, key, 0, key.length)) {
+                int count = 0;
+                for (int r = row; r >= 0; r = nextRowOfBill[r]) {
+                    count++;
+                }
+                int[] rows = new int[count];
+                count = 0;
+                for (int r = row; r >= 0; r = nextRowOfBill[r]) {
+                    rows[count++] = r;
+                }
+                return rows;
+            }
+        }
+        return NO_ROWS;
+    }
+
+    /**
+     * Returns the rows whose item code starts with the prefix, case-sensitively.
+     * An empty prefix matches every row with an item code; a null prefix matches none.
+     */
+    public int[] findByItemCodePrefix(String prefix) {
+        checkCurrent();
+        if (prefix == null) {
+            return NO_ROWS;
+        }
+        int first = lowerBound(sortedItemCodes, prefix);
+        int last = first;
+        int count = 0;
+        while (last < sortedItemCodes.length && sortedItemCodes[last].startsWith(prefix)) {
+            int id = sortedItemCodeIds[last++];
+            count += itemCodeRowStarts[id + 1] - itemCodeRowStarts[id];
+        }
+        if (count == 0) {
+            return NO_ROWS;
+        }
+
+        if (last - first == 1) {
+            int id = sortedItemCodeIds[first];
+            return Arrays.copyOfRange(itemCodeRows, itemCodeRowStarts[id], itemCodeRowStarts[id + 1]);
+        }
+        // Each code's rows are in order, but the codes interleave
+        long[] bitmap = new long[(size + 63) >>> 6];
+        for (int i = first; i < last; i++) {
+            int id = sortedItemCodeIds[i];
+            for (int j = itemCodeRowStarts[id]; j < itemCodeRowStarts[id + 1]; j++) {
+                bitmap[itemCodeRows[j] >>> 6] |= 1L << itemCodeRows[j];
+            }
+        }
+        return toRows(bitmap, count);
+    }
+
+    /**
+     * Returns the rows whose profit is between min and max, both inclusive.
+     */
+    public int[] findByProfitRange(double min, double max) {
+        checkCurrent();
+        int from = firstProfitAbove(min, false);
+        int to = firstProfitAbove(max, true);
+        if (from >= to) {
+            return NO_ROWS;
+        }
+        long[] bitmap = new long[(size + 63) >>> 6];
+        for (int i = from; i < to; i++) {
+            bitmap[rowsByProfit[i] >>> 6] |= 1L << rowsByProfit[i];
+        }
+        return toRows(bitmap, to - from);
+    }
+
+    /**
+     * Returns every row in order of profit, rows with equal profits in row order and
+     * NaN profits last, e.g. to show the rows sorted by profit.
+     */
+    public int[] rowsByProfit() {
+        checkCurrent();
+        return rowsByProfit.clone();
+    }
+
+    /**
+     * Returns the rows that failed validation; rows not validated yet are not included.
+     */
+    public int[] findInvalid() {
+        checkCurrent();
+        return invalidRows.clone();
+    }
+
+    /**
+     * Returns the rows present in both sorted arrays.
+     */
+    public static int[] intersect(int[] first, int[] second) {
+        int[] rows = new int[Math.min(first.length, second.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                rows[count++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // Reads the rows of a bitmap in ascending order, in O(count + size / 64)
+    private static int[] toRows(long[] bitmap, int count) {
+        int[] rows = new int[count];
+        int filled = 0;
+        for (int word = 0; word < bitmap.length; word++) {
+            for (long bits = bitmap[word]; bits != 0; bits &= bits - 1) {
+                rows[filled++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return rows;
+    }
+
+    private void checkCurrent() {
+        if (!isCurrent()) {
+            throw new IllegalStateException("The batch has changed since the index was built");
+        }
+    }
+
+    /**
+     * Returns the first position among the comparable profits whose profit is
+     * above the value, or at least the value when inclusive is false.
+     */
+    private int firstProfitAbove(double value, boolean inclusive) {
+        int low = 0;
+        int high = comparableProfits;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            double profit = sortedProfits[mid];
+            if (profit < value || inclusive && profit == value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void indexBillNumbers() {
+        byte[] pool = batch.billNumberPool();
+        int[] starts = batch.billNumberStarts();
+        int[] lengths = batch.billNumberLengths();
+        // Backwards, so each bill's chain ends up in row order
+        for (int row = size - 1; row >= 0; row--) {
+            nextRowOfBill[row] = -1;
+            int length = lengths[row];
+            if (length < 0) {
+                continue; // Null bill numbers cannot be searched for
+            }
+            int hash = ByteKeyTable.hash(pool, starts[row], length);
+            billHashes[row] = hash;
+            int slot = hash & billTableMask;
+            for (int head; (head = billTable[slot]) >= 0; slot = (slot + 1) & billTableMask) {
+                if (billHashes[head] == hash && lengths[head] == length
+                        && Arrays.equals(pool, starts[head], starts[head] + length,
+                        pool, starts[row], starts[row] + length)) {
+                    nextRowOfBill[row] = head;
+                    break;
+                }
+            }
+            billTable[slot] = row;
+        }
+    }
+
+    private void indexItemCodes() {
+        int[] ids = batch.itemCodeIds();
+        for (int row = 0; row < size; row++) {
+            itemCodeRowStarts[ids[row] + 1]++;
+        }
+        for (int id = 1; id < itemCodeRowStarts.length; id++) {
+            itemCodeRowStarts[id] += itemCodeRowStarts[id - 1];
+        }
+        int[] next = Arrays.copyOf(itemCodeRowStarts, itemCodeRowStarts.length - 1);
+        for (int row = 0; row < size; row++) {
+            itemCodeRows[next[ids[row]]++] = row;
+        }
+    }
+
+    /**
+     * Sorts the rows by profit with an LSD radix sort over the bits of the profits,
+     * mapped so that unsigned order matches numeric order. Returns the number of
+     * rows whose profit is not NaN.
+     */
+    private int sortProfits() {
+        if (size == 0) {
+            return 0;
+        }
+        long[] keys = new long[size];
+        int[] rows = rowsByProfit;
+        double[] profits = batch.profits();
+        for (int row = 0; row < size; row++) {
+            long bits = Double.doubleToLongBits(profits[row]);
+            keys[row] = bits ^ ((bits >> 63) | Long.MIN_VALUE);
+            rows[row] = row;
+        }
+
+        long[] sortedKeys = new long[size];
+        int[] sortedRows = new int[size];
+        int[] counts = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; i++) {
+                counts[(int) (keys[i] >>> shift & 0xFF) + 1]++;
+            }
+            if (counts[(int) (keys[0] >>> shift & 0xFF) + 1] == size) {
+                continue; // Every key has the same byte here
+            }
+            for (int b = 1; b < counts.length; b++) {
+                counts[b] += counts[b - 1];
+            }
+            for (int i = 0; i < size; i++) {
+                int target = counts[(int) (keys[i] >>> shift & 0xFF)]++;
+                sortedKeys[target] = keys[i];
+                sortedRows[target] = rows[i];
+            }
+            long[] swapKeys = keys;
+            keys = sortedKeys;
+            sortedKeys = swapKeys;
+            int[] swapRows = rows;
+            rows = sortedRows;
+            sortedRows = swapRows;
+        }
+        if (rows != rowsByProfit) {
+            System.arraycopy(rows, 0, rowsByProfit, 0, size);
+        }
+
+        int comparable = size;
+        for (int i = size - 1; i >= 0; i--) {
+            sortedProfits[i] = profits[rowsByProfit[i]];
+            if (Double.isNaN(sortedProfits[i])) {
+                comparable = i;
+            }
+        }
+        return comparable;
+    }
+
+    private int[] collectInvalidRows() {
+        int[] codes = batch.validationCodes();
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (isInvalid(codes[row])) {
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        count = 0;
+        for (int row = 0; row < size; row++) {
+            if (isInvalid(codes[row])) {
+                rows[count++] = row;
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isInvalid(int code) {
+        return !ValidationCode.isValid(code) && (code & ValidationCode.NOT_VALIDATED) == 0;
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,279 @@
+package service;
+
+import org.iit.Transaction;
+import service.TransactionMetrics.SkipReason;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses CSV transaction lines straight from bytes.
+ * <p>
+ * The result is the same as {@code line.split(",")}, {@code trim()} and
+ * {@code Double.parseDouble}/{@code Integer.parseInt} on the decoded line:
+ * lines that do not have exactly seven fields (after dropping trailing empty
+ * fields) or have malformed numbers are rejected. Plain decimal numbers are
+ * parsed in place; any other number syntax falls back to the JDK parsers.
+ * Item codes repeat across rows, so they are looked up in an
+ * {@link ItemCodeDictionary} rather than decoded into a new String for every
+ * line, with the most recent ones cached in front of it.
+ * <p>
+ * Instances keep a scratch buffer and are not thread-safe.
+ */
+final class TransactionLineParser {
+    private static final int FIELD_COUNT = 7;
+    // Largest mantissa and power of ten that are exact doubles
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    private static final int ITEM_CODE_CACHE_SIZE = 1024;
+
+    private final Charset charset;
+    private final ItemCodeDictionary itemCodes;
+    private final int[] fieldStarts = new int[FIELD_COUNT];
+    private final int[] fieldEnds = new int[FIELD_COUNT];
+    private byte[] scratch = new byte[64];
+    // Recently seen item codes and their bytes, by hash of the bytes
+    private final byte[][] cachedItemCodeBytes = new byte[ITEM_CODE_CACHE_SIZE][];
+    private final String[] cachedItemCodes = new String[ITEM_CODE_CACHE_SIZE];
+    // Rejected lines per reason
+    private final long[] skipped = new long[SkipReason.values().length];
+
+    // Fields of the last parsed line
+    private String billNumber;
+    private String itemCode;
+    private double internalPrice;
+    private double salePrice;
+    private int quantity;
+    private double discount;
+    private int checksum;
+
+    TransactionLineParser(Charset charset, ItemCodeDictionary itemCodes) {
+        this.charset = charset;
+        this.itemCodes = itemCodes;
+    }
+
+    /**
+     * Returns true when lines in the given charset can be parsed byte by byte,
+     * i.e. commas, line breaks and ASCII digits are single bytes.
+     */
+    static boolean supports(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.ISO_8859_1)
+                || charset.equals(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parses the line between start (inclusive) and end (exclusive), without its
+     * line terminator. Returns null for malformed lines.
+     */
+    Transaction parse(ByteBuffer buffer, int start, int end) {
+        if (!parseFields(buffer, start, end)) {
+            return null;
+        }
+        return new Transaction(billNumber, itemCode, internalPrice, salePrice, quantity, discount, checksum);
+    }
+
+    /**
+     * Parses the line and appends it to the batch. Returns false for malformed lines.
+     */
+    boolean parseInto(ByteBuffer buffer, int start, int end, TransactionBatch batch) {
+        if (!parseFields(buffer, start, end)) {
+            return false;
+        }
+        batch.add(billNumber, itemCode, internalPrice, salePrice, quantity, discount, checksum);
+        return true;
+    }
+
+    /**
+     * Returns how many lines were rejected for the given reason.
+     */
+    long getSkipped(SkipReason reason) {
+        return skipped[reason.ordinal()];
+    }
+
+    /**
+     * Adds the rejected lines to the timer and clears the counts.
+     */
+    void drainSkipped(StageTimer timer) {
+        for (SkipReason reason : SkipReason.values()) {
+            timer.skip(reason, skipped[reason.ordinal()]);
+            skipped[reason.ordinal()] = 0;
+        }
+    }
+
+    private boolean parseFields(ByteBuffer buffer, int start, int end) {
+        if (!splitFields(buffer, start, end)) {
+            skipped[SkipReason.WRONG_FIELD_COUNT.ordinal()]++;
+            return false;
+        }
+        try {
+            internalPrice = parseDouble(buffer, 2);
+            salePrice = parseDouble(buffer, 3);
+            quantity = parseInt(buffer, 4);
+            discount = parseDouble(buffer, 5);
+            checksum = parseInt(buffer, 6);
+        } catch (NumberFormatException e) {
+            // Skip malformed lines
+            skipped[SkipReason.MALFORMED_NUMBER.ordinal()]++;
+            return false;
+        }
+        billNumber = decode(buffer, 0);
+        itemCode = decodeItemCode(buffer);
+        return true;
+    }
+
+    /**
+     * Finds the seven trimmed fields of the line. Matches String.split, which drops
+     * trailing empty fields, so "a,b,c,d,e,f,g,," is accepted and "a,b,c,d,e,f," is not.
+     */
+    private boolean splitFields(ByteBuffer buffer, int start, int end) {
+        int field = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer.get(i) == ',') {
+                if (field < FIELD_COUNT) {
+                    fieldStarts[field] = fieldStart;
+                    fieldEnds[field] = i;
+                } else if (i > fieldStart) {
+                    return false; // Non-empty eighth field
+                }
+                field++;
+                fieldStart = i + 1;
+            }
+        }
+        if (field < FIELD_COUNT || fieldEnds[FIELD_COUNT - 1] == fieldStarts[FIELD_COUNT - 1]) {
+            return false; // Too few fields, or the last one is empty and would be dropped
+        }
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            trim(buffer, f);
+        }
+        return true;
+    }
+
+    // Same rule as String.trim: strip characters up to and including the space
+    private void trim(ByteBuffer buffer, int field) {
+        int from = fieldStarts[field];
+        int to = fieldEnds[field];
+        while (from < to && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        while (to > from && (buffer.get(to - 1) & 0xFF) <= ' ') {
+            to--;
+        }
+        fieldStarts[field] = from;
+        fieldEnds[field] = to;
+    }
+
+    private double parseDouble(ByteBuffer buffer, int field) {
+        int from = fieldStarts[field];
+        int to = fieldEnds[field];
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                if (digits > 18) {
+                    break;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+
+        if (i < to || digits == 0 || mantissa > MAX_EXACT_MANTISSA
+                || fractionDigits >= POWERS_OF_TEN.length) {
+            // Exponents, NaN, hex, suffixes or too many digits
+            return Double.parseDouble(decode(buffer, field));
+        }
+        // Both operands are exact, so the division is correctly rounded like parseDouble
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : (double) mantissa;
+        return negative ? -value : value;
+    }
+
+    private int parseInt(ByteBuffer buffer, int field) {
+        int from = fieldStarts[field];
+        int to = fieldEnds[field];
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        int value = 0;
+        int digits = to - i;
+        for (; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            value = value * 10 + (b - '0');
+        }
+
+        if (i < to || digits == 0 || digits > 9) {
+            // Non-ASCII digits, junk or possible overflow
+            return Integer.parseInt(decode(buffer, field));
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns the canonical String of the item code field from the cache or the dictionary.
+     */
+    private String decodeItemCode(ByteBuffer buffer) {
+        int from = fieldStarts[1];
+        int to = fieldEnds[1];
+        int hash = to - from;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (ITEM_CODE_CACHE_SIZE - 1);
+        byte[] cached = cachedItemCodeBytes[slot];
+        if (cached != null && cached.length == to - from && matches(buffer, from, cached)) {
+            return cachedItemCodes[slot];
+        }
+        String decoded = itemCodes.intern(buffer, from, to, charset);
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        cachedItemCodeBytes[slot] = bytes;
+        cachedItemCodes[slot] = decoded;
+        return decoded;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int from, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(from + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String decode(ByteBuffer buffer, int field) {
+        int from = fieldStarts[field];
+        int length = fieldEnds[field] - from;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+}
@@ -0,0 +1,147 @@
+package service;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Metrics of the processing stages of a {@link TransactionService}.
+ * <p>
+ * Every stage records its calls, the rows processed and skipped, the bytes
+ * read, the heap allocated by the calling thread and a histogram of the time
+ * per call. Bulk operations record once per call, so the cost does not grow
+ * with the number of rows; checksums are counted per call and timed on a sample.
+ * The metrics can be read directly, dumped as text, published as JMX MXBeans
+ * and are emitted as JFR events of type {@code service.TransactionStage} while
+ * Flight Recorder runs. Nothing is registered with JMX unless asked for.
+ */
+public class TransactionMetrics {
+    /**
+     * Processing stages that are measured.
+     */
+    public enum Stage {
+        IMPORT, CHECKSUM, VALIDATE, PROFIT, ZERO_PROFIT_REMOVAL, TAX
+    }
+
+    /**
+     * Why a row was skipped by a stage.
+     */
+    public enum SkipReason {
+        /** The line does not have exactly seven fields. */
+        WRONG_FIELD_COUNT,
+        /** A price, quantity, discount or checksum is not a number. */
+        MALFORMED_NUMBER,
+        /** Removed for having zero profit. */
+        ZERO_PROFIT,
+        /** Left out of the tax for being invalid. */
+        INVALID
+    }
+
+    private static final String MBEAN_DOMAIN = "service";
+
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+
+    public TransactionMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageMetrics(stage));
+        }
+    }
+
+    public StageMetrics getStage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    /**
+     * Starts timing one call of a stage; the call is recorded when the timer is closed.
+     */
+    StageTimer start(Stage stage) {
+        return new StageTimer(stages.get(stage));
+    }
+
+    /**
+     * Returns the bytes allocated so far by the current thread, or -1 when the JVM cannot tell.
+     */
+    static long allocatedBytes() {
+        com.sun.management.ThreadMXBean allocation = Allocation.BEAN;
+        return allocation == null ? -1 : allocation.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Holds the thread bean, so the management classes are only loaded by the
+     * first timed stage rather than with the metrics; they add to start-up time.
+     */
+    private static final class Allocation {
+        static final com.sun.management.ThreadMXBean BEAN = allocationBean();
+    }
+
+    /**
+     * Clears all metrics.
+     */
+    public void reset() {
+        stages.values().forEach(StageMetrics::reset);
+    }
+
+    /**
+     * Registers one MXBean per stage with the platform MBean server, named
+     * e.g. {@code service:type=TransactionMetrics,stage=validate}. Beans registered
+     * earlier under the same names, e.g. by another service, are replaced.
+     */
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (StageMetrics stage : stages.values()) {
+                ObjectName name = new ObjectName(MBEAN_DOMAIN + ":type=TransactionMetrics,stage="
+                        + stage.getStage().name().toLowerCase(Locale.ROOT));
+                try {
+                    server.registerMBean(stage, name);
+                } catch (InstanceAlreadyExistsException e) {
+                    server.unregisterMBean(name);
+                    server.registerMBean(stage, name);
+                }
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics MBeans", e);
+        }
+    }
+
+    /**
+     * Returns a text table of all stages that were called, with times in milliseconds.
+     */
+    public String dump() {
+        StringBuilder dump = new StringBuilder();
+        dump.append(String.format(Locale.ROOT, "%-20s %8s %12s %10s %14s %14s %10s %10s %10s %10s%n",
+                "Stage", "Calls", "Rows", "Skipped", "Bytes read", "Allocated", "Total ms", "p50 ms",
+                "p99 ms", "Max ms"));
+        for (StageMetrics stage : stages.values()) {
+            if (stage.getCalls() == 0 && stage.getRows() == 0) {
+                continue;
+            }
+            dump.append(String.format(Locale.ROOT, "%-20s %8d %12d %10d %14d %14d %10.3f %10.3f %10.3f %10.3f%n",
+                    stage.getStage().name().toLowerCase(Locale.ROOT), stage.getCalls(), stage.getRows(),
+                    stage.getSkippedRows(), stage.getBytesRead(), stage.getAllocatedBytes(),
+                    stage.getTotalTimeMillis(), stage.getP50TimeMillis(), stage.getP99TimeMillis(),
+                    stage.getMaxTimeMillis()));
+            stage.getSkippedRowsByReason().forEach((reason, count) ->
+                    dump.append(String.format(Locale.ROOT, "  skipped %s: %d%n",
+                            reason.toLowerCase(Locale.ROOT), count)));
+        }
+        return dump.toString();
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+            if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+                return allocation;
+            }
+        }
+        return null;
+    }
+}
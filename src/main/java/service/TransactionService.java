@@ -1,160 +1,1019 @@
 package service;
 
 import org.iit.Transaction;
+import service.TransactionMetrics.SkipReason;
+import service.TransactionMetrics.Stage;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Service class handling business logic for transaction processing.
  */
 public class TransactionService {
+    // One row in this many has its checksum calculation timed; a power of two
+    private static final int CHECKSUM_SAMPLE_RATE = 1024;
+
+    // Computes checksums without formatting the checksum line
+    private final ChecksumCalculator checksumCalculator = new ChecksumCalculator();
+    // Optional cache in front of the checksum calculator
+    private volatile ChecksumCache checksumCache;
+    // Item codes of every import of the session; also remembers which are alphanumeric
+    private final ItemCodeDictionary itemCodes = new ItemCodeDictionary();
+    // Compiled validation rules; replaced as a whole
+    private volatile ValidationRules validationRules = ValidationRules.defaults();
+    // Counters and timings of the processing stages
+    private final TransactionMetrics metrics = new TransactionMetrics();
+    private final StageMetrics checksumMetrics = metrics.getStage(Stage.CHECKSUM);
+    // Fork/join pools of the parallel stages by parallelism, kept for the lifetime of the
+    // service; idle workers exit on their own, so an unused pool holds no threads
+    private final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
 
     /**
-     * Imports transactions from a CSV file.
+     * Puts a cache in front of the checksum calculation, or removes it when cache is null.
+     */
+    public void setChecksumCache(ChecksumCache cache) {
+        this.checksumCache = cache;
+    }
+
+    public ChecksumCache getChecksumCache() {
+        return checksumCache;
+    }
+
+    public TransactionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ItemCodeDictionary getItemCodeDictionary() {
+        return itemCodes;
+    }
+
+    /**
+     * Sets the rules used by later validations, or restores the defaults when rules is null.
+     * Rows validated earlier keep their codes.
+     */
+    public void setValidationRules(ValidationRules rules) {
+        this.validationRules = rules != null ? rules : ValidationRules.defaults();
+    }
+
+    public ValidationRules getValidationRules() {
+        return validationRules;
+    }
+
+    /**
+     * Imports transactions from a CSV file. Repeated bill number and item code pairs are marked as duplicates.
      */
     public List<Transaction> importTransactionsFromFile(String filePath) throws IOException {
         List<Transaction> transactions = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 7) {
+        DuplicateBillIndex duplicates = new DuplicateBillIndex();
+        try (StageTimer timer = metrics.start(Stage.IMPORT);
+             TransactionFileReader reader = openReader(filePath, timer)) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                markDuplicate(transaction, duplicates);
+                transactions.add(transaction);
+            }
+            timer.addRows(transactions.size());
+            reader.drainSkipped(timer);
+        }
+        return transactions;
+    }
+
+    /**
+     * Imports transactions from a CSV file using several threads over a memory-mapped file.
+     * Produces the same list as importTransactionsFromFile.
+     */
+    public List<Transaction> importTransactionsInParallel(String filePath, int threads) throws IOException {
+        if (!ParallelTransactionParser.supports(Charset.defaultCharset())) {
+            // Multi-byte line breaks cannot be split on bytes
+            return importTransactionsFromFile(filePath);
+        }
+        try (StageTimer timer = metrics.start(Stage.IMPORT)) {
+            ParallelTransactionParser parser = newParallelParser(threads);
+            List<Transaction> transactions = parser.parse(Path.of(filePath));
+            markDuplicates(transactions);
+            recordImport(timer, parser, filePath, transactions.size());
+            return transactions;
+        }
+    }
+
+    /**
+     * Imports transactions from a CSV file into a columnar batch without creating
+     * Transaction objects.
+     */
+    public TransactionBatch importTransactionBatch(String filePath, int threads) throws IOException {
+        if (!ParallelTransactionParser.supports(Charset.defaultCharset())) {
+            return toTransactionBatch(importTransactionsFromFile(filePath));
+        }
+        try (StageTimer timer = metrics.start(Stage.IMPORT)) {
+            ParallelTransactionParser parser = newParallelParser(threads);
+            TransactionBatch batch = parser.parseBatch(Path.of(filePath));
+            markDuplicates(batch);
+            recordImport(timer, parser, filePath, batch.size());
+            return batch;
+        }
+    }
+
+    /**
+     * Imports transactions from a CSV file into columnar batches on several threads and
+     * hands each batch to the consumer, in file order, as soon as it is parsed, e.g. to
+     * show the first rows while the rest of the file is read. Rows repeating the bill
+     * number and item code of a row in any earlier batch are marked as duplicates.
+     * Returns the number of imported transactions.
+     */
+    public long importTransactionBatches(String filePath, int threads,
+                                         Consumer<TransactionBatch> batchConsumer) throws IOException {
+        if (!ParallelTransactionParser.supports(Charset.defaultCharset())) {
+            TransactionBatch batch = importTransactionBatch(filePath, threads);
+            batchConsumer.accept(batch);
+            return batch.size();
+        }
+        try (StageTimer timer = metrics.start(Stage.IMPORT)) {
+            ParallelTransactionParser parser = newParallelParser(threads);
+            // Spans all batches, so rows repeated in a later batch are still found
+            DuplicateBillIndex duplicates = new DuplicateBillIndex();
+            long[] imported = {0};
+            parser.parseBatches(Path.of(filePath), batch -> {
+                markDuplicates(batch, duplicates);
+                imported[0] += batch.size();
+                batchConsumer.accept(batch);
+            });
+            recordImport(timer, parser, filePath, imported[0]);
+            return imported[0];
+        }
+    }
+
+    private ParallelTransactionParser newParallelParser(int threads) {
+        return new ParallelTransactionParser(threads, 0, Charset.defaultCharset(), itemCodes);
+    }
+
+    private static void recordImport(StageTimer timer, ParallelTransactionParser parser, String filePath, long rows)
+            throws IOException {
+        timer.addRows(rows);
+        timer.addBytesRead(Files.size(Path.of(filePath)));
+        for (SkipReason reason : SkipReason.values()) {
+            timer.skip(reason, parser.getSkipped(reason));
+        }
+    }
+
+    /**
+     * Opens a reader for a CSV file in the default charset, like FileReader.
+     */
+    private TransactionFileReader openReader(String filePath, StageTimer timer) throws IOException {
+        Path file = Path.of(filePath);
+        TransactionFileReader reader = new TransactionFileReader(file, Charset.defaultCharset(), itemCodes);
+        timer.addBytesRead(Files.size(file));
+        return reader;
+    }
+
+    /**
+     * Streams transactions from a CSV file without loading the whole file.
+     * The returned stream must be closed to release the file.
+     */
+    public Stream<Transaction> streamTransactionsFromFile(String filePath) throws IOException {
+        DuplicateBillIndex duplicates = new DuplicateBillIndex();
+        // Recorded when the stream is closed
+        StageTimer timer = metrics.start(Stage.IMPORT);
+        TransactionFileReader reader = openReader(filePath, timer);
+        Spliterator<Transaction> transactions = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Transaction> action) {
+                Transaction transaction;
+                try {
+                    transaction = reader.next();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (transaction == null) {
+                    return false;
+                }
+                timer.addRows(1);
+                action.accept(markDuplicate(transaction, duplicates));
+                return true;
+            }
+        };
+        return StreamSupport.stream(transactions, false)
+                .onClose(() -> {
+                    reader.drainSkipped(timer);
+                    timer.close();
                     try {
-                        // Parse transaction data from CSV line
-                        String billNumber = parts[0].trim();
-                        String itemCode = parts[1].trim();
-                        double internalPrice = Double.parseDouble(parts[2].trim());
-                        double salePrice = Double.parseDouble(parts[3].trim());
-                        int quantity = Integer.parseInt(parts[4].trim());
-                        double discount = Double.parseDouble(parts[5].trim());
-                        int checksum = Integer.parseInt(parts[6].trim());
-
-                        // Create and add new transaction
-                        Transaction transaction = new Transaction(
-                                billNumber, itemCode, internalPrice, salePrice,
-                                quantity, discount, checksum);
-                        transactions.add(transaction);
-                    } catch (NumberFormatException e) {
-                        // Skip malformed lines
+                        reader.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
                     }
+                });
+    }
+
+    /**
+     * Imports transactions in batches of at most batchSize rows and hands each batch
+     * to the consumer, so only one batch is held in memory at a time.
+     * Returns the number of imported transactions.
+     */
+    public long importTransactionsInBatches(String filePath, int batchSize,
+                                            Consumer<List<Transaction>> batchConsumer) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        long imported = 0;
+        List<Transaction> batch = new ArrayList<>(batchSize);
+        // Spans all batches, so rows repeated in a later batch are still found
+        DuplicateBillIndex duplicates = new DuplicateBillIndex();
+        // The time includes the work of the consumer
+        try (StageTimer timer = metrics.start(Stage.IMPORT);
+             TransactionFileReader reader = openReader(filePath, timer)) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                timer.addRows(1);
+                markDuplicate(transaction, duplicates);
+                batch.add(transaction);
+                if (batch.size() == batchSize) {
+                    imported += batch.size();
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
                 }
             }
+            reader.drainSkipped(timer);
         }
-        return transactions;
+        if (!batch.isEmpty()) {
+            imported += batch.size();
+            batchConsumer.accept(batch);
+        }
+        return imported;
     }
 
     /**
-     * Validates transactions.
+     * Exports the rows of a batch as CSV, gzip-compressed when gzip is true.
      */
-    public void validateTransactions(List<Transaction> transactions) {
+    public void exportTransactions(TransactionBatch batch, String filePath, boolean gzip) throws IOException {
+        // The file is closed even when wrapping it fails; closing it again after the writer is harmless
+        try (OutputStream file = Files.newOutputStream(Path.of(filePath));
+             OutputStream out = gzip ? new GZIPOutputStream(file, 1 << 16) : file;
+             TransactionCsvWriter writer = new TransactionCsvWriter(out)) {
+            writer.writeRows(batch);
+        }
+    }
+
+    /**
+     * Exports the rows of a batch as CSV to a stream. The stream is flushed but not closed.
+     */
+    public void exportTransactions(TransactionBatch batch, OutputStream out) throws IOException {
+        TransactionCsvWriter writer = new TransactionCsvWriter(out);
+        writer.writeRows(batch);
+        writer.flush();
+    }
+
+    /**
+     * Saves a batch, including its validation codes and profits, as a binary snapshot.
+     * The snapshot records the size, modification time and SHA-256 hash of the source
+     * file so it can later be checked with isSnapshotCurrent; sourceFilePath may be null.
+     */
+    public void saveSnapshot(TransactionBatch batch, String sourceFilePath, String snapshotPath) throws IOException {
+        TransactionSnapshot.Source source = sourceFilePath == null
+                ? TransactionSnapshot.Source.NONE : TransactionSnapshot.Source.of(Path.of(sourceFilePath));
+        TransactionSnapshot.write(batch, source, Path.of(snapshotPath));
+    }
+
+    /**
+     * Loads a batch saved by saveSnapshot. Nothing is parsed or recalculated: rows that were
+     * validated and had their profit calculated are not processed again, and the tax totals
+     * are summed from the saved profits while loading.
+     */
+    public TransactionBatch loadSnapshot(String snapshotPath) throws IOException {
+        return TransactionSnapshot.read(Path.of(snapshotPath), itemCodes);
+    }
+
+    /**
+     * Returns true when the snapshot was saved from the current content of the source file.
+     */
+    public boolean isSnapshotCurrent(String snapshotPath, String sourceFilePath) throws IOException {
+        return TransactionSnapshot.readSource(Path.of(snapshotPath)).matches(Path.of(sourceFilePath));
+    }
+
+    /**
+     * Validates, calculates profit and sums tax over a CSV file in a single pass
+     * with bounded memory.
+     */
+    public TaxCalculationResult calculateTaxFromFile(String filePath, double taxRate, int batchSize) throws IOException {
+        TaxAggregator aggregator = new TaxAggregator();
+        importTransactionsInBatches(filePath, batchSize, batch -> {
+            validateTransactions(batch);
+            accumulateProfitsAndTax(batch, aggregator);
+        });
+        return aggregator.toResult(taxRate);
+    }
+
+    /**
+     * Builds the bill number, item code, profit and validation indexes of the batch.
+     * The index has to be built again after the batch is changed.
+     */
+    public TransactionIndex indexTransactions(TransactionBatch batch) {
+        return new TransactionIndex(batch);
+    }
+
+    /**
+     * Marks every transaction whose bill number and item code appeared earlier in the list
+     * as a duplicate and clears the mark on the others. Returns the number of duplicates.
+     */
+    public int markDuplicates(List<Transaction> transactions) {
+        DuplicateBillIndex duplicates = new DuplicateBillIndex();
+        int count = 0;
         for (Transaction transaction : transactions) {
-            boolean isValid = true;
-            List<String> errors = new ArrayList<>();
+            int code = transaction.getValidationCode() & ~ValidationCode.DUPLICATE;
+            if (!duplicates.add(transaction.getBillNumber(), transaction.getItemCode())) {
+                code |= ValidationCode.DUPLICATE;
+                count++;
+            }
+            if (code != transaction.getValidationCode()) {
+                transaction.setValidation(code, transaction.getCalculatedChecksum());
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Marks every row whose bill number and item code appeared in an earlier row as a
+     * duplicate and clears the mark on the others. Returns the number of duplicates.
+     */
+    public int markDuplicates(TransactionBatch batch) {
+        return markDuplicates(batch, new DuplicateBillIndex());
+    }
+
+    /**
+     * Marks the rows whose bill number and item code are already in the index, e.g. from
+     * rows imported earlier, and adds the others to it. Returns the number of duplicates.
+     */
+    int markDuplicates(TransactionBatch batch, DuplicateBillIndex duplicates) {
+        ItemCodeDictionary dictionary = batch.getItemCodeDictionary();
+        byte[] pool = batch.billNumberPool();
+        int[] starts = batch.billNumberStarts();
+        int[] lengths = batch.billNumberLengths();
+        int count = 0;
+        for (int row = 0; row < batch.size(); row++) {
+            int code = batch.getValidationCode(row) & ~ValidationCode.DUPLICATE;
+            if (!duplicates.add(pool, starts[row], lengths[row], dictionary.bytes(batch.getItemCodeId(row)))) {
+                code |= ValidationCode.DUPLICATE;
+                count++;
+            }
+            batch.setValidation(row, code, batch.getCalculatedChecksum(row));
+        }
+        return count;
+    }
 
-            // Check checksum
-            int calculatedChecksum = calculateChecksum(transaction);
-            if (calculatedChecksum != transaction.getChecksum()) {
-                errors.add("Checksum mismatch (expected " + transaction.getChecksum() +
-                        ", got " + calculatedChecksum + ")");
-                isValid = false;
+    private Transaction markDuplicate(Transaction transaction, DuplicateBillIndex duplicates) {
+        if (!duplicates.add(transaction.getBillNumber(), transaction.getItemCode())) {
+            transaction.setValidation(transaction.getValidationCode() | ValidationCode.DUPLICATE,
+                    transaction.getCalculatedChecksum());
+        }
+        return transaction;
+    }
+
+    /**
+     * Validates transactions.
+     */
+    public void validateTransactions(List<Transaction> transactions) {
+        try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+            int row = 0;
+            for (Transaction transaction : transactions) {
+                validateTransaction(transaction, row++);
             }
+            timer.addRows(transactions.size());
+            checksumMetrics.addRows(transactions.size());
+        }
+    }
+
+    /**
+     * Validates transactions on a fork/join pool with the given parallelism.
+     * Produces the same statuses as the serial version.
+     */
+    public void validateTransactions(List<Transaction> transactions, int parallelism) {
+        try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+            List<Transaction> rows = transactions instanceof RandomAccess ? transactions : new ArrayList<>(transactions);
+            runInParallel(parallelism, rows.size(), i -> validateTransaction(rows.get(i), i));
+            timer.addRows(rows.size());
+            checksumMetrics.addRows(rows.size());
+        }
+    }
 
-            // Check for special characters in item code
-            if (!transaction.getItemCode().matches("[a-zA-Z0-9]+")) {
-                errors.add("Item code contains special characters");
-                isValid = false;
+    /**
+     * Validates all rows of a batch.
+     */
+    public void validateTransactions(TransactionBatch batch) {
+        validateTransactions(batch, 0, batch.size());
+    }
+
+    /**
+     * Validates the rows of a batch in [from, to), e.g. one chunk of a long-running validation.
+     */
+    public void validateTransactions(TransactionBatch batch, int from, int to) {
+        try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+            ValidationRules rules = validationRules;
+            for (int row = from; row < to; row++) {
+                validateRow(batch, row, rules);
             }
+            batch.markValidated(from, to);
+            timer.addRows(to - from);
+            checksumMetrics.addRows(to - from);
+        }
+    }
 
-            // Check for negative prices
-            if (transaction.getInternalPrice() < 0 || transaction.getSalePrice() < 0) {
-                errors.add("Negative price value");
-                isValid = false;
+    /**
+     * Validates all rows of a batch on a fork/join pool with the given parallelism.
+     * The running totals of the batch are dropped and calculated again by the next tax calculation.
+     */
+    public void validateTransactions(TransactionBatch batch, int parallelism) {
+        // Rows are updated from several threads, which the running totals do not allow
+        batch.setValidTotals(null);
+        batch.stopCounting();
+        try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+            ValidationRules rules = validationRules;
+            runInParallel(parallelism, batch.size(), row -> validateRow(batch, row, rules));
+            batch.recount();
+            batch.markValidated(0, batch.size());
+            timer.addRows(batch.size());
+            checksumMetrics.addRows(batch.size());
+        }
+    }
+
+    /**
+     * Validates only the rows added or replaced since they were last validated.
+     * Returns the number of rows validated.
+     */
+    public int revalidateChangedRows(TransactionBatch batch) {
+        return revalidateChangedRows(batch, 0, batch.size());
+    }
+
+    /**
+     * Validates the rows in [from, to) that were added or replaced since they were last validated.
+     * Returns the number of rows validated.
+     */
+    public int revalidateChangedRows(TransactionBatch batch, int from, int to) {
+        try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+            ValidationRules rules = validationRules;
+            int count = 0;
+            for (int row = batch.nextRowToValidate(from); row >= 0 && row < to;
+                 row = batch.nextRowToValidate(row + 1)) {
+                validateRow(batch, row, rules);
+                count++;
             }
+            batch.markValidated(from, to);
+            timer.addRows(count);
+            checksumMetrics.addRows(count);
+            return count;
+        }
+    }
+
+    private void validateTransaction(Transaction transaction, int row) {
+        int calculatedChecksum = checksum(transaction.getItemCode(), transaction.getInternalPrice(),
+                transaction.getSalePrice(), transaction.getQuantity(), transaction.getDiscount(), row);
+        transaction.setValidation(calculateValidationCode(transaction, calculatedChecksum), calculatedChecksum);
+    }
 
-            if (isValid) {
-                transaction.setStatus("Valid");
-            } else {
-                transaction.setStatus("Invalid: " + String.join(", ", errors));
+    /**
+     * Returns the validation code of a transaction without changing it, given its calculated checksum.
+     */
+    public int calculateValidationCode(Transaction transaction, int calculatedChecksum) {
+        return validationRules.evaluate(transaction.getItemCode(), transaction.getInternalPrice(),
+                transaction.getSalePrice(), transaction.getQuantity(), transaction.getDiscount(),
+                transaction.getChecksum(), calculatedChecksum, itemCodes)
+                | (transaction.getValidationCode() & ValidationCode.DUPLICATE);
+    }
+
+    /**
+     * Prepares validating the rows added or replaced since they were last validated on a
+     * background thread, while the thread that owns the batch keeps reading it. Which rows
+     * to validate is copied now, so this is called on the owning thread.
+     */
+    public RowUpdate revalidateChangedRowsLater(TransactionBatch batch) {
+        RowSet rowsToValidate = batch.copyRowsToValidate();
+        ValidationRules rules = validationRules;
+        return (from, to) -> {
+            try (StageTimer timer = metrics.start(Stage.VALIDATE)) {
+                int[] rows = new int[to - from];
+                int[] codes = new int[rows.length];
+                int[] calculatedChecksums = new int[rows.length];
+                int count = 0;
+                for (int row = rowsToValidate.next(from); row >= 0 && row < to; row = rowsToValidate.next(row + 1)) {
+                    rows[count] = row;
+                    calculatedChecksums[count] = rowChecksum(batch, row);
+                    codes[count] = validationCode(batch, row, rules, calculatedChecksums[count]);
+                    count++;
+                }
+                timer.addRows(count);
+                checksumMetrics.addRows(count);
+                int validated = count;
+                return () -> {
+                    for (int i = 0; i < validated; i++) {
+                        batch.setValidation(rows[i], codes[i], calculatedChecksums[i]);
+                    }
+                    batch.markValidated(from, to);
+                };
             }
+        };
+    }
+
+    // The rules are read once per call, so every row of a call is validated by the same rules
+    private void validateRow(TransactionBatch batch, int row, ValidationRules rules) {
+        int calculatedChecksum = rowChecksum(batch, row);
+        batch.setValidation(row, validationCode(batch, row, rules, calculatedChecksum), calculatedChecksum);
+    }
+
+    private int rowChecksum(TransactionBatch batch, int row) {
+        return checksum(batch.getItemCode(row), batch.getInternalPrice(row),
+                batch.getSalePrice(row), batch.getQuantity(row), batch.getDiscount(row), row);
+    }
+
+    private int validationCode(TransactionBatch batch, int row, ValidationRules rules, int calculatedChecksum) {
+        // The duplicate mark comes from import and is kept
+        int duplicate = batch.getValidationCode(row) & ValidationCode.DUPLICATE;
+        return rules.evaluate(batch.getItemCode(row), batch.getInternalPrice(row),
+                batch.getSalePrice(row), batch.getQuantity(row), batch.getDiscount(row), batch.getChecksum(row),
+                calculatedChecksum, itemCodes) | duplicate;
+    }
+
+    /**
+     * Runs the action for every index in [0, count) on the fork/join pool of the parallelism.
+     */
+    private void runInParallel(int parallelism, int count, IntConsumer action) {
+        pool(parallelism).submit(() -> IntStream.range(0, count).parallel().forEach(action)).join();
+    }
+
+    /**
+     * Returns the common pool when it has the given parallelism, and otherwise the
+     * service's own pool for it, created on first use.
+     */
+    private ForkJoinPool pool(int parallelism) {
+        if (parallelism == ForkJoinPool.getCommonPoolParallelism()) {
+            return ForkJoinPool.commonPool();
         }
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
     }
 
     /**
      * Calculates a checksum for transaction validation.
      */
     public int calculateChecksum(Transaction transaction) {
-        // Create a string representation of key transaction data
-        String lineData = String.format("Item: %s, Internal Price: %.2f, Sale Price: %.2f, Quantity: %d, Discount: %.2f",
-                transaction.getItemCode(), transaction.getInternalPrice(),
-                transaction.getSalePrice(), transaction.getQuantity(),
-                transaction.getDiscount());
-
-        int capitalCount = 0;
-        int simpleCount = 0;
-        int numberCount = 0;
+        checksumMetrics.addRows(1);
+        return checksum(transaction.getItemCode(), transaction.getInternalPrice(),
+                transaction.getSalePrice(), transaction.getQuantity(), transaction.getDiscount(), 0);
+    }
 
-        for (char c : lineData.toCharArray()) {
-            if (Character.isUpperCase(c)) {
-                capitalCount++;
-            } else if (Character.isLowerCase(c)) {
-                simpleCount++;
-            } else if (Character.isDigit(c) || c == '.') {
-                numberCount++;
-            }
+    // Rows are counted by the callers once per call; timing every row would cost more than the checksum itself
+    private int checksum(String itemCode, double internalPrice, double salePrice, int quantity, double discount,
+                         int row) {
+        if ((row & (CHECKSUM_SAMPLE_RATE - 1)) != 0) {
+            return cachedChecksum(itemCode, internalPrice, salePrice, quantity, discount);
         }
+        long start = System.nanoTime();
+        int checksum = cachedChecksum(itemCode, internalPrice, salePrice, quantity, discount);
+        checksumMetrics.recordCall(System.nanoTime() - start, 0);
+        return checksum;
+    }
 
-        return capitalCount + simpleCount + numberCount;
+    private int cachedChecksum(String itemCode, double internalPrice, double salePrice, int quantity,
+                               double discount) {
+        ChecksumCache cache = checksumCache;
+        if (cache == null) {
+            return checksumCalculator.calculate(itemCode, internalPrice, salePrice, quantity, discount);
+        }
+        int checksum = cache.get(itemCode, internalPrice, salePrice, quantity, discount);
+        if (checksum == ChecksumCache.MISS) {
+            checksum = checksumCalculator.calculate(itemCode, internalPrice, salePrice, quantity, discount);
+            cache.put(itemCode, internalPrice, salePrice, quantity, discount, checksum);
+        }
+        return checksum;
     }
 
     /**
      * Calculates profit for each transaction.
      */
     public void calculateProfits(List<Transaction> transactions) {
-        for (Transaction transaction : transactions) {
-            double discountedRevenue = transaction.getSalePrice() *
-                    transaction.getQuantity() *
-                    (1 - transaction.getDiscount()/100);
-            double cost = transaction.getInternalPrice() * transaction.getQuantity();
-            double profit = discountedRevenue - cost;
-            transaction.setProfit(profit);
+        try (StageTimer timer = metrics.start(Stage.PROFIT)) {
+            for (Transaction transaction : transactions) {
+                transaction.setProfit(calculateProfit(transaction));
+            }
+            timer.addRows(transactions.size());
+        }
+    }
+
+    /**
+     * Returns the profit of a transaction without changing it.
+     */
+    public double calculateProfit(Transaction transaction) {
+        return calculateProfit(transaction.getInternalPrice(), transaction.getSalePrice(),
+                transaction.getQuantity(), transaction.getDiscount());
+    }
+
+    /**
+     * Calculates profit for each row of a batch.
+     */
+    public void calculateProfits(TransactionBatch batch) {
+        calculateProfits(batch, 0, batch.size());
+    }
+
+    /**
+     * Calculates profit for the rows of a batch in [from, to).
+     */
+    public void calculateProfits(TransactionBatch batch, int from, int to) {
+        try (StageTimer timer = metrics.start(Stage.PROFIT)) {
+            for (int row = from; row < to; row++) {
+                calculateRowProfit(batch, row);
+            }
+            batch.markProfitsCalculated(from, to);
+            timer.addRows(to - from);
         }
     }
 
+    /**
+     * Calculates profit only for the rows added or replaced since their profit was last calculated.
+     * Returns the number of rows calculated.
+     */
+    public int recalculateChangedProfits(TransactionBatch batch) {
+        return recalculateChangedProfits(batch, 0, batch.size());
+    }
+
+    /**
+     * Calculates profit for the rows in [from, to) that were added or replaced since their
+     * profit was last calculated. Returns the number of rows calculated.
+     */
+    public int recalculateChangedProfits(TransactionBatch batch, int from, int to) {
+        try (StageTimer timer = metrics.start(Stage.PROFIT)) {
+            int count = 0;
+            for (int row = batch.nextRowToCalculateProfit(from); row >= 0 && row < to;
+                 row = batch.nextRowToCalculateProfit(row + 1)) {
+                calculateRowProfit(batch, row);
+                count++;
+            }
+            batch.markProfitsCalculated(from, to);
+            timer.addRows(count);
+            return count;
+        }
+    }
+
+    /**
+     * Prepares calculating profit for the rows added or replaced since their profit was
+     * last calculated on a background thread, while the thread that owns the batch keeps
+     * reading it. Which rows to calculate is copied now, so this is called on the owning thread.
+     */
+    public RowUpdate recalculateChangedProfitsLater(TransactionBatch batch) {
+        RowSet rowsToCalculate = batch.copyRowsToCalculateProfit();
+        return (from, to) -> {
+            try (StageTimer timer = metrics.start(Stage.PROFIT)) {
+                int[] rows = new int[to - from];
+                double[] profits = new double[rows.length];
+                int count = 0;
+                for (int row = rowsToCalculate.next(from); row >= 0 && row < to; row = rowsToCalculate.next(row + 1)) {
+                    rows[count] = row;
+                    profits[count] = calculateProfit(batch.getInternalPrice(row), batch.getSalePrice(row),
+                            batch.getQuantity(row), batch.getDiscount(row));
+                    count++;
+                }
+                timer.addRows(count);
+                int calculated = count;
+                return () -> {
+                    for (int i = 0; i < calculated; i++) {
+                        batch.setProfit(rows[i], profits[i]);
+                    }
+                    batch.markProfitsCalculated(from, to);
+                };
+            }
+        };
+    }
+
+    private static void calculateRowProfit(TransactionBatch batch, int row) {
+        batch.setProfit(row, calculateProfit(batch.getInternalPrice(row), batch.getSalePrice(row),
+                batch.getQuantity(row), batch.getDiscount(row)));
+    }
+
+    /**
+     * Calculates the profit of one transaction: discounted revenue minus cost.
+     */
+    static double calculateProfit(double internalPrice, double salePrice, int quantity, double discount) {
+        double discountedRevenue = salePrice * quantity * (1 - discount/100);
+        double cost = internalPrice * quantity;
+        return discountedRevenue - cost;
+    }
+
     /**
      * Removes transactions with zero profit.
      */
     public void removeZeroProfitTransactions(List<Transaction> transactions) {
-        transactions.removeIf(transaction ->
-                transaction.getProfit() != null && transaction.getProfit() == 0);
+        try (StageTimer timer = metrics.start(Stage.ZERO_PROFIT_REMOVAL)) {
+            int before = transactions.size();
+            transactions.removeIf(transaction ->
+                    transaction.getProfit() != null && transaction.getProfit() == 0);
+            timer.addRows(before);
+            timer.skip(SkipReason.ZERO_PROFIT, before - transactions.size());
+        }
+    }
+
+    /**
+     * Removes rows with zero profit from a batch.
+     */
+    public void removeZeroProfitTransactions(TransactionBatch batch) {
+        try (StageTimer timer = metrics.start(Stage.ZERO_PROFIT_REMOVAL)) {
+            boolean[] keep = nonZeroProfitRows(batch);
+            batch.retainRows(keep);
+            timer.addRows(keep.length);
+            timer.skip(SkipReason.ZERO_PROFIT, keep.length - batch.size());
+        }
+    }
+
+    /**
+     * Returns a copy of a batch without its rows with zero profit. The batch itself is
+     * only read, so it can still be shown while the copy is made.
+     */
+    public TransactionBatch copyWithoutZeroProfitTransactions(TransactionBatch batch) {
+        try (StageTimer timer = metrics.start(Stage.ZERO_PROFIT_REMOVAL)) {
+            boolean[] keep = nonZeroProfitRows(batch);
+            TransactionBatch copy = batch.copyRows(keep);
+            timer.addRows(keep.length);
+            timer.skip(SkipReason.ZERO_PROFIT, keep.length - copy.size());
+            return copy;
+        }
+    }
+
+    private static boolean[] nonZeroProfitRows(TransactionBatch batch) {
+        boolean[] keep = new boolean[batch.size()];
+        for (int row = 0; row < keep.length; row++) {
+            keep[row] = batch.getProfit(row) != 0;
+        }
+        return keep;
     }
 
     /**
      * Calculates tax based on transaction profits.
      */
     public TaxCalculationResult calculateTax(List<Transaction> transactions, double taxRate) {
-        double totalProfit = 0;
-        double totalLoss = 0;
+        try (StageTimer timer = metrics.start(Stage.TAX)) {
+            TaxAggregator aggregator = new TaxAggregator();
 
-        // Sum profits and losses from valid transactions
+            // Sum profits and losses from valid transactions
+            for (Transaction transaction : transactions) {
+                if (transaction.isValid()) {
+                    aggregator.add(transaction.profitProperty().get());
+                }
+            }
+            timer.addRows(transactions.size());
+            timer.skip(SkipReason.INVALID, transactions.size() - aggregator.getCount());
+            return aggregator.toResult(taxRate);
+        }
+    }
+
+    /**
+     * Calculates tax based on the profits of a batch.
+     * The totals are kept by the batch, so calculating again after some rows changed is constant time.
+     */
+    public TaxCalculationResult calculateTax(TransactionBatch batch, double taxRate) {
+        try (StageTimer timer = metrics.start(Stage.TAX)) {
+            TaxAggregator aggregator = batch.getValidTotals();
+            if (aggregator == null) {
+                aggregator = new TaxAggregator();
+
+                // Sum profits and losses from valid rows
+                for (int row = 0; row < batch.size(); row++) {
+                    if (batch.isValid(row)) {
+                        aggregator.add(batch.getProfit(row));
+                    }
+                }
+                batch.setValidTotals(aggregator);
+                timer.addRows(batch.size());
+                timer.skip(SkipReason.INVALID, batch.size() - aggregator.getCount());
+            }
+            return aggregator.toResult(taxRate);
+        }
+    }
+
+    /**
+     * Calculates the profit of every transaction and the tax on the valid ones in a single pass.
+     */
+    public TaxCalculationResult calculateProfitsAndTax(List<Transaction> transactions, double taxRate) {
+        TaxAggregator aggregator = new TaxAggregator();
+        accumulateProfitsAndTax(transactions, aggregator);
+        return aggregator.toResult(taxRate);
+    }
+
+    /**
+     * Calculates the profit of every row and the tax on the valid ones in a single pass,
+     * using the given parallelism. Partial totals of the worker threads are merged.
+     */
+    public TaxCalculationResult calculateProfitsAndTax(TransactionBatch batch, double taxRate, int parallelism) {
+        // Rows are updated from several threads, the result becomes the new running totals
+        batch.setValidTotals(null);
+        batch.stopCounting();
+        try (StageTimer timer = metrics.start(Stage.TAX)) {
+            TaxAggregator aggregator = pool(parallelism).submit(() -> IntStream.range(0, batch.size()).parallel()
+                    .collect(TaxAggregator::new, (partial, row) -> {
+                        double profit = calculateProfit(batch.getInternalPrice(row), batch.getSalePrice(row),
+                                batch.getQuantity(row), batch.getDiscount(row));
+                        batch.setProfit(row, profit);
+                        if (batch.isValid(row)) {
+                            partial.add(profit);
+                        }
+                    }, TaxAggregator::merge)).join();
+            batch.markProfitsCalculated(0, batch.size());
+            batch.setValidTotals(aggregator);
+            batch.recount();
+            timer.addRows(batch.size());
+            timer.skip(SkipReason.INVALID, batch.size() - aggregator.getCount());
+            return aggregator.toResult(taxRate);
+        }
+    }
+
+    /**
+     * Sums profit and loss of the valid transactions per item code.
+     */
+    public GroupAggregator aggregateByItemCode(List<Transaction> transactions) {
+        return aggregate(transactions, Transaction::getItemCode);
+    }
+
+    /**
+     * Sums profit and loss of the valid transactions per bill number.
+     */
+    public GroupAggregator aggregateByBillNumber(List<Transaction> transactions) {
+        return aggregate(transactions, Transaction::getBillNumber);
+    }
+
+    /**
+     * Sums profit and loss of the valid rows of a batch per item code, using the given parallelism.
+     */
+    public GroupAggregator aggregateByItemCode(TransactionBatch batch, int parallelism) {
+        ItemCodeDictionary dictionary = batch.getItemCodeDictionary();
+        return aggregate(batch, parallelism, (aggregator, row) -> {
+            byte[] itemCode = dictionary.bytes(batch.getItemCodeId(row));
+            aggregator.add(itemCode, 0, itemCode == null ? -1 : itemCode.length, batch.getProfit(row));
+        });
+    }
+
+    /**
+     * Sums profit and loss of the valid rows of a batch per bill number, using the given parallelism.
+     */
+    public GroupAggregator aggregateByBillNumber(TransactionBatch batch, int parallelism) {
+        // Keys are read straight from the bill number pool without decoding them
+        byte[] pool = batch.billNumberPool();
+        int[] starts = batch.billNumberStarts();
+        int[] lengths = batch.billNumberLengths();
+        return aggregate(batch, parallelism,
+                (aggregator, row) -> aggregator.add(pool, starts[row], lengths[row], batch.getProfit(row)));
+    }
+
+    private GroupAggregator aggregate(List<Transaction> transactions, Function<Transaction, String> key) {
+        GroupAggregator aggregator = new GroupAggregator();
         for (Transaction transaction : transactions) {
-            if ("Valid".equals(transaction.getStatus())) {
-                if (transaction.getProfit() > 0) {
-                    totalProfit += transaction.getProfit();
-                } else {
-                    totalLoss += Math.abs(transaction.getProfit());
+            if (transaction.isValid()) {
+                aggregator.add(key.apply(transaction), transaction.profitProperty().get());
+            }
+        }
+        return aggregator;
+    }
+
+    // One partial aggregator per contiguous range of rows, merged at the end
+    private GroupAggregator aggregate(TransactionBatch batch, int parallelism,
+                                      ObjIntConsumer<GroupAggregator> addRow) {
+        int rows = batch.size();
+        int chunks = Math.max(1, Math.min(parallelism, rows));
+        return pool(parallelism).submit(() -> IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    GroupAggregator partial = new GroupAggregator();
+                    int to = (int) ((long) rows * (chunk + 1) / chunks);
+                    for (int row = (int) ((long) rows * chunk / chunks); row < to; row++) {
+                        if (batch.isValid(row)) {
+                            addRow.accept(partial, row);
+                        }
+                    }
+                    return partial;
+                })
+                .reduce((left, right) -> {
+                    left.merge(right);
+                    return left;
+                })
+                .orElseGet(GroupAggregator::new)).join();
+    }
+
+    private void accumulateProfitsAndTax(List<Transaction> transactions, TaxAggregator aggregator) {
+        try (StageTimer timer = metrics.start(Stage.TAX)) {
+            int valid = 0;
+            for (Transaction transaction : transactions) {
+                double profit = calculateProfit(transaction);
+                transaction.setProfit(profit);
+                if (transaction.isValid()) {
+                    aggregator.add(profit);
+                    valid++;
                 }
             }
+            timer.addRows(transactions.size());
+            timer.skip(SkipReason.INVALID, transactions.size() - valid);
         }
+    }
 
-        // Calculate net profit and tax
-        double netProfit = totalProfit - totalLoss;
-        double tax = netProfit * taxRate / 100;
+    /**
+     * Copies transactions into a columnar batch.
+     */
+    public TransactionBatch toTransactionBatch(List<Transaction> transactions) {
+        TransactionBatch batch = new TransactionBatch(transactions.size(), itemCodes);
+        for (Transaction transaction : transactions) {
+            int row = batch.add(transaction.getBillNumber(), transaction.getItemCode(),
+                    transaction.getInternalPrice(), transaction.getSalePrice(), transaction.getQuantity(),
+                    transaction.getDiscount(), transaction.getChecksum());
+            batch.setProfit(row, transaction.getProfit());
+            batch.setValidation(row, transaction.getValidationCode(), transaction.getCalculatedChecksum());
+        }
+        return batch;
+    }
 
-        return new TaxCalculationResult(totalProfit, totalLoss, netProfit, tax);
+    /**
+     * Copies the fields, profit and validation of a transaction into one row of a batch.
+     * The duplicate marks of the rows with the old and the new bill number are worked out again.
+     */
+    public void updateRow(TransactionBatch batch, int row, Transaction transaction) {
+        int previousBill = batch.getBillId(row);
+        batch.set(row, transaction.getBillNumber(), transaction.getItemCode(), transaction.getInternalPrice(),
+                transaction.getSalePrice(), transaction.getQuantity(), transaction.getDiscount(),
+                transaction.getChecksum());
+        batch.setProfit(row, transaction.getProfit());
+        batch.setValidation(row, transaction.getValidationCode() & ~ValidationCode.DUPLICATE,
+                transaction.getCalculatedChecksum());
+        int bill = batch.getBillId(row);
+        refreshDuplicates(batch, bill);
+        if (previousBill != bill) {
+            refreshDuplicates(batch, previousBill);
+        }
+    }
+
+    /**
+     * Removes a row of a batch. A later row with the same bill number and item code
+     * is no longer marked as a duplicate when the removed row was the first of them.
+     */
+    public void removeRow(TransactionBatch batch, int row) {
+        int bill = batch.getBillId(row);
+        batch.remove(row);
+        refreshDuplicates(batch, bill);
+    }
+
+    /**
+     * Marks the duplicates again among the rows of one bill number, e.g. after one of
+     * them was edited or removed. Other rows cannot have changed their duplicate mark.
+     * Only the rows of that bill are visited, through the batch's bill number index.
+     */
+    private void refreshDuplicates(TransactionBatch batch, int bill) {
+        ItemCodeDictionary dictionary = batch.getItemCodeDictionary();
+        byte[] pool = batch.billNumberPool();
+        int[] starts = batch.billNumberStarts();
+        int[] lengths = batch.billNumberLengths();
+        DuplicateBillIndex duplicates = new DuplicateBillIndex(16);
+        for (int row = batch.firstRowOfBill(bill); row >= 0; row = batch.nextRowOfBill(row)) {
+            int code = batch.getValidationCode(row) & ~ValidationCode.DUPLICATE;
+            if (!duplicates.add(pool, starts[row], lengths[row], dictionary.bytes(batch.getItemCodeId(row)))) {
+                code |= ValidationCode.DUPLICATE;
+            }
+            if (code != batch.getValidationCode(row)) {
+                batch.setValidation(row, code, batch.getCalculatedChecksum(row));
+            }
+        }
+    }
+
+    /**
+     * Creates a Transaction for one row of a batch, e.g. for display in a table.
+     */
+    public Transaction toTransaction(TransactionBatch batch, int row) {
+        Transaction transaction = new Transaction(batch.getBillNumber(row), batch.getItemCode(row),
+                batch.getInternalPrice(row), batch.getSalePrice(row), batch.getQuantity(row),
+                batch.getDiscount(row), batch.getChecksum(row));
+        transaction.setProfit(batch.getProfit(row));
+        transaction.setValidation(batch.getValidationCode(row), batch.getCalculatedChecksum(row));
+        return transaction;
+    }
+
+    /**
+     * Work on the rows of a batch, chunk by chunk, on a background thread while another
+     * thread, e.g. the FX Application Thread, owns the batch and keeps reading it.
+     */
+    public interface RowUpdate {
+        /**
+         * Works out the results for the rows in [from, to) without changing the batch and
+         * returns the change that stores them, to be run on the thread that owns the batch.
+         */
+        Runnable compute(int from, int to);
     }
 
     /**
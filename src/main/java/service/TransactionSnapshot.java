@@ -0,0 +1,342 @@
+package service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Binary columnar snapshot of a {@link TransactionBatch}.
+ * <p>
+ * Layout, little-endian, every section aligned to 8 bytes:
+ * <pre>
+ * header      magic, version, row count, item code count, bill number pool size,
+ *             source file size, source modified time, SHA-256 of the source file
+ * dictionary  length-prefixed UTF-8 item codes, in id order; length -1 for a null code
+ * pool        UTF-8 bill number bytes
+ * columns     bill number starts and lengths, item code ids, internal prices, sale
+ *             prices, quantities, discounts, checksums, profits, validation codes,
+ *             calculated checksums; rowCount fixed-width values each
+ * pending     one byte per row telling whether it still has to be validated and
+ *             whether its profit still has to be calculated
+ * </pre>
+ * Loading maps each column and bulk-copies it into the batch arrays, so no
+ * text is parsed and nothing is recalculated: rows that were validated and had
+ * their profit calculated when the snapshot was written stay that way. The
+ * columns and the bill number pool are copied without decoding; only the item
+ * code dictionary is decoded, into one String per distinct code, so loading is
+ * close to zero-copy rather than zero-copy.
+ */
+final class TransactionSnapshot {
+    static final int MAGIC = 0x534E5854; // "TXNS"
+    static final int VERSION = 2;
+    private static final int HEADER_SIZE = 72;
+    private static final int HASH_SIZE = 32;
+    private static final int BUFFER_SIZE = 1 << 20;
+    // Dictionary length of a null item code
+    private static final int NULL_LENGTH = -1;
+
+    private TransactionSnapshot() {
+    }
+
+    /**
+     * Identity of the file a snapshot was created from.
+     */
+    static final class Source {
+        static final Source NONE = new Source(-1, -1, new byte[HASH_SIZE]);
+
+        private final long size;
+        private final long modifiedMillis;
+        private final byte[] sha256;
+
+        Source(long size, long modifiedMillis, byte[] sha256) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * Reads the size and modification time of a file and hashes its content.
+         */
+        static Source of(Path file) throws IOException {
+            return new Source(Files.size(file), Files.getLastModifiedTime(file).toMillis(), sha256(file));
+        }
+
+        /**
+         * Returns true when the file still has the content this source was taken from.
+         * The hash is only computed when the size matches but the modification time differs.
+         */
+        boolean matches(Path file) throws IOException {
+            if (size != Files.size(file)) {
+                return false;
+            }
+            if (modifiedMillis == Files.getLastModifiedTime(file).toMillis()) {
+                return true;
+            }
+            return Arrays.equals(sha256, sha256(file));
+        }
+    }
+
+    /**
+     * Writes the rows, computed values and item code dictionary of a batch.
+     */
+    static void write(TransactionBatch batch, Source source, Path path) throws IOException {
+        int rows = batch.size();
+        int itemCodeCount = batch.getItemCodeCount();
+        int poolSize = batch.billNumberPoolSize();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(itemCodeCount).putInt(poolSize).putInt(0);
+            buffer.putLong(source.size).putLong(source.modifiedMillis).put(source.sha256);
+
+            // Item code dictionary
+            ItemCodeDictionary itemCodes = batch.getItemCodeDictionary();
+            for (int id = 0; id < itemCodeCount; id++) {
+                byte[] code = itemCodes.bytes(id);
+                ensureRemaining(channel, buffer, Integer.BYTES);
+                if (code == null) {
+                    buffer.putInt(NULL_LENGTH);
+                    continue;
+                }
+                buffer.putInt(code.length);
+                putBytes(channel, buffer, code, code.length);
+            }
+            pad(channel, buffer);
+
+            putBytes(channel, buffer, batch.billNumberPool(), poolSize);
+            pad(channel, buffer);
+            flush(channel, buffer);
+
+            writeInts(channel, buffer, batch.billNumberStarts(), rows);
+            writeInts(channel, buffer, batch.billNumberLengths(), rows);
+            writeInts(channel, buffer, batch.itemCodeIds(), rows);
+            writeDoubles(channel, buffer, batch.internalPrices(), rows);
+            writeDoubles(channel, buffer, batch.salePrices(), rows);
+            writeInts(channel, buffer, batch.quantities(), rows);
+            writeDoubles(channel, buffer, batch.discounts(), rows);
+            writeInts(channel, buffer, batch.checksums(), rows);
+            writeDoubles(channel, buffer, batch.profits(), rows);
+            writeInts(channel, buffer, batch.validationCodes(), rows);
+            writeInts(channel, buffer, batch.calculatedChecksums(), rows);
+
+            byte[] pending = new byte[rows];
+            for (int row = 0; row < rows; row++) {
+                pending[row] = (byte) batch.pending(row);
+            }
+            putBytes(channel, buffer, pending, rows);
+            pad(channel, buffer);
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Reads the source identity stored in a snapshot header.
+     */
+    static Source readSource(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, path);
+            byte[] hash = new byte[HASH_SIZE];
+            header.position(24);
+            long size = header.getLong();
+            long modified = header.getLong();
+            header.get(hash);
+            return new Source(size, modified, hash);
+        }
+    }
+
+    /**
+     * Loads a snapshot into a new batch whose item code ids come from the given
+     * dictionary. Stored ids are mapped to the dictionary's ids when they differ.
+     */
+    static TransactionBatch read(Path path, ItemCodeDictionary itemCodes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readHeader(channel, path);
+            int rows = header.getInt(8);
+            int itemCodeCount = header.getInt(12);
+            int poolSize = header.getInt(16);
+            if (rows < 0 || itemCodeCount < 0 || poolSize < 0) {
+                throw new IOException("Corrupt snapshot header: " + path);
+            }
+
+            TransactionBatch batch = new TransactionBatch(rows, itemCodes);
+            long position = HEADER_SIZE;
+
+            // Item code dictionary, mapped up to the end of the file and parsed in place
+            long available = Math.min(channel.size() - position, Integer.MAX_VALUE);
+            ByteBuffer dictionary = map(channel, position, available, path);
+            int[] idMap = new int[itemCodeCount];
+            boolean sameIds = true;
+            for (int id = 0; id < itemCodeCount; id++) {
+                int length = dictionary.getInt();
+                String code = null;
+                if (length != NULL_LENGTH) {
+                    if (length < 0 || length > dictionary.remaining()) {
+                        throw new IOException("Corrupt snapshot dictionary: " + path);
+                    }
+                    byte[] bytes = new byte[length];
+                    dictionary.get(bytes);
+                    code = new String(bytes, StandardCharsets.UTF_8);
+                }
+                idMap[id] = itemCodes.idOf(code);
+                sameIds &= idMap[id] == id;
+            }
+            position = align(position + dictionary.position());
+
+            byte[] pool = new byte[Math.max(poolSize, 16)];
+            map(channel, position, poolSize, path).get(pool, 0, poolSize);
+            position = align(position + poolSize);
+
+            position = readInts(channel, path, position, batch.billNumberStarts(), rows);
+            position = readInts(channel, path, position, batch.billNumberLengths(), rows);
+            position = readInts(channel, path, position, batch.itemCodeIds(), rows);
+            position = readDoubles(channel, path, position, batch.internalPrices(), rows);
+            position = readDoubles(channel, path, position, batch.salePrices(), rows);
+            position = readInts(channel, path, position, batch.quantities(), rows);
+            position = readDoubles(channel, path, position, batch.discounts(), rows);
+            position = readInts(channel, path, position, batch.checksums(), rows);
+            position = readDoubles(channel, path, position, batch.profits(), rows);
+            position = readInts(channel, path, position, batch.validationCodes(), rows);
+            position = readInts(channel, path, position, batch.calculatedChecksums(), rows);
+
+            int[] itemCodeIds = batch.itemCodeIds();
+            for (int row = 0; row < rows; row++) {
+                int id = itemCodeIds[row];
+                if (id < 0 || id >= itemCodeCount) {
+                    throw new IOException("Corrupt snapshot item code id " + id + ": " + path);
+                }
+                if (!sameIds) {
+                    itemCodeIds[row] = idMap[id];
+                }
+            }
+
+            byte[] pending = new byte[rows];
+            map(channel, position, rows, path).get(pending);
+
+            batch.restore(rows, pool, poolSize, pending);
+            return batch;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = map(channel, 0, HEADER_SIZE, path);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a transaction snapshot: " + path);
+        }
+        int version = header.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version + ": " + path);
+        }
+        return header;
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long length, Path path) throws IOException {
+        if (position + length > channel.size()) {
+            throw new IOException("Truncated snapshot: " + path);
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long readInts(FileChannel channel, Path path, long position, int[] values, int count)
+            throws IOException {
+        map(channel, position, (long) count * Integer.BYTES, path).asIntBuffer().get(values, 0, count);
+        return align(position + (long) count * Integer.BYTES);
+    }
+
+    private static long readDoubles(FileChannel channel, Path path, long position, double[] values, int count)
+            throws IOException {
+        map(channel, position, (long) count * Double.BYTES, path).asDoubleBuffer().get(values, 0, count);
+        return position + (long) count * Double.BYTES;
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int count)
+            throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int length = Math.min(count - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            offset += length;
+            flush(channel, buffer);
+        }
+        pad(channel, buffer);
+        flush(channel, buffer);
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values, int count)
+            throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int length = Math.min(count - offset, buffer.remaining() / Double.BYTES);
+            buffer.asDoubleBuffer().put(values, offset, length);
+            buffer.position(buffer.position() + length * Double.BYTES);
+            offset += length;
+            flush(channel, buffer);
+        }
+    }
+
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes, int count)
+            throws IOException {
+        for (int offset = 0; offset < count; ) {
+            int length = Math.min(count - offset, buffer.remaining());
+            buffer.put(bytes, offset, length);
+            offset += length;
+            if (!buffer.hasRemaining()) {
+                flush(channel, buffer);
+            }
+        }
+    }
+
+    private static void ensureRemaining(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush(channel, buffer);
+        }
+    }
+
+    // Pads the bytes written so far to a multiple of 8; flushes keep the buffer aligned
+    private static void pad(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long written = channel.position() + buffer.position();
+        int padding = (int) (align(written) - written);
+        ensureRemaining(channel, buffer, padding);
+        for (int i = 0; i < padding; i++) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    private static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JDK provides SHA-256
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+}
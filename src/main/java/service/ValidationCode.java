@@ -0,0 +1,91 @@
+package service;
+
+/**
+ * Bitmask codes describing the outcome of transaction validation.
+ * <p>
+ * A code of {@link #VALID} means every rule passed; otherwise each failed rule
+ * sets its own bit. The status text shown to users is rendered from the code on
+ * demand by {@link #describe(int, int, int)}.
+ */
+public final class ValidationCode {
+    public static final int VALID = 0;
+    public static final int CHECKSUM_MISMATCH = 1;
+    public static final int SPECIAL_CHARACTERS = 1 << 1;
+    public static final int NEGATIVE_PRICE = 1 << 2;
+    // Same bill number and item code as an earlier row; set on import and kept by validation
+    public static final int DUPLICATE = 1 << 3;
+    // Set only by rules configured in ValidationRules
+    public static final int ITEM_CODE_LENGTH = 1 << 4;
+    public static final int QUANTITY_OUT_OF_RANGE = 1 << 5;
+    public static final int DISCOUNT_OUT_OF_RANGE = 1 << 6;
+    // Invalid for a reason only known from a free-text status
+    public static final int OTHER = 1 << 29;
+    public static final int NOT_VALIDATED = 1 << 30;
+
+    private static final String VALID_TEXT = "Valid";
+    private static final String NOT_VALIDATED_TEXT = "Not validated";
+
+    private ValidationCode() {
+    }
+
+    /**
+     * Returns true when the code describes a valid transaction.
+     */
+    public static boolean isValid(int code) {
+        return code == VALID;
+    }
+
+    /**
+     * Converts a status text to a code. "Valid" and "Not validated" map to their
+     * codes, any other text is treated as invalid.
+     */
+    public static int fromStatus(String status) {
+        if (VALID_TEXT.equals(status)) {
+            return VALID;
+        }
+        if (NOT_VALIDATED_TEXT.equals(status)) {
+            return NOT_VALIDATED;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Renders the status text for a code, e.g.
+     * "Invalid: Checksum mismatch (expected 62, got 60), Negative price value".
+     */
+    public static String describe(int code, int expectedChecksum, int calculatedChecksum) {
+        if (code == VALID) {
+            return VALID_TEXT;
+        }
+        if ((code & NOT_VALIDATED) != 0) {
+            return NOT_VALIDATED_TEXT;
+        }
+
+        StringBuilder status = new StringBuilder("Invalid: ");
+        if ((code & CHECKSUM_MISMATCH) != 0) {
+            status.append("Checksum mismatch (expected ").append(expectedChecksum)
+                    .append(", got ").append(calculatedChecksum).append("), ");
+        }
+        if ((code & SPECIAL_CHARACTERS) != 0) {
+            status.append("Item code contains special characters, ");
+        }
+        if ((code & ITEM_CODE_LENGTH) != 0) {
+            status.append("Item code length out of range, ");
+        }
+        if ((code & NEGATIVE_PRICE) != 0) {
+            status.append("Negative price value, ");
+        }
+        if ((code & QUANTITY_OUT_OF_RANGE) != 0) {
+            status.append("Quantity out of range, ");
+        }
+        if ((code & DISCOUNT_OUT_OF_RANGE) != 0) {
+            status.append("Discount out of range, ");
+        }
+        if ((code & DUPLICATE) != 0) {
+            status.append("Duplicate bill number and item code, ");
+        }
+        // Drops the trailing separator, leaving "Invalid" when no rule bit is set
+        status.setLength(status.length() - 2);
+        return status.toString();
+    }
+}
@@ -0,0 +1,294 @@
+package service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The rules a transaction has to pass to be valid, compiled once into a
+ * per-row evaluator.
+ * <p>
+ * Rules are configured with properties, so they can be changed from a file
+ * without code changes; missing keys keep their defaults:
+ * <pre>
+ * mode=collect                  # collect every failed rule, or short-circuit at the first
+ * checksum=true                 # the checksum must match the calculated one
+ * itemCode.characters=a-zA-Z0-9 # ASCII characters allowed in item codes, empty to allow any
+ * itemCode.minLength=0
+ * itemCode.maxLength=           # no limit when empty
+ * price.nonNegative=true        # internal and sale price must not be negative
+ * quantity.min=                 # no limit when empty
+ * quantity.max=
+ * discount.min=
+ * discount.max=
+ * </pre>
+ * Each rule sets its own {@link ValidationCode} bit. Compiling turns the
+ * allowed characters into a 128-bit lookup table and disabled rules into
+ * bounds that always pass, so evaluating a row is a fixed sequence of primitive
+ * comparisons with no regex, no boxing and no allocation. With the default
+ * characters the item code check is answered per distinct code by the
+ * service's {@link ItemCodeDictionary}.
+ * <p>
+ * Immutable and thread-safe.
+ */
+public final class ValidationRules {
+    /**
+     * What evaluation does after a rule fails.
+     */
+    public enum Mode {
+        /** Evaluates every rule and returns all failed bits. */
+        COLLECT,
+        /**
+         * Stops at the first failed rule, in the order checksum, prices, quantity,
+         * discount, item code length, item code characters.
+         */
+        SHORT_CIRCUIT
+    }
+
+    private static final String MODE = "mode";
+    private static final String CHECKSUM = "checksum";
+    private static final String ITEM_CODE_CHARACTERS = "itemCode.characters";
+    private static final String ITEM_CODE_MIN_LENGTH = "itemCode.minLength";
+    private static final String ITEM_CODE_MAX_LENGTH = "itemCode.maxLength";
+    private static final String PRICE_NON_NEGATIVE = "price.nonNegative";
+    private static final String QUANTITY_MIN = "quantity.min";
+    private static final String QUANTITY_MAX = "quantity.max";
+    private static final String DISCOUNT_MIN = "discount.min";
+    private static final String DISCOUNT_MAX = "discount.max";
+    private static final Set<String> KEYS = Set.of(MODE, CHECKSUM, ITEM_CODE_CHARACTERS, ITEM_CODE_MIN_LENGTH,
+            ITEM_CODE_MAX_LENGTH, PRICE_NON_NEGATIVE, QUANTITY_MIN, QUANTITY_MAX, DISCOUNT_MIN, DISCOUNT_MAX);
+
+    private static final String ALPHANUMERIC = "a-zA-Z0-9";
+    private static final ValidationRules DEFAULTS = fromProperties(new Properties());
+
+    private final boolean shortCircuit;
+    // Zero when the checksum rule is off
+    private final int checksumMask;
+    // Allowed characters: bit c of low for c < 64, bit c - 64 of high for the rest of ASCII
+    private final long allowedLow;
+    private final long allowedHigh;
+    private final boolean anyCharacters;
+    // The default characters, so the dictionary's per-code answer can be used
+    private final boolean alphanumeric;
+    private final int minItemCodeLength;
+    private final int maxItemCodeLength;
+    // Negative infinity when the price rule is off
+    private final double minPrice;
+    private final int minQuantity;
+    private final int maxQuantity;
+    private final double minDiscount;
+    private final double maxDiscount;
+
+    private ValidationRules(Properties properties) {
+        for (String key : properties.stringPropertyNames()) {
+            if (!KEYS.contains(key)) {
+                throw new IllegalArgumentException("Unknown validation rule: " + key);
+            }
+        }
+        String mode = properties.getProperty(MODE, "collect").trim();
+        shortCircuit = parseMode(mode) == Mode.SHORT_CIRCUIT;
+        checksumMask = parseBoolean(properties, CHECKSUM) ? ValidationCode.CHECKSUM_MISMATCH : 0;
+
+        String characters = properties.getProperty(ITEM_CODE_CHARACTERS, ALPHANUMERIC).trim();
+        long[] table = parseCharacters(characters);
+        allowedLow = table[0];
+        allowedHigh = table[1];
+        anyCharacters = characters.isEmpty();
+        long[] alphanumericTable = parseCharacters(ALPHANUMERIC);
+        alphanumeric = allowedLow == alphanumericTable[0] && allowedHigh == alphanumericTable[1];
+
+        minItemCodeLength = (int) parseLong(properties, ITEM_CODE_MIN_LENGTH, 0, 0, Integer.MAX_VALUE);
+        maxItemCodeLength = (int) parseLong(properties, ITEM_CODE_MAX_LENGTH, Integer.MAX_VALUE, 0, Integer.MAX_VALUE);
+        minPrice = parseBoolean(properties, PRICE_NON_NEGATIVE) ? 0 : Double.NEGATIVE_INFINITY;
+        minQuantity = (int) parseLong(properties, QUANTITY_MIN, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        maxQuantity = (int) parseLong(properties, QUANTITY_MAX, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        minDiscount = parseDouble(properties, DISCOUNT_MIN, Double.NEGATIVE_INFINITY);
+        maxDiscount = parseDouble(properties, DISCOUNT_MAX, Double.POSITIVE_INFINITY);
+        if (minItemCodeLength > maxItemCodeLength || minQuantity > maxQuantity || minDiscount > maxDiscount) {
+            throw new IllegalArgumentException("Validation rule minimum is above its maximum");
+        }
+    }
+
+    /**
+     * Returns the rules used when none are configured: matching checksum,
+     * alphanumeric item code and non-negative prices, collecting every failure.
+     */
+    public static ValidationRules defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Compiles the rules of a properties file, read as UTF-8.
+     *
+     * @throws IllegalArgumentException when a key is unknown or a value is not valid
+     */
+    public static ValidationRules load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    /**
+     * Compiles the rules of the given properties.
+     *
+     * @throws IllegalArgumentException when a key is unknown or a value is not valid
+     */
+    public static ValidationRules fromProperties(Properties properties) {
+        return new ValidationRules(properties);
+    }
+
+    public Mode getMode() {
+        return shortCircuit ? Mode.SHORT_CIRCUIT : Mode.COLLECT;
+    }
+
+    /**
+     * Returns the validation code for the fields of one transaction.
+     */
+    public int evaluate(String itemCode, double internalPrice, double salePrice, int quantity, double discount,
+                        int checksum, int calculatedChecksum) {
+        return evaluate(itemCode, internalPrice, salePrice, quantity, discount, checksum, calculatedChecksum, null);
+    }
+
+    /**
+     * Same as above, asking the dictionary whether the item code is alphanumeric
+     * when the rules allow exactly that; the dictionary may be null.
+     */
+    int evaluate(String itemCode, double internalPrice, double salePrice, int quantity, double discount,
+                 int checksum, int calculatedChecksum, ItemCodeDictionary itemCodes) {
+        if (shortCircuit) {
+            return firstFailure(itemCode, internalPrice, salePrice, quantity, discount,
+                    checksum, calculatedChecksum, itemCodes);
+        }
+        // Every rule is a comparison that sets its bit, without branching on the others
+        int code = calculatedChecksum != checksum ? checksumMask : 0;
+        code |= internalPrice < minPrice | salePrice < minPrice ? ValidationCode.NEGATIVE_PRICE : 0;
+        code |= quantity < minQuantity | quantity > maxQuantity ? ValidationCode.QUANTITY_OUT_OF_RANGE : 0;
+        code |= discount < minDiscount | discount > maxDiscount ? ValidationCode.DISCOUNT_OUT_OF_RANGE : 0;
+        int length = itemCode.length();
+        code |= length < minItemCodeLength | length > maxItemCodeLength ? ValidationCode.ITEM_CODE_LENGTH : 0;
+        code |= hasAllowedCharacters(itemCode, itemCodes) ? 0 : ValidationCode.SPECIAL_CHARACTERS;
+        return code;
+    }
+
+    private int firstFailure(String itemCode, double internalPrice, double salePrice, int quantity,
+                             double discount, int checksum, int calculatedChecksum, ItemCodeDictionary itemCodes) {
+        if (calculatedChecksum != checksum && checksumMask != 0) {
+            return ValidationCode.CHECKSUM_MISMATCH;
+        }
+        if (internalPrice < minPrice || salePrice < minPrice) {
+            return ValidationCode.NEGATIVE_PRICE;
+        }
+        if (quantity < minQuantity || quantity > maxQuantity) {
+            return ValidationCode.QUANTITY_OUT_OF_RANGE;
+        }
+        if (discount < minDiscount || discount > maxDiscount) {
+            return ValidationCode.DISCOUNT_OUT_OF_RANGE;
+        }
+        if (itemCode.length() < minItemCodeLength || itemCode.length() > maxItemCodeLength) {
+            return ValidationCode.ITEM_CODE_LENGTH;
+        }
+        if (!hasAllowedCharacters(itemCode, itemCodes)) {
+            return ValidationCode.SPECIAL_CHARACTERS;
+        }
+        return ValidationCode.VALID;
+    }
+
+    /**
+     * Returns true when the code is not empty and every char is allowed.
+     */
+    private boolean hasAllowedCharacters(String itemCode, ItemCodeDictionary itemCodes) {
+        if (anyCharacters) {
+            return true;
+        }
+        if (alphanumeric && itemCodes != null) {
+            return itemCodes.isAlphanumeric(itemCode);
+        }
+        int length = itemCode.length();
+        int rejected = length == 0 ? 1 : 0;
+        for (int i = 0; i < length; i++) {
+            char c = itemCode.charAt(i);
+            // Shifts only use the low six bits of c; chars above ASCII are rejected by c >>> 7
+            long word = c < 64 ? allowedLow : allowedHigh;
+            rejected |= (c >>> 7) | (int) (~word >>> c & 1);
+        }
+        return rejected == 0;
+    }
+
+    private static Mode parseMode(String mode) {
+        try {
+            return Mode.valueOf(mode.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown validation mode: " + mode);
+        }
+    }
+
+    /**
+     * Parses characters and ranges such as "a-z", e.g. "a-zA-Z0-9_-", into a
+     * table of two 64-bit words. A '-' that does not sit between two chars is literal.
+     */
+    private static long[] parseCharacters(String characters) {
+        long[] table = new long[2];
+        for (int i = 0; i < characters.length(); i++) {
+            char first = characters.charAt(i);
+            char last = first;
+            if (i + 2 < characters.length() && characters.charAt(i + 1) == '-') {
+                last = characters.charAt(i + 2);
+                i += 2;
+            }
+            if (last >= 128 || first > last) {
+                throw new IllegalArgumentException("Invalid item code characters: " + characters);
+            }
+            for (char c = first; c <= last; c++) {
+                table[c >>> 6] |= 1L << c;
+            }
+        }
+        return table;
+    }
+
+    private static boolean parseBoolean(Properties properties, String key) {
+        String value = properties.getProperty(key, "true").trim();
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    private static long parseLong(Properties properties, String key, long defaultValue, long min, long max) {
+        String value = properties.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            long parsed = Long.parseLong(value);
+            if (parsed < min || parsed > max) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+
+    private static double parseDouble(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key, "").trim();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            if (Double.isNaN(parsed)) {
+                throw new NumberFormatException();
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+    }
+}
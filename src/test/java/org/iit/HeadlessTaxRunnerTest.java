@@ -0,0 +1,112 @@
+package org.iit;
+
+import org.junit.jupiter.api.Test;
+import javax.management.ObjectName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadlessTaxRunnerTest {
+
+    @Test
+    void testRunWritesReport() throws Exception {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+                "B003,ITEM@3,15.0,20.0,1,0.0,0\n" +
+                "B004,ITEM4,10.0,10.0,1,0.0,62\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Path outputFile = Files.createTempFile("report", ".txt");
+        Files.write(tempFile, testData.getBytes());
+
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = new HeadlessTaxRunner().run(
+                new String[]{"--top=2", "--metrics", "--jmx", tempFile.toString(), "10", outputFile.toString()},
+                new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+
+        assertEquals(HeadlessTaxRunner.EXIT_OK, exitCode);
+        String report = Files.readString(outputFile);
+        assertTrue(report.contains("Total: 4, Valid: 3, Invalid: 1"));
+        assertTrue(report.contains("Zero profit removed: 1"));
+        assertTrue(report.contains(String.format("Tax Due: Rs.%.2f", 2.125)));
+        assertTrue(report.contains("Top 2 item codes by net profit:"));
+        assertTrue(report.contains(String.format("  ITEM2: 1 transactions, Net Profit: Rs.%.2f", 11.25)));
+        assertTrue(report.contains("Metrics:"));
+        assertTrue(report.contains("  skipped zero_profit: 1"));
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName("service:type=TransactionMetrics,stage=validate")));
+
+        Files.delete(tempFile);
+        Files.delete(outputFile);
+    }
+
+    @Test
+    void testRunExportsRemainingTransactions() throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Path exportFile = Files.createTempFile("export", ".csv");
+        Files.write(tempFile, ("B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B004,ITEM4,10.0,10.0,1,0.0,62\n").getBytes());
+
+        PrintStream silent = new PrintStream(new ByteArrayOutputStream());
+        int exitCode = new HeadlessTaxRunner().run(
+                new String[]{"--export=" + exportFile, tempFile.toString(), "10"}, silent, silent);
+
+        assertEquals(HeadlessTaxRunner.EXIT_OK, exitCode);
+        assertEquals(List.of("BillNumber,ItemCode,InternalPrice,SalePrice,Quantity,Discount,Checksum",
+                "B001,ITEM1,10.00,15.00,2,0.00,62"), Files.readAllLines(exportFile));
+
+        Files.delete(tempFile);
+        Files.delete(exportFile);
+    }
+
+    @Test
+    void testRunProcessesFolder() throws IOException {
+        Path folder = Files.createTempDirectory("branches");
+        Path first = Files.writeString(folder.resolve("branch1.csv"), "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        Path second = Files.writeString(folder.resolve("branch2.csv"), "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+                "B003,ITEM@3,15.0,20.0,1,0.0,0\n");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PrintStream silent = new PrintStream(new ByteArrayOutputStream());
+        int exitCode = new HeadlessTaxRunner().run(new String[]{folder.toString(), "10"}, new PrintStream(out), silent);
+
+        assertEquals(HeadlessTaxRunner.EXIT_OK, exitCode);
+        String report = out.toString();
+        assertTrue(report.contains("Files: 2, Failed: 0"));
+        assertTrue(report.contains(String.format("  branch2.csv: Total: 2, Valid: 1, Net Profit: Rs.%.2f", 11.25)));
+        assertTrue(report.contains("Total: 3, Valid: 2, Invalid: 1"));
+        assertTrue(report.contains(String.format("Tax Due: Rs.%.2f", 2.125)));
+
+        Files.delete(first);
+        Files.delete(second);
+        Files.delete(folder);
+    }
+
+    @Test
+    void testRunRejectsBadArguments() {
+        PrintStream silent = new PrintStream(new ByteArrayOutputStream());
+        HeadlessTaxRunner runner = new HeadlessTaxRunner();
+
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE, runner.run(new String[]{"file.csv"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE, runner.run(new String[]{"file.csv", "ten"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE, runner.run(new String[]{"--export=", "file.csv", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE, runner.run(new String[]{"--top=x", "file.csv", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE, runner.run(new String[]{"--rules=", "file.csv", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE,
+                runner.run(new String[]{"--watch", "--top=3", "folder", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE,
+                runner.run(new String[]{"--watch", "--metrics", "folder", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE,
+                runner.run(new String[]{"--offsets=offsets.properties", "file.csv", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE,
+                runner.run(new String[]{"--tail-wait=1000", "file.csv", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_USAGE,
+                runner.run(new String[]{"--tail-wait=-1", "--watch", "folder", "10"}, silent, silent));
+        assertEquals(HeadlessTaxRunner.EXIT_IO_ERROR,
+                runner.run(new String[]{"does-not-exist.csv", "10"}, silent, silent));
+    }
+}
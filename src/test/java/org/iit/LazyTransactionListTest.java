@@ -0,0 +1,120 @@
+package org.iit;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+import service.TransactionBatch;
+import service.TransactionService;
+import service.ValidationCode;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyTransactionListTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    private TransactionBatch createBatch(int rows) {
+        TransactionBatch batch = new TransactionBatch();
+        for (int row = 0; row < rows; row++) {
+            batch.add("B" + row, "ITEM" + row, 10.0, 15.0 + row, 2, 0.0, 62);
+        }
+        return batch;
+    }
+
+    @Test
+    void testViewsReflectBatchRows() {
+        TransactionBatch batch = createBatch(5000);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+
+        assertEquals(5000, transactions.size());
+        Transaction view = transactions.get(4321);
+        assertEquals("B4321", view.getBillNumber());
+        assertEquals("ITEM4321", view.getItemCode());
+        assertEquals(4336.0, view.getSalePrice());
+        assertSame(view, transactions.get(4321));
+
+        // Views are snapshots until invalidated
+        batch.setValidation(4321, ValidationCode.VALID, 62);
+        assertEquals("Not validated", transactions.get(4321).getStatus());
+        transactions.invalidateViews();
+        assertEquals("Valid", transactions.get(4321).getStatus());
+        assertThrows(IndexOutOfBoundsException.class, () -> transactions.get(5000));
+    }
+
+    @Test
+    void testSetAndRemoveWriteThroughToBatch() {
+        TransactionBatch batch = createBatch(3);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+        int[] events = new int[2];
+        transactions.addListener((ListChangeListener<Transaction>) change -> {
+            while (change.next()) {
+                events[0] += change.getRemovedSize();
+                events[1] += change.getAddedSize();
+            }
+        });
+
+        Transaction replacement = new Transaction("B9", "ITEM9", 1.0, 2.0, 3, 0.0, 50);
+        replacement.setProfit(3.0);
+        Transaction old = transactions.set(1, replacement);
+        assertEquals("B1", old.getBillNumber());
+        assertEquals("B9", batch.getBillNumber(1));
+        assertEquals(3.0, batch.getProfit(1));
+        assertEquals("B9", transactions.get(1).getBillNumber());
+
+        Transaction removed = transactions.remove(0);
+        assertEquals("B0", removed.getBillNumber());
+        assertEquals(2, batch.size());
+        assertEquals("B9", transactions.get(0).getBillNumber());
+        assertEquals("B2", transactions.get(1).getBillNumber());
+        assertEquals(2, events[0]);
+        assertEquals(1, events[1]);
+    }
+
+    @Test
+    void testFilteredListShowsGivenRows() {
+        TransactionBatch batch = createBatch(6);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService, new int[]{1, 3, 5});
+
+        assertTrue(transactions.isFiltered());
+        assertEquals(3, transactions.size());
+        assertEquals("B3", transactions.get(1).getBillNumber());
+        assertThrows(IndexOutOfBoundsException.class, () -> transactions.get(3));
+
+        // Removing a shown row shifts the later rows of the batch
+        transactions.remove(0);
+        assertEquals(5, batch.size());
+        assertEquals(2, transactions.size());
+        assertEquals("B3", transactions.get(0).getBillNumber());
+        assertEquals("B5", transactions.get(1).getBillNumber());
+
+        transactions.set(1, new Transaction("B9", "ITEM9", 1.0, 2.0, 3, 0.0, 50));
+        assertEquals("B9", batch.getBillNumber(4));
+    }
+
+    @Test
+    void testRowsInAnotherOrderFollowRemovals() {
+        TransactionBatch batch = createBatch(4);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService, new int[]{3, 1, 0, 2});
+
+        transactions.remove(1);
+        assertArrayEquals(new int[]{2, 0, 1}, transactions.getRows());
+        assertEquals("B3", transactions.get(0).getBillNumber());
+        assertEquals("B0", transactions.get(1).getBillNumber());
+        assertEquals("B2", transactions.get(2).getBillNumber());
+    }
+
+    @Test
+    void testAppendedRowsAreReported() {
+        TransactionBatch batch = createBatch(2);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+        int[] added = new int[1];
+        transactions.addListener((ListChangeListener<Transaction>) change -> {
+            while (change.next()) {
+                added[0] += change.getAddedSize();
+            }
+        });
+
+        batch.addAll(createBatch(3));
+        transactions.rowsAdded(2, 5);
+        assertEquals(3, added[0]);
+        assertEquals(5, transactions.size());
+        assertNull(transactions.getRows());
+    }
+}
@@ -0,0 +1,69 @@
+package org.iit;
+
+import org.iit.TransactionRowSorter.Column;
+import org.iit.TransactionRowSorter.SortKey;
+import org.junit.jupiter.api.Test;
+import service.TransactionBatch;
+import service.TransactionService;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionRowSorterTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    private TransactionBatch createBatch(int rows) {
+        Random random = new Random(11);
+        TransactionBatch batch = new TransactionBatch();
+        for (int row = 0; row < rows; row++) {
+            batch.add(random.nextInt(10) == 0 ? null : "B" + random.nextInt(100), "ITEM" + random.nextInt(20),
+                    random.nextInt(50), random.nextInt(60), random.nextInt(5), 0.0, 62);
+        }
+        transactionService.calculateProfits(batch);
+        return batch;
+    }
+
+    @Test
+    void testSortMatchesStableSortOfTransactions() {
+        TransactionBatch batch = createBatch(1000);
+        List<SortKey> keys = List.of(new SortKey(Column.BILL_NUMBER, true), new SortKey(Column.PROFIT, false));
+
+        Comparator<Transaction> byBill = Comparator.comparing(Transaction::getBillNumber,
+                Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        Comparator<Integer> expectedOrder = Comparator.comparing(
+                row -> transactionService.toTransaction(batch, row),
+                byBill.reversed().thenComparing(Transaction::getProfit));
+        int[] expected = IntStream.range(0, batch.size()).boxed().sorted(expectedOrder)
+                .mapToInt(Integer::intValue).toArray();
+
+        assertArrayEquals(expected, new TransactionRowSorter(batch).sort(null, keys));
+    }
+
+    @Test
+    void testSortOnlyReordersTheGivenRows() {
+        TransactionBatch batch = createBatch(50);
+        int[] rows = {40, 3, 17, 8};
+
+        int[] sorted = new TransactionRowSorter(batch).sort(rows, List.of(new SortKey(Column.QUANTITY, false)));
+        assertArrayEquals(new int[]{40, 3, 17, 8}, rows);
+        assertArrayEquals(IntStream.of(rows).boxed().sorted(Comparator.comparingInt(batch::getQuantity))
+                .mapToInt(Integer::intValue).toArray(), sorted);
+    }
+
+    @Test
+    void testProfitOrderOfTheIndexMatchesSort() {
+        TransactionBatch batch = createBatch(1000);
+        int[] rows = IntStream.range(0, batch.size()).filter(row -> row % 3 != 0).toArray();
+        TransactionRowSorter sorter = new TransactionRowSorter(batch);
+
+        for (boolean descending : new boolean[]{false, true}) {
+            List<SortKey> keys = List.of(new SortKey(Column.PROFIT, descending));
+            assertArrayEquals(sorter.sort(null, keys), TransactionRowSorter.sortByProfit(
+                    transactionService.indexTransactions(batch), null, descending));
+            assertArrayEquals(sorter.sort(rows, keys), TransactionRowSorter.sortByProfit(
+                    transactionService.indexTransactions(batch), rows, descending));
+        }
+    }
+}
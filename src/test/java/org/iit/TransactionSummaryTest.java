@@ -0,0 +1,77 @@
+package org.iit;
+
+import org.junit.jupiter.api.Test;
+import service.TransactionBatch;
+import service.TransactionService;
+import service.ValidationCode;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSummaryTest {
+
+    @Test
+    void testFollowsListAndBulkChanges() {
+        TransactionService transactionService = new TransactionService();
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B002", "ITEM2", 20.0, 25.0, 3, 5.0, 62);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+        int[] changes = {0};
+        TransactionSummary summary = new TransactionSummary(transactions, () -> changes[0]++);
+
+        assertEquals(2, summary.getTotal());
+        assertEquals(0, summary.getValid());
+
+        // Bulk changes to the batch are picked up without a recount
+        batch.setValidation(0, ValidationCode.VALID, 62);
+        batch.setProfit(0, 10.0);
+        batch.setProfit(1, 11.25);
+        assertEquals(1, summary.getValid());
+        assertEquals(1, summary.getInvalid());
+        assertEquals(21.25, summary.getNetProfit(), 1e-9);
+
+        // Replacing a row
+        transactions.invalidateViews();
+        Transaction replacement = new Transaction("B003", "ITEM3", 10.0, 10.0, 1, 0.0, 62);
+        replacement.setValidation(ValidationCode.VALID, 62);
+        transactions.set(1, replacement);
+        assertEquals(2, summary.getValid());
+        assertEquals(10.0, summary.getNetProfit(), 1e-9);
+
+        // Removing rows
+        transactions.remove(0);
+        assertEquals(1, summary.getTotal());
+        assertEquals(1, summary.getValid());
+        assertEquals(0.0, summary.getNetProfit(), 1e-9);
+
+        transactions.remove(0);
+        assertEquals(0, summary.getTotal());
+        assertEquals(0.0, summary.getNetProfit());
+        assertTrue(changes[0] > 0);
+    }
+
+    @Test
+    void testFollowsDuplicateMarksAndParallelValidation() {
+        TransactionService transactionService = new TransactionService();
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 0);
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 0);
+        int checksum = transactionService.calculateChecksum(transactionService.toTransaction(batch, 0));
+        batch.set(0, "B001", "ITEM1", 10.0, 15.0, 2, 0.0, checksum);
+        batch.set(1, "B001", "ITEM1", 10.0, 15.0, 2, 0.0, checksum);
+        transactionService.markDuplicates(batch);
+        transactionService.validateTransactions(batch, 2);
+        transactionService.calculateProfitsAndTax(batch, 10.0, 2);
+        LazyTransactionList transactions = new LazyTransactionList(batch, transactionService);
+        TransactionSummary summary = new TransactionSummary(transactions, () -> { });
+
+        // The second row is a duplicate of the first
+        assertEquals(1, summary.getValid());
+        assertEquals(20.0, summary.getNetProfit(), 1e-9);
+
+        // Removing the first row clears the duplicate mark of the other one
+        transactions.remove(0);
+        assertEquals(1, summary.getTotal());
+        assertEquals(1, summary.getValid());
+        assertEquals(10.0, summary.getNetProfit(), 1e-9);
+    }
+}
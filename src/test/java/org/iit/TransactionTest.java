@@ -1,6 +1,7 @@
 package org.iit;
 
 import org.junit.jupiter.api.Test;
+import service.ValidationCode;
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransactionTest {
@@ -44,4 +45,65 @@ class TransactionTest {
         assertEquals(10.0, transaction.getProfit());
         assertEquals("Valid", transaction.getStatus());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testPropertiesCreatedOnFirstUse() {
+        Transaction transaction = new Transaction("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 0);
+        transaction.setItemCode("ITEM2");
+
+        assertEquals("ITEM2", transaction.itemCodeProperty().get());
+        transaction.itemCodeProperty().set("ITEM3");
+        assertEquals("ITEM3", transaction.getItemCode());
+        transaction.setBillNumber("B002");
+        assertEquals("B002", transaction.billNumberProperty().get());
+    }
+
+    @Test
+    void testNumericPropertiesKeepValuesSetBeforeAndAfterCreation() {
+        Transaction transaction = new Transaction("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        transaction.setSalePrice(16.0);
+        transaction.setProfit(4.5);
+        transaction.setValidation(ValidationCode.NEGATIVE_PRICE, 62);
+
+        assertEquals(10.0, transaction.internalPriceProperty().get());
+        assertEquals(16.0, transaction.salePriceProperty().get());
+        assertEquals(2, transaction.quantityProperty().get());
+        assertEquals(0.0, transaction.discountProperty().get());
+        assertEquals(4.5, transaction.profitProperty().get());
+        assertEquals(ValidationCode.NEGATIVE_PRICE, transaction.validationCodeProperty().get());
+
+        // Once created, the properties and the getters agree
+        transaction.quantityProperty().set(3);
+        transaction.setDiscount(1.5);
+        transaction.setValidation(ValidationCode.VALID, 62);
+        assertEquals(3, transaction.getQuantity());
+        assertEquals(1.5, transaction.discountProperty().get());
+        assertEquals(ValidationCode.VALID, transaction.validationCodeProperty().get());
+        assertEquals("Valid", transaction.statusProperty().get());
+        transaction.checksumProperty().set(60);
+        assertEquals(60, transaction.getChecksum());
+    }
+
+    @Test
+    void testStatusRenderedFromValidationCode() {
+        Transaction transaction = new Transaction("B001", "ITEM@1", 10.0, -15.0, 2, 0.0, 62);
+        String initialStatus = transaction.statusProperty().get();
+
+        transaction.setValidation(ValidationCode.CHECKSUM_MISMATCH | ValidationCode.SPECIAL_CHARACTERS
+                | ValidationCode.NEGATIVE_PRICE, 60);
+
+        assertEquals("Not validated", initialStatus);
+        assertFalse(transaction.isValid());
+        assertEquals("Invalid: Checksum mismatch (expected 62, got 60), Item code contains special characters, "
+                + "Negative price value", transaction.getStatus());
+        assertEquals(transaction.getStatus(), transaction.statusProperty().get());
+
+        transaction.setStatus("Invalid: Checksum mismatch");
+        assertEquals(ValidationCode.OTHER, transaction.getValidationCode());
+        assertEquals("Invalid: Checksum mismatch", transaction.getStatus());
+
+        transaction.setValidation(ValidationCode.VALID, 62);
+        assertTrue(transaction.isValid());
+        assertEquals("Valid", transaction.statusProperty().get());
+    }
+}
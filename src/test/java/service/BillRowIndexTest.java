@@ -0,0 +1,76 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BillRowIndexTest {
+
+    @Test
+    void testRowsOfABillFollowSingleRowChanges() {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B1", "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        batch.add(null, "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        batch.add("B2", "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        batch.add("B1", "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+
+        int b1 = batch.getBillId(0);
+        assertEquals(List.of(0, 3), rowsOf(batch, b1));
+        assertEquals(List.of(1), rowsOf(batch, batch.getBillId(1)));
+
+        batch.add("B1", "ITEM2", 1.0, 2.0, 1, 0.0, 0);
+        batch.set(2, "B1", "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        assertEquals(List.of(0, 2, 3, 4), rowsOf(batch, b1));
+
+        batch.remove(0);
+        batch.set(1, null, "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        assertEquals(List.of(2, 3), rowsOf(batch, b1));
+        assertEquals(List.of(0, 1), rowsOf(batch, batch.getBillId(0)));
+    }
+
+    @Test
+    void testMatchesAScanAfterRandomChanges() {
+        Random random = new Random(7);
+        TransactionBatch batch = new TransactionBatch();
+        for (int i = 0; i < 200; i++) {
+            batch.add(bill(random), "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+        }
+        batch.getBillId(0);
+
+        for (int step = 0; step < 500; step++) {
+            int choice = random.nextInt(3);
+            if (choice == 0 || batch.size() < 10) {
+                batch.add(bill(random), "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+            } else if (choice == 1) {
+                batch.set(random.nextInt(batch.size()), bill(random), "ITEM1", 1.0, 2.0, 1, 0.0, 0);
+            } else {
+                batch.remove(random.nextInt(batch.size()));
+            }
+
+            int row = random.nextInt(batch.size());
+            List<Integer> expected = new ArrayList<>();
+            for (int r = 0; r < batch.size(); r++) {
+                if (Objects.equals(batch.getBillNumber(r), batch.getBillNumber(row))) {
+                    expected.add(r);
+                }
+            }
+            assertEquals(expected, rowsOf(batch, batch.getBillId(row)));
+        }
+    }
+
+    private static String bill(Random random) {
+        int bill = random.nextInt(12);
+        return bill == 0 ? null : "B" + bill;
+    }
+
+    private static List<Integer> rowsOf(TransactionBatch batch, int bill) {
+        List<Integer> rows = new ArrayList<>();
+        for (int row = batch.firstRowOfBill(bill); row >= 0; row = batch.nextRowOfBill(row)) {
+            rows.add(row);
+        }
+        return rows;
+    }
+}
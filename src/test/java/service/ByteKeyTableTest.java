@@ -0,0 +1,34 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteKeyTableTest {
+
+    @Test
+    void testNumbersKeysInOrderOfFirstAppearance() {
+        ByteKeyTable keys = new ByteKeyTable(1, 1);
+        byte[] bytes = "xxITEM1ITEM2".getBytes(StandardCharsets.UTF_8);
+        assertEquals(0, keys.add(bytes, 2, 5, ByteKeyTable.hash(bytes, 2, 5)));
+        assertEquals(1, keys.add(bytes, 7, 5, ByteKeyTable.hash(bytes, 7, 5)));
+        assertEquals(0, keys.add(bytes, 2, 5, ByteKeyTable.hash(bytes, 2, 5)));
+        assertEquals(2, keys.size());
+        assertEquals("ITEM2", keys.key(1));
+        assertEquals(1, keys.find(bytes, 7, 5, ByteKeyTable.hash(bytes, 7, 5)));
+        assertEquals(-1, keys.find(bytes, 0, 5, ByteKeyTable.hash(bytes, 0, 5)));
+        assertTrue(keys.compare(0, 1) < 0);
+
+        // Growing keeps every key and its number
+        for (int i = 0; i < 10_000; i++) {
+            byte[] key = ("K" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals(i + 2, keys.add(key, 0, key.length, ByteKeyTable.hash(key, 0, key.length)));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            byte[] key = ("K" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals(i + 2, keys.find(key, 0, key.length, ByteKeyTable.hash(key, 0, key.length)));
+        }
+        // ASCII keys hash like their Strings before spreading
+        assertEquals(ByteKeyTable.spread("ITEM1".hashCode()), ByteKeyTable.hash(bytes, 2, 5));
+    }
+}
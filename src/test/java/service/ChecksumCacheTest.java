@@ -0,0 +1,100 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumCacheTest {
+
+    @Test
+    void testGetAndPut() {
+        ChecksumCache cache = new ChecksumCache(16);
+        assertEquals(ChecksumCache.MISS, cache.get("ITEM1", 10.0, 15.0, 2, 0.0));
+
+        cache.put("ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        assertEquals(62, cache.get("ITEM1", 10.0, 15.0, 2, 0.0));
+        assertEquals(62, cache.get(new String("ITEM1"), 10.0, 15.0, 2, 0.0));
+        // Any differing field is a different key
+        assertEquals(ChecksumCache.MISS, cache.get("ITEM2", 10.0, 15.0, 2, 0.0));
+        assertEquals(ChecksumCache.MISS, cache.get("ITEM1", 10.0, 15.0, 3, 0.0));
+        assertEquals(ChecksumCache.MISS, cache.get("ITEM1", 10.0, 15.0, 2, -0.0));
+
+        assertEquals(2, cache.getHitCount());
+        assertEquals(4, cache.getMissCount());
+        assertEquals(2.0 / 6, cache.getHitRate(), 1e-12);
+
+        cache.clear();
+        assertEquals(ChecksumCache.MISS, cache.get("ITEM1", 10.0, 15.0, 2, 0.0));
+    }
+
+    @Test
+    void testStaysBoundedAndKeepsHotEntries() {
+        ChecksumCache cache = new ChecksumCache(64);
+        assertEquals(64, cache.getCapacity());
+        cache.put("HOT", 1.0, 2.0, 1, 0.0, 7);
+        for (int i = 0; i < 10_000; i++) {
+            cache.put("ITEM" + i, i, i, i, 0.0, i);
+            // Touching the entry keeps it referenced, so the clock skips it
+            assertEquals(7, cache.get("HOT", 1.0, 2.0, 1, 0.0));
+        }
+        assertTrue(cache.getEvictionCount() >= 10_000 - 64);
+    }
+
+    @Test
+    void testLocaleIsPartOfTheKey() {
+        Locale previous = Locale.getDefault(Locale.Category.FORMAT);
+        ChecksumCache cache = new ChecksumCache(16);
+        try {
+            Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+            cache.put("ITEM1", 10.5, 15.0, 2, 0.0, 62);
+            assertEquals(62, cache.get("ITEM1", 10.5, 15.0, 2, 0.0));
+
+            // The same values format with another separator under this locale
+            Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+            assertEquals(ChecksumCache.MISS, cache.get("ITEM1", 10.5, 15.0, 2, 0.0));
+            cache.put("ITEM1", 10.5, 15.0, 2, 0.0, 61);
+            assertEquals(61, cache.get("ITEM1", 10.5, 15.0, 2, 0.0));
+
+            Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+            assertEquals(62, cache.get("ITEM1", 10.5, 15.0, 2, 0.0));
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, previous);
+        }
+    }
+
+    @Test
+    void testNullItemCode() {
+        ChecksumCache cache = new ChecksumCache(16);
+        assertEquals(ChecksumCache.MISS, cache.get(null, 10.0, 15.0, 2, 0.0));
+        cache.put(null, 10.0, 15.0, 2, 0.0, 40);
+        assertEquals(40, cache.get(null, 10.0, 15.0, 2, 0.0));
+        // Not the same key as the text "null"
+        assertEquals(ChecksumCache.MISS, cache.get("null", 10.0, 15.0, 2, 0.0));
+    }
+
+    @Test
+    void testCachedValidationMatchesUncached() {
+        List<Transaction> expected = new ArrayList<>();
+        List<Transaction> actual = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String itemCode = i % 11 == 0 ? "ITEM-" + i % 7 : "ITEM" + i % 7;
+            int checksum = i % 3 == 0 ? 0 : 62;
+            expected.add(new Transaction("B" + i, itemCode, i % 5, 12.5, i % 4, i % 10, checksum));
+            actual.add(new Transaction("B" + i, itemCode, i % 5, 12.5, i % 4, i % 10, checksum));
+        }
+
+        new TransactionService().validateTransactions(expected);
+        TransactionService cachedService = new TransactionService();
+        cachedService.setChecksumCache(new ChecksumCache(1024));
+        cachedService.validateTransactions(actual, 4);
+        cachedService.validateTransactions(actual, 4);
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStatus(), actual.get(i).getStatus());
+        }
+        assertTrue(cachedService.getChecksumCache().getHitRate() > 0.9);
+    }
+}
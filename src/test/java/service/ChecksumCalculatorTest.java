@@ -0,0 +1,93 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.util.Locale;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChecksumCalculatorTest {
+    private final ChecksumCalculator calculator = new ChecksumCalculator();
+
+    // Original String.format based checksum used as the reference
+    private static int referenceChecksum(String itemCode, double internalPrice, double salePrice,
+                                         int quantity, double discount) {
+        String lineData = String.format("Item: %s, Internal Price: %.2f, Sale Price: %.2f, Quantity: %d, Discount: %.2f",
+                itemCode, internalPrice, salePrice, quantity, discount);
+
+        int count = 0;
+        for (char c : lineData.toCharArray()) {
+            if (Character.isUpperCase(c) || Character.isLowerCase(c) || Character.isDigit(c) || c == '.') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void assertMatchesReference(String itemCode, double internalPrice, double salePrice,
+                                        int quantity, double discount) {
+        assertEquals(referenceChecksum(itemCode, internalPrice, salePrice, quantity, discount),
+                calculator.calculate(itemCode, internalPrice, salePrice, quantity, discount),
+                itemCode + "," + internalPrice + "," + salePrice + "," + quantity + "," + discount);
+    }
+
+    @Test
+    void testKnownChecksums() {
+        assertEquals(62, calculator.calculate("ITEM1", 10.0, 15.0, 2, 0.0));
+        assertEquals(62, calculator.calculate("ITEM2", 20.0, 25.0, 3, 5.0));
+    }
+
+    @Test
+    void testRoundingEdgeCases() {
+        double[] values = {0.0, -0.0, 0.005, 0.125, 0.995, 1.005, 9.995, 99.995, 999.995, -9.995,
+                9999999.995, 1e15, 1e20, -1e20, Double.MAX_VALUE, Double.MIN_VALUE,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            assertMatchesReference("A1", value, value, 1, value);
+        }
+        assertMatchesReference(null, 1, 2, Integer.MIN_VALUE, 3);
+        assertMatchesReference("", 1, 2, Integer.MAX_VALUE, 3);
+        assertMatchesReference("Ünïcödé-ß#₹", 1, 2, -7, 3);
+    }
+
+    @Test
+    void testFollowsDefaultLocale() {
+        Locale original = Locale.getDefault(Locale.Category.FORMAT);
+        try {
+            for (Locale locale : new Locale[]{Locale.GERMANY, Locale.FRANCE, Locale.US, Locale.ROOT}) {
+                Locale.setDefault(Locale.Category.FORMAT, locale);
+                assertMatchesReference("ITEM1", 1234.5, 0.125, 12, 9.995);
+            }
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, original);
+        }
+    }
+
+    @Test
+    void testRandomInputsMatchReference() {
+        Random random = new Random(20240611L);
+        String alphabet = "ABCxyz0189@#- .,Éß";
+        for (int i = 0; i < 200_000; i++) {
+            StringBuilder itemCode = new StringBuilder();
+            int length = random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                itemCode.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertMatchesReference(itemCode.toString(), randomPrice(random), randomPrice(random),
+                    random.nextInt(2001) - 1000, randomPrice(random));
+        }
+    }
+
+    private static double randomPrice(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                // Values with at most three decimals hit the half-cent boundaries
+                return (random.nextInt(2_000_000) - 1_000_000) / 1000.0;
+            case 1:
+                return random.nextDouble() * Math.pow(10, random.nextInt(12));
+            case 2:
+                return Math.pow(10, random.nextInt(9)) - random.nextInt(10) / 1000.0;
+            default:
+                return Double.longBitsToDouble(random.nextLong());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateBillIndexTest {
+
+    @Test
+    void testAddReportsRepeatedPairs() {
+        DuplicateBillIndex index = new DuplicateBillIndex();
+
+        assertTrue(index.add("B001", "ITEM1"));
+        assertTrue(index.add("B001", "ITEM2"));
+        assertTrue(index.add("B002", "ITEM1"));
+        assertFalse(index.add("B001", "ITEM1"));
+        // The boundary between bill number and item code is part of the key
+        assertTrue(index.add("B00", "1ITEM1"));
+        assertTrue(index.add(null, "ITEM1"));
+        assertFalse(index.add(null, "ITEM1"));
+        // Null is not the text "null"
+        assertTrue(index.add("null", "ITEM1"));
+        assertTrue(index.add("B001", null));
+        assertTrue(index.add("B001", "null"));
+        assertFalse(index.add("B001", null));
+        assertEquals(8, index.size());
+    }
+
+    @Test
+    void testByteSlicesMatchStrings() {
+        DuplicateBillIndex index = new DuplicateBillIndex();
+        byte[] pool = "xxB001yy".getBytes(StandardCharsets.UTF_8);
+        byte[] itemCode = "ITEM1".getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(index.add(pool, 2, 4, itemCode));
+        assertFalse(index.add("B001", "ITEM1"));
+        assertTrue(index.add(pool, 0, -1, itemCode));
+        assertFalse(index.add(null, "ITEM1"));
+    }
+
+    @Test
+    void testGrowsPastInitialCapacity() {
+        DuplicateBillIndex index = new DuplicateBillIndex();
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(index.add("B" + i, "ITEM" + (i % 7)));
+        }
+        for (int i = 0; i < 100_000; i += 997) {
+            assertFalse(index.add("B" + i, "ITEM" + (i % 7)));
+        }
+        assertEquals(100_000, index.size());
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import service.GroupAggregator.GroupTotal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupAggregatorTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    @Test
+    void testGroupsAndRanks() {
+        GroupAggregator aggregator = new GroupAggregator(1);
+        aggregator.add("ITEM1", 10.0);
+        aggregator.add("ITEM2", -4.0);
+        aggregator.add("ITEM1", -2.5);
+        aggregator.add("ITEM3", 8.0);
+
+        GroupAggregator other = new GroupAggregator();
+        other.add("ITEM2", 20.0);
+        other.add("ITEM4", 8.0);
+        aggregator.merge(other);
+
+        assertEquals(4, aggregator.size());
+        GroupTotal item1 = aggregator.get("ITEM1", 10.0);
+        assertEquals(2, item1.getCount());
+        assertEquals(10.0, item1.getTotalProfit());
+        assertEquals(2.5, item1.getTotalLoss());
+        assertEquals(0.75, item1.getTax(), 1e-12);
+        assertNull(aggregator.get("ITEM9", 10.0));
+
+        List<GroupTotal> top = aggregator.top(3, 10.0);
+        assertEquals(List.of("ITEM2", "ITEM3", "ITEM4"), top.stream().map(GroupTotal::getKey).toList());
+        assertEquals(16.0, top.get(0).getNetProfit());
+        assertEquals(4, aggregator.top(10, 10.0).size());
+        assertTrue(aggregator.top(0, 10.0).isEmpty());
+
+        assertEquals(List.of("ITEM1", "ITEM2", "ITEM3", "ITEM4"),
+                aggregator.breakdown(10.0).stream().map(GroupTotal::getKey).toList());
+    }
+
+    @Test
+    void testTopAndBreakdownOrderKeysAlike() {
+        // UTF-16 order puts the surrogate pair first, code point order the fullwidth letter
+        String fullwidth = "\uFF21";
+        String emoji = "\uD83D\uDE00";
+        GroupAggregator aggregator = new GroupAggregator();
+        aggregator.add(emoji, 5.0);
+        aggregator.add(fullwidth, 5.0);
+        aggregator.add("B", 5.0);
+
+        List<String> breakdown = aggregator.breakdown(10.0).stream().map(GroupTotal::getKey).toList();
+        assertEquals(List.of("B", fullwidth, emoji), breakdown);
+        assertEquals(breakdown, aggregator.top(3, 10.0).stream().map(GroupTotal::getKey).toList());
+    }
+
+    @Test
+    void testNullKeyHasItsOwnGroup() {
+        GroupAggregator aggregator = new GroupAggregator();
+        aggregator.add("null", 5.0);
+        aggregator.add(null, 5.0);
+        aggregator.add("A", 5.0);
+        GroupAggregator other = new GroupAggregator();
+        other.add(null, -2.0);
+        aggregator.merge(other);
+
+        assertEquals(3, aggregator.size());
+        GroupTotal nullGroup = aggregator.get(null, 10.0);
+        assertEquals(2, nullGroup.getCount());
+        assertEquals(3.0, nullGroup.getNetProfit());
+        assertEquals(1, aggregator.get("null", 10.0).getCount());
+        assertEquals(Arrays.asList(null, "A", "null"),
+                aggregator.breakdown(10.0).stream().map(GroupTotal::getKey).toList());
+        assertEquals(Arrays.asList("A", "null", null),
+                aggregator.top(3, 10.0).stream().map(GroupTotal::getKey).toList());
+    }
+
+    @Test
+    void testParallelBatchMatchesList() {
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            String itemCode = i % 13 == 0 ? "ITEM@" + i % 50 : "ITEM" + i % 50;
+            transactions.add(new Transaction("B" + i / 3, itemCode, 10.0 + i % 7, 12.0 + i % 5, 1 + i % 3, i % 4, 0));
+        }
+        TransactionBatch batch = transactionService.toTransactionBatch(transactions);
+        transactionService.validateTransactions(transactions);
+        transactionService.calculateProfits(transactions);
+        transactionService.validateTransactions(batch, 4);
+        transactionService.calculateProfits(batch);
+
+        GroupAggregator expected = transactionService.aggregateByBillNumber(transactions);
+        GroupAggregator actual = transactionService.aggregateByBillNumber(batch, 4);
+        assertEquals(expected.size(), actual.size());
+        List<GroupTotal> expectedTotals = expected.breakdown(10.0);
+        List<GroupTotal> actualTotals = actual.breakdown(10.0);
+        for (int i = 0; i < expectedTotals.size(); i++) {
+            assertEquals(expectedTotals.get(i).getKey(), actualTotals.get(i).getKey());
+            assertEquals(expectedTotals.get(i).getCount(), actualTotals.get(i).getCount());
+            assertEquals(expectedTotals.get(i).getNetProfit(), actualTotals.get(i).getNetProfit(), 1e-9);
+        }
+
+        // The item code groups add up to the global tax result
+        GroupAggregator byItemCode = transactionService.aggregateByItemCode(batch, 4);
+        double netProfit = 0;
+        for (GroupTotal total : byItemCode.breakdown(10.0)) {
+            assertFalse(total.getKey().contains("@"));
+            netProfit += total.getNetProfit();
+        }
+        assertEquals(transactionService.calculateTax(batch, 10.0).getNetProfit(), netProfit, 1e-6);
+    }
+}
@@ -0,0 +1,134 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemCodeDictionaryTest {
+
+    @Test
+    void testIdsAndCanonicalInstances() {
+        ItemCodeDictionary dictionary = new ItemCodeDictionary();
+        String code = new String("ITEM1");
+
+        assertEquals(0, dictionary.idOf("ITEM1"));
+        assertEquals(1, dictionary.idOf("ITEM@2"));
+        assertEquals(0, dictionary.idOf(code));
+        assertSame(dictionary.get(0), dictionary.canonical(code));
+        assertTrue(dictionary.isAlphanumeric("ITEM1"));
+        assertFalse(dictionary.isAlphanumeric(1));
+        assertFalse(dictionary.isAlphanumeric(""));
+        assertFalse(dictionary.isAlphanumeric("ÍTEM"));
+        assertEquals(4, dictionary.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> dictionary.get(4));
+
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i + 4, dictionary.idOf("SKU" + i));
+        }
+        assertEquals(4 + 1234, dictionary.idOf("SKU1234"));
+    }
+
+    @Test
+    void testInternFromBytes() {
+        ItemCodeDictionary dictionary = new ItemCodeDictionary();
+        String item = dictionary.canonical("ITEM1");
+        ByteBuffer buffer = ByteBuffer.wrap("x,ITEM1,ÍTEM2".getBytes(StandardCharsets.UTF_8));
+
+        assertSame(item, dictionary.intern(buffer, 2, 7, StandardCharsets.UTF_8));
+        String accented = dictionary.intern(buffer, 8, buffer.limit(), StandardCharsets.UTF_8);
+        assertEquals("ÍTEM2", accented);
+        assertSame(accented, dictionary.canonical("ÍTEM2"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void testConcurrentLookupsAgreeOnIds() throws Exception {
+        ItemCodeDictionary dictionary = new ItemCodeDictionary();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    int[] ids = new int[20_000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = dictionary.idOf("SKU" + i);
+                    }
+                    return ids;
+                }));
+            }
+            int[] first = futures.get(0).get();
+            for (Future<int[]> future : futures) {
+                assertArrayEquals(first, future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(20_000, dictionary.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals("SKU" + i, dictionary.get(dictionary.idOf("SKU" + i)));
+        }
+    }
+
+    @Test
+    void testImportsShareItemCodes() throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, "B001,ITEM1,10.0,15.0,2,0.0,62\nB002,ITEM1,20.0,25.0,3,5.0,62\n".getBytes());
+        TransactionService transactionService = new TransactionService();
+
+        List<Transaction> first = transactionService.importTransactionsFromFile(tempFile.toString());
+        List<Transaction> second = transactionService.importTransactionsInParallel(tempFile.toString(), 2);
+
+        assertSame(first.get(0).getItemCode(), first.get(1).getItemCode());
+        assertSame(first.get(0).getItemCode(), second.get(1).getItemCode());
+        assertEquals(1, transactionService.getItemCodeDictionary().size());
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testNullCodeAndBytes() {
+        ItemCodeDictionary dictionary = new ItemCodeDictionary();
+
+        int nullId = dictionary.idOf(null);
+        int textId = dictionary.idOf("null");
+        assertNotEquals(nullId, textId);
+        assertEquals(nullId, dictionary.idOf(null));
+        assertNull(dictionary.get(nullId));
+        assertNull(dictionary.bytes(nullId));
+        assertFalse(dictionary.isAlphanumeric(nullId));
+        assertArrayEquals("null".getBytes(StandardCharsets.UTF_8), dictionary.bytes(textId));
+        assertSame(dictionary.bytes(textId), dictionary.bytes(dictionary.idOf("null")));
+    }
+
+    @Test
+    void testBatchesStoreDictionaryIds() throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, "B001,ITEM1,10.0,15.0,2,0.0,62\nB002,ITEM2,20.0,25.0,3,5.0,62\n".getBytes());
+        TransactionService transactionService = new TransactionService();
+        ItemCodeDictionary dictionary = transactionService.getItemCodeDictionary();
+        dictionary.idOf("OTHER");
+
+        TransactionBatch batch = transactionService.importTransactionBatch(tempFile.toString(), 2);
+        Path snapshot = Files.createTempFile("transactions", ".snapshot");
+        transactionService.saveSnapshot(batch, null, snapshot.toString());
+        TransactionService other = new TransactionService();
+        other.getItemCodeDictionary().idOf("ITEM2");
+        TransactionBatch loaded = other.loadSnapshot(snapshot.toString());
+
+        assertEquals(dictionary.idOf("ITEM1"), batch.getItemCodeId(0));
+        assertEquals(dictionary.idOf("ITEM2"), batch.getItemCodeId(1));
+        assertEquals("ITEM1", loaded.getItemCode(0));
+        assertEquals(other.getItemCodeDictionary().idOf("ITEM2"), loaded.getItemCodeId(1));
+        Files.delete(tempFile);
+        Files.delete(snapshot);
+    }
+}
@@ -0,0 +1,52 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testPercentilesAreWithinTheirBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 99; i++) {
+            histogram.record(1_000);
+        }
+        histogram.record(1_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(10_990, histogram.getMeanNanos(), 1e-9);
+        // 1000 ns falls in the bucket from 512 to 1023 ns
+        assertEquals(1023, histogram.getPercentileNanos(50));
+        assertEquals(1023, histogram.getPercentileNanos(99));
+        assertEquals(1_000_000, histogram.getPercentileNanos(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(4 * (99_999L * 100_000 / 2), histogram.getTotalNanos());
+        assertEquals(99_999, histogram.getMaxNanos());
+    }
+}
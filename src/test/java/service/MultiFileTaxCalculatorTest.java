@@ -0,0 +1,89 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import service.MultiFileTaxCalculator.ConsolidatedResult;
+import service.MultiFileTaxCalculator.FileTotal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiFileTaxCalculatorTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testConsolidatesFilesInOrder() throws IOException {
+        Files.writeString(directory.resolve("b.csv"), "B003,ITEM3,10.0,5.0,1,0.0,61\n");
+        Files.writeString(directory.resolve("a.csv"), "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B002,ITEM@2,20.0,25.0,3,5.0,62\n");
+        Files.writeString(directory.resolve("notes.txt"), "not a transaction file\n");
+
+        List<Path> files = MultiFileTaxCalculator.findFiles(directory, "*.csv");
+        assertEquals(List.of(directory.resolve("a.csv"), directory.resolve("b.csv")), files);
+
+        ConsolidatedResult result = new MultiFileTaxCalculator(transactionService, 2).calculate(files, 10.0, true);
+        assertEquals(3, result.getRowCount());
+        assertEquals(2, result.getValidCount());
+        assertEquals(10.0, result.getTotalProfit(), 1e-9);
+        assertEquals(5.0, result.getTotalLoss(), 1e-9);
+        assertEquals(0.5, result.getTax(), 1e-9);
+
+        FileTotal first = result.getFiles().get(0);
+        assertEquals(directory.resolve("a.csv"), first.getFile());
+        assertEquals(2, first.getRowCount());
+        assertEquals(1, first.getValidCount());
+        assertEquals(10.0, first.getNetProfit(), 1e-9);
+        assertEquals(-5.0, result.getFiles().get(1).getNetProfit(), 1e-9);
+
+        // The rows of all files are kept in file order, ready for tax
+        TransactionBatch rows = result.getRows();
+        assertEquals(List.of("B001", "B002", "B003"),
+                List.of(rows.getBillNumber(0), rows.getBillNumber(1), rows.getBillNumber(2)));
+        assertEquals(0, rows.countRowsToValidate());
+        assertEquals(result.getNetProfit(), transactionService.calculateTax(rows, 10.0).getNetProfit(), 1e-9);
+    }
+
+    @Test
+    void testUnreadableFileDoesNotStopTheOthers() throws IOException {
+        Path good = directory.resolve("good.csv");
+        Files.writeString(good, "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        Path missing = directory.resolve("missing.csv");
+
+        ConsolidatedResult result = new MultiFileTaxCalculator(transactionService, 4)
+                .calculate(List.of(missing, good), 10.0, false);
+        assertEquals(1, result.getFailedCount());
+        assertTrue(result.getFiles().get(0).isFailed());
+        assertNull(result.getRows());
+        assertEquals(1, result.getRowCount());
+        assertEquals(1.0, result.getTax(), 1e-9);
+    }
+
+    @Test
+    void testManyFilesMatchSingleFile() throws IOException {
+        List<Path> files = new ArrayList<>();
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            String line = "B" + i + ",ITEM" + (i % 7) + ",10.0,1" + (i % 10) + ".0,2,0.0,62\n";
+            Path file = directory.resolve(String.format("branch%02d.csv", i));
+            Files.writeString(file, line);
+            files.add(file);
+            all.append(line);
+        }
+        Path single = Files.writeString(directory.resolve("all.txt"), all);
+        TransactionBatch batch = transactionService.importTransactionBatch(single.toString(), 1);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+        TransactionService.TaxCalculationResult expected = transactionService.calculateTax(batch, 10.0);
+
+        ConsolidatedResult result = new MultiFileTaxCalculator(transactionService, 8).calculate(files, 10.0, false);
+        assertEquals(50, result.getFiles().size());
+        assertEquals(expected.getNetProfit(), result.getNetProfit(), 1e-9);
+        assertEquals(expected.getTax(), result.getTax(), 1e-9);
+    }
+}
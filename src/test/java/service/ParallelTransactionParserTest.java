@@ -0,0 +1,103 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelTransactionParserTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    private void assertSameAsSequential(String content, long chunkSize) throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, content.getBytes(StandardCharsets.UTF_8));
+        try {
+            List<Transaction> expected = transactionService.importTransactionsFromFile(tempFile.toString());
+            List<Transaction> actual = new ParallelTransactionParser(4, chunkSize, StandardCharsets.UTF_8)
+                    .parse(tempFile);
+
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Transaction e = expected.get(i);
+                Transaction a = actual.get(i);
+                assertEquals(e.getBillNumber(), a.getBillNumber());
+                assertEquals(e.getItemCode(), a.getItemCode());
+                assertEquals(e.getInternalPrice(), a.getInternalPrice());
+                assertEquals(e.getSalePrice(), a.getSalePrice());
+                assertEquals(e.getQuantity(), a.getQuantity());
+                assertEquals(e.getDiscount(), a.getDiscount());
+                assertEquals(e.getChecksum(), a.getChecksum());
+            }
+        } finally {
+            Files.delete(tempFile);
+        }
+    }
+
+    @Test
+    void testEdgeCaseLines() throws IOException {
+        String content = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                " B002 , ITEM2 ,\t20.5 , 25 ,3, 5. ,85\r\n" +
+                "B003,ITEM3,1e2,0x1p3,4,NaN,+7\r" +
+                "B004,ITEM4,10,15,2,0,62,,,\n" +
+                "B005,ITEM5,10,15,2,0,\n" +
+                "B006,ITEM6,10,15,2,0,62,x\n" +
+                "B007,ITEM7,abc,15,2,0,62\n" +
+                "B008,ITEM8,.5,-0,2147483647,1.005,-2147483648\n" +
+                "B009,ITEM9,10,15,2147483648,0,1\n" +
+                "\n" +
+                ",,,,,,\n" +
+                "B010,ÍTEM10,12345678901234567890.5,1.5d,2,0,62\n" +
+                "B011,ITEM11,10,15,2,0,62";
+        assertSameAsSequential(content, 0);
+        assertSameAsSequential(content, 16);
+        assertSameAsSequential("", 16);
+    }
+
+    @Test
+    void testRandomFileAcrossChunks() throws IOException {
+        Random random = new Random(42);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append('B').append(i).append(",ITEM").append(random.nextInt(50)).append(',')
+                    .append(random.nextInt(100000) / 100.0).append(',')
+                    .append(random.nextDouble() * 1000).append(',')
+                    .append(random.nextInt(20)).append(',')
+                    .append(random.nextInt(10) == 0 ? "bad" : String.valueOf(random.nextInt(30))).append(',')
+                    .append(random.nextInt(100))
+                    .append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        assertSameAsSequential(content.toString(), 997);
+    }
+
+    @Test
+    void testParseBatchesHandsOverChunksInFileOrder() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append('B').append(i).append(",ITEM").append(i % 7).append(",10.0,15.0,2,0.0,62\n");
+        }
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, content.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            List<TransactionBatch> chunks = new ArrayList<>();
+            new ParallelTransactionParser(4, 1000, StandardCharsets.UTF_8).parseBatches(tempFile, chunks::add);
+
+            assertTrue(chunks.size() > 1);
+            int row = 0;
+            for (TransactionBatch chunk : chunks) {
+                for (int i = 0; i < chunk.size(); i++, row++) {
+                    assertEquals("B" + row, chunk.getBillNumber(i));
+                    assertEquals("ITEM" + row % 7, chunk.getItemCode(i));
+                }
+            }
+            assertEquals(500, row);
+        } finally {
+            Files.delete(tempFile);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowSetTest {
+
+    @Test
+    void testNextFindsRowsAcrossEmptyWords() {
+        RowSet rows = new RowSet();
+        rows.add(3);
+        rows.add(64);
+        rows.add(70_000);
+        rows.add(5_000_000);
+
+        assertEquals(List.of(3, 64, 70_000, 5_000_000), toList(rows));
+        assertEquals(4, rows.size());
+        assertEquals(-1, rows.next(5_000_001));
+
+        rows.remove(64);
+        rows.removeRange(0, 70_001);
+        assertEquals(List.of(5_000_000), toList(rows));
+        assertTrue(rows.contains(5_000_000));
+        assertFalse(rows.contains(3));
+    }
+
+    @Test
+    void testAddAllAndRemoveRow() {
+        RowSet rows = new RowSet();
+        rows.addAll(130);
+        assertEquals(130, rows.size());
+        assertEquals(-1, rows.next(130));
+
+        rows.removeRange(2, 128);
+        assertEquals(List.of(0, 1, 128, 129), toList(rows));
+        // Rows after a deleted row move down by one
+        rows.removeRow(1);
+        assertEquals(List.of(0, 127, 128), toList(rows));
+    }
+
+    private static List<Integer> toList(RowSet rows) {
+        List<Integer> list = new ArrayList<>();
+        for (int row = rows.next(0); row >= 0; row = rows.next(row + 1)) {
+            list.add(row);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,53 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import service.TransactionService.TaxCalculationResult;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaxAggregatorTest {
+
+    @Test
+    void testTotalsAndResult() {
+        TaxAggregator aggregator = new TaxAggregator();
+        aggregator.add(10.0);
+        aggregator.add(11.25);
+        aggregator.add(-5.0);
+        aggregator.add(0.0);
+
+        TaxCalculationResult result = aggregator.toResult(10.0);
+        assertEquals(4, aggregator.getCount());
+        assertEquals(21.25, result.getTotalProfit());
+        assertEquals(5.0, result.getTotalLoss());
+        assertEquals(16.25, result.getNetProfit());
+        assertEquals(1.625, result.getTax(), 1e-12);
+    }
+
+    @Test
+    void testCompensatedSumDoesNotDrift() {
+        TaxAggregator aggregator = new TaxAggregator();
+        double naive = 0;
+        for (int i = 0; i < 10_000_000; i++) {
+            aggregator.add(0.1);
+            naive += 0.1;
+        }
+        assertEquals(1_000_000.0, aggregator.getTotalProfit());
+        assertNotEquals(1_000_000.0, naive);
+    }
+
+    @Test
+    void testMergeMatchesSingleAggregator() {
+        TaxAggregator single = new TaxAggregator();
+        TaxAggregator first = new TaxAggregator();
+        TaxAggregator second = new TaxAggregator();
+        for (int i = 0; i < 1000; i++) {
+            double profit = (i % 7 - 3) * 1.01;
+            single.add(profit);
+            (i % 2 == 0 ? first : second).add(profit);
+        }
+        first.merge(second);
+
+        assertEquals(single.getTotalProfit(), first.getTotalProfit(), 1e-9);
+        assertEquals(single.getTotalLoss(), first.getTotalLoss(), 1e-9);
+        assertEquals(single.getCount(), first.getCount());
+    }
+}
@@ -0,0 +1,264 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionBatchTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    @Test
+    void testAddGrowsAndEncodesItemCodes() {
+        TransactionBatch batch = new TransactionBatch(1);
+        for (int i = 0; i < 100; i++) {
+            batch.add("B" + i, "ITEM" + (i % 3), i, i + 1, 2, 0.0, 62);
+        }
+
+        assertEquals(100, batch.size());
+        assertEquals(3, batch.getItemCodeCount());
+        assertEquals("B42", batch.getBillNumber(42));
+        assertEquals("ITEM0", batch.getItemCode(42));
+        assertEquals(batch.getItemCodeId(0), batch.getItemCodeId(99));
+        assertEquals(43.0, batch.getSalePrice(42));
+        assertEquals("Not validated", batch.getStatus(42));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getQuantity(100));
+    }
+
+    @Test
+    void testSetAndRemoveRows() {
+        TransactionBatch batch = new TransactionBatch(2);
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("Bill-é", "ITEM2", 20.0, 25.0, 3, 5.0, 62);
+        batch.add(null, "ITEM1", 1.0, 2.0, 1, 0.0, 62);
+        batch.setProfit(0, 10.0);
+
+        assertEquals("Bill-é", batch.getBillNumber(1));
+        assertNull(batch.getBillNumber(2));
+
+        batch.set(0, "B009", "ITEM3", 5.0, 6.0, 1, 0.0, 40);
+        assertEquals("B009", batch.getBillNumber(0));
+        assertEquals("ITEM3", batch.getItemCode(0));
+        assertEquals(0.0, batch.getProfit(0));
+        assertEquals("Not validated", batch.getStatus(0));
+
+        batch.remove(0);
+        assertEquals(2, batch.size());
+        assertEquals("Bill-é", batch.getBillNumber(0));
+        assertEquals(25.0, batch.getSalePrice(0));
+        assertNull(batch.getBillNumber(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.remove(2));
+    }
+
+    @Test
+    void testBatchPipelineMatchesListPipeline() {
+        List<Transaction> transactions = List.of(
+                new Transaction("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62),
+                new Transaction("B002", "ITEM2", 20.0, 25.0, 3, 5.0, 62),
+                new Transaction("B003", "ITEM@3", 15.0, 20.0, 1, 0.0, 0),
+                new Transaction("B004", "ITEM4", 10.0, 10.0, 1, 0.0, 62));
+        TransactionBatch batch = transactionService.toTransactionBatch(transactions);
+
+        transactionService.validateTransactions(transactions);
+        transactionService.calculateProfits(transactions);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(transactions.get(row).getStatus(), batch.getStatus(row));
+            assertEquals(transactions.get(row).getProfit(), batch.getProfit(row));
+        }
+
+        TransactionService.TaxCalculationResult expected = transactionService.calculateTax(transactions, 10.0);
+        TransactionService.TaxCalculationResult actual = transactionService.calculateTax(batch, 10.0);
+        assertEquals(expected.getNetProfit(), actual.getNetProfit());
+        assertEquals(expected.getTax(), actual.getTax());
+
+        transactionService.removeZeroProfitTransactions(batch);
+        assertEquals(3, batch.size());
+        assertEquals("B003", batch.getBillNumber(2));
+        assertEquals("B003", transactionService.toTransaction(batch, 2).getBillNumber());
+    }
+
+    @Test
+    void testOnlyChangedRowsAreProcessedAgain() {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B002", "ITEM2", 20.0, 25.0, 3, 5.0, 62);
+        batch.add("B003", "ITEM3", 20.0, 25.0, 3, 5.0, 62);
+        batch.add("B004", "ITEM4", 10.0, 5.0, 1, 0.0, 61);
+        assertEquals(4, batch.countRowsToValidate());
+
+        assertEquals(4, transactionService.revalidateChangedRows(batch));
+        assertEquals(4, transactionService.recalculateChangedProfits(batch));
+        assertEquals(0, transactionService.revalidateChangedRows(batch));
+        assertEquals(0, batch.countRowsToCalculateProfit());
+        TransactionService.TaxCalculationResult before = transactionService.calculateTax(batch, 10.0);
+        assertEquals(10.0 + 11.25 + 11.25, before.getTotalProfit(), 1e-9);
+        assertEquals(5.0, before.getTotalLoss(), 1e-9);
+
+        // Fix the loss-making row, then break another one
+        batch.set(3, "B004", "ITEM4", 10.0, 20.0, 1, 0.0, 62);
+        batch.set(1, "B002", "ITEM@2", 20.0, 25.0, 3, 5.0, 62);
+        batch.remove(0);
+        assertEquals(2, batch.countRowsToValidate());
+        assertEquals(2, transactionService.revalidateChangedRows(batch));
+        assertEquals(2, transactionService.recalculateChangedProfits(batch));
+
+        TransactionService.TaxCalculationResult after = transactionService.calculateTax(batch, 10.0);
+        assertEquals(11.25 + 10.0, after.getTotalProfit(), 1e-9);
+        assertEquals(0.0, after.getTotalLoss(), 1e-9);
+        assertFalse(batch.isValid(0));
+
+        // The running totals match a full recalculation
+        TransactionBatch copy = new TransactionBatch();
+        copy.addAll(batch);
+        TransactionService.TaxCalculationResult full = transactionService.calculateTax(copy, 10.0);
+        assertEquals(full.getTotalProfit(), after.getTotalProfit(), 1e-9);
+        assertEquals(full.getTax(), after.getTax(), 1e-9);
+
+        transactionService.removeZeroProfitTransactions(batch);
+        assertEquals(after.getNetProfit(), transactionService.calculateTax(batch, 10.0).getNetProfit(), 1e-9);
+    }
+
+    @Test
+    void testRowUpdatesOnlyChangeTheBatchWhenStored() {
+        TransactionBatch batch = new TransactionBatch();
+        TransactionBatch expected = new TransactionBatch();
+        for (int row = 0; row < 5; row++) {
+            batch.add("B" + row, row == 2 ? "ITEM@2" : "ITEM" + row, 10.0, 15.0 + row, 2, 0.0, 62);
+            expected.add("B" + row, row == 2 ? "ITEM@2" : "ITEM" + row, 10.0, 15.0 + row, 2, 0.0, 62);
+        }
+        transactionService.revalidateChangedRows(expected);
+        transactionService.recalculateChangedProfits(expected);
+
+        Runnable validation = transactionService.revalidateChangedRowsLater(batch).compute(0, 3);
+        Runnable profits = transactionService.recalculateChangedProfitsLater(batch).compute(0, 3);
+        assertEquals(0, batch.countValid());
+        assertEquals(0.0, batch.getProfitSum());
+        assertEquals(5, batch.countRowsToValidate());
+
+        validation.run();
+        profits.run();
+        transactionService.revalidateChangedRowsLater(batch).compute(3, 5).run();
+        transactionService.recalculateChangedProfitsLater(batch).compute(3, 5).run();
+        assertEquals(0, batch.countRowsToValidate());
+        assertEquals(0, batch.countRowsToCalculateProfit());
+        assertEquals(expected.countValid(), batch.countValid());
+        assertEquals(expected.getProfitSum(), batch.getProfitSum(), 1e-9);
+        for (int row = 0; row < 5; row++) {
+            assertEquals(expected.getValidationCode(row), batch.getValidationCode(row));
+            assertEquals(expected.getProfit(row), batch.getProfit(row));
+        }
+    }
+
+    @Test
+    void testValidCountAndProfitSumFollowEveryChange() {
+        TransactionBatch batch = new TransactionBatch();
+        for (int i = 0; i < 4; i++) {
+            batch.add("B" + i, "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+            batch.setProfit(i, i);
+            batch.setValidation(i, i % 2 == 0 ? ValidationCode.VALID : ValidationCode.NEGATIVE_PRICE, 62);
+        }
+        assertEquals(2, batch.countValid());
+        assertEquals(6.0, batch.getProfitSum(), 1e-12);
+
+        batch.setValidation(1, ValidationCode.VALID, 62);
+        batch.setProfit(3, 10.0);
+        assertEquals(3, batch.countValid());
+        assertEquals(13.0, batch.getProfitSum(), 1e-12);
+
+        // Replaced rows lose their profit and validation
+        batch.set(0, "B0", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.remove(1);
+        assertEquals(1, batch.countValid());
+        assertEquals(12.0, batch.getProfitSum(), 1e-12);
+
+        batch.retainRows(new boolean[] {true, false, true});
+        assertEquals(0, batch.countValid());
+        assertEquals(10.0, batch.getProfitSum(), 1e-12);
+
+        // Counting stops while rows change from several threads
+        batch.stopCounting();
+        batch.setValidation(1, ValidationCode.VALID, 62);
+        batch.recount();
+        assertEquals(1, batch.countValid());
+        assertEquals(10.0, batch.getProfitSum(), 1e-12);
+    }
+
+    @Test
+    void testCopyRowsLeavesTheBatchUnchanged() {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B0", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add(null, "ITEM2", 1.0, 2.0, 1, 0.0, 62);
+        batch.add("B2", "ITEM1", 3.0, 4.0, 1, 0.0, 62);
+        batch.setProfit(2, 4.0);
+        batch.setValidation(2, ValidationCode.VALID, 62);
+        batch.markProfitsCalculated(2, 3);
+
+        TransactionBatch copy = batch.copyRows(new boolean[] {false, true, true});
+        assertEquals(3, batch.size());
+        assertEquals(2, copy.size());
+        assertNull(copy.getBillNumber(0));
+        assertEquals("B2", copy.getBillNumber(1));
+        assertEquals("ITEM1", copy.getItemCode(1));
+        assertEquals(4.0, copy.getProfit(1));
+        assertEquals(1, copy.countValid());
+        assertEquals(4.0, copy.getProfitSum(), 1e-12);
+        assertEquals(1, copy.countRowsToCalculateProfit());
+        assertEquals(2, copy.countRowsToValidate());
+
+        // The copy has its own bill number storage
+        copy.add("B3", "ITEM1", 1.0, 2.0, 1, 0.0, 62);
+        batch.add("B4", "ITEM1", 1.0, 2.0, 1, 0.0, 62);
+        assertEquals("B3", copy.getBillNumber(2));
+        assertEquals("B4", batch.getBillNumber(3));
+    }
+
+    @Test
+    void testAddAllCopiesRowsAndState() {
+        TransactionBatch first = new TransactionBatch();
+        first.add("B0", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        first.setProfit(0, 5.0);
+        first.setValidation(0, ValidationCode.VALID, 62);
+        TransactionBatch second = new TransactionBatch(1);
+        second.add(null, "ITEM2", 1.0, 2.0, 1, 0.0, 62);
+        second.add("Bill-é", "ITEM1", 1.0, 2.0, 1, 0.0, 62);
+        second.setProfit(1, 3.0);
+        second.setValidation(1, ValidationCode.VALID, 62);
+        second.markProfitsCalculated(1, 2);
+        second.markValidated(1, 2);
+
+        first.addAll(second);
+
+        assertEquals(3, first.size());
+        assertNull(first.getBillNumber(1));
+        assertEquals("Bill-é", first.getBillNumber(2));
+        assertEquals("ITEM2", first.getItemCode(1));
+        assertEquals(first.getItemCodeId(0), first.getItemCodeId(2));
+        assertEquals(ValidationCode.NOT_VALIDATED, first.getValidationCode(1));
+        assertEquals(TransactionBatch.PENDING_VALIDATION | TransactionBatch.PENDING_PROFIT, first.pending(1));
+        assertEquals(0, first.pending(2));
+        assertEquals(2, first.countValid());
+        assertEquals(8.0, first.getProfitSum(), 1e-12);
+    }
+
+    @Test
+    void testImportTransactionBatch() throws IOException {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "bad,line\n" +
+                "B002,ITEM1,20.0,25.0,3,5.0,85\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, testData.getBytes());
+
+        TransactionBatch batch = transactionService.importTransactionBatch(tempFile.toString(), 2);
+        assertEquals(2, batch.size());
+        assertEquals(1, batch.getItemCodeCount());
+        assertEquals(85, batch.getChecksum(1));
+
+        Files.delete(tempFile);
+    }
+}
@@ -0,0 +1,83 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionCsvWriterTest {
+    private static final String NL = System.lineSeparator();
+    private final TransactionService transactionService = new TransactionService();
+
+    @TempDir
+    Path tempDir;
+
+    private static String format(String billNumber, String itemCode, double internalPrice, double salePrice,
+                                 int quantity, double discount, int checksum) {
+        return String.format(Locale.ROOT, "%s,%s,%.2f,%.2f,%d,%.2f,%d", billNumber, itemCode,
+                internalPrice, salePrice, quantity, discount, checksum) + NL;
+    }
+
+    @Test
+    void testMatchesStringFormat() throws IOException {
+        double[] edgeValues = {0.0, -0.0, -0.001, 0.005, 1.005, 2.675, 9.995, 99.995, -1.005, 0.125,
+                1e7, 123456789.125, -1e15, Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN,
+                Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StringBuilder expected = new StringBuilder(TransactionCsvWriter.HEADER).append(NL);
+
+        try (TransactionCsvWriter writer = new TransactionCsvWriter(out)) {
+            for (double value : edgeValues) {
+                writer.writeRow("B1", "ITEM1", value, -value, Integer.MIN_VALUE, value, Integer.MAX_VALUE);
+                expected.append(format("B1", "ITEM1", value, -value, Integer.MIN_VALUE, value, Integer.MAX_VALUE));
+            }
+            Random random = new Random(42);
+            for (int i = 0; i < 200_000; i++) {
+                double internalPrice = Math.round(random.nextDouble() * 100_000) / 1000.0;
+                double salePrice = random.nextDouble() * 1000 - 100;
+                double discount = random.nextInt(10_000) / 100.0;
+                int quantity = random.nextInt(2000) - 1000;
+                writer.writeRow("Bill" + i, "ITEM" + i % 10, internalPrice, salePrice, quantity, discount, i);
+                expected.append(format("Bill" + i, "ITEM" + i % 10, internalPrice, salePrice, quantity, discount, i));
+            }
+            writer.writeRow(null, "ITÉM-ü€", 1, 2, 3, 4, 5);
+            expected.append(format(null, "ITÉM-ü€", 1, 2, 3, 4, 5));
+            assertEquals(edgeValues.length + 200_001, writer.getRowCount());
+        }
+
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testExportRoundTrip() throws IOException {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B002", "ITEM2", 20.125, 25.5, 3, 5.0, 62);
+        batch.add("B003", "ITEM@3", 15.0, 20.0, 1, 0.0, 0);
+
+        Path plain = tempDir.resolve("export.csv");
+        Path compressed = tempDir.resolve("export.csv.gz");
+        transactionService.exportTransactions(batch, plain.toString(), false);
+        transactionService.exportTransactions(batch, compressed.toString(), true);
+
+        String text = Files.readString(plain);
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(compressed))) {
+            assertEquals(text, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // The header line is skipped by the import, the rows come back unchanged
+        TransactionBatch imported = transactionService.importTransactionBatch(plain.toString(), 1);
+        assertEquals(3, imported.size());
+        assertEquals("ITEM@3", imported.getItemCode(2));
+        assertEquals(20.13, imported.getInternalPrice(1));
+        assertEquals(25.5, imported.getSalePrice(1));
+    }
+}
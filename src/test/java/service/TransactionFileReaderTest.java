@@ -0,0 +1,94 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionFileReaderTest {
+
+    private List<Transaction> read(String content, Charset charset) throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, content.getBytes(charset));
+        List<Transaction> transactions = new ArrayList<>();
+        try (TransactionFileReader reader = new TransactionFileReader(tempFile, charset, new ItemCodeDictionary())) {
+            Transaction transaction;
+            while ((transaction = reader.next()) != null) {
+                transactions.add(transaction);
+            }
+        } finally {
+            Files.delete(tempFile);
+        }
+        return transactions;
+    }
+
+    // UTF-16 line breaks are two bytes, so it is read as String lines with split and trim
+    private void assertSameAsLineByLine(String content) throws IOException {
+        List<Transaction> expected = read(content, StandardCharsets.UTF_16);
+        List<Transaction> actual = read(content, StandardCharsets.UTF_8);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Transaction e = expected.get(i);
+            Transaction a = actual.get(i);
+            assertEquals(e.getBillNumber(), a.getBillNumber());
+            assertEquals(e.getItemCode(), a.getItemCode());
+            assertEquals(e.getInternalPrice(), a.getInternalPrice());
+            assertEquals(e.getSalePrice(), a.getSalePrice());
+            assertEquals(e.getQuantity(), a.getQuantity());
+            assertEquals(e.getDiscount(), a.getDiscount());
+            assertEquals(e.getChecksum(), a.getChecksum());
+        }
+    }
+
+    @Test
+    void testEdgeCaseLines() throws IOException {
+        String content = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                " B002 , ITEM2 ,\t20.5 , 25 ,3, 5. ,85\r\n" +
+                "B003,ITEM3,1e2,0x1p3,4,NaN,+7\r" +
+                "\r\n" +
+                "B004,ITEM4,10,15,2,0,62,,,\n" +
+                "B005,ITEM5,10,15,2,0,\n" +
+                "B006,ITEM6,10,15,2,0,62,x\n" +
+                "B007,ITEM7,abc,15,2,0,62\n" +
+                "B009,ITEM9,10,15,2147483648,0,1\n" +
+                "B010,ÍTEM10,12345678901234567890.5,1.5d,2,0,62\n" +
+                "B011,ITEM11,10,15,2,0,62";
+        assertSameAsLineByLine(content);
+        assertSameAsLineByLine("");
+        assertEquals(6, read(content, StandardCharsets.UTF_8).size());
+    }
+
+    @Test
+    void testLinesAcrossBufferBoundaries() throws IOException {
+        Random random = new Random(7);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append('B').append(i).append(",ITEM").append(random.nextInt(50)).append(',')
+                    .append(random.nextInt(100000) / 100.0).append(",15.5,")
+                    .append(random.nextInt(20)).append(',')
+                    .append(random.nextInt(10) == 0 ? "bad" : String.valueOf(random.nextInt(30))).append(",62")
+                    .append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+        // A line longer than the read buffer
+        content.append("B".repeat(200_000)).append(",ITEM1,10,15,2,0,62\n");
+        assertSameAsLineByLine(content.toString());
+
+        List<Transaction> transactions = read(content.toString(), StandardCharsets.UTF_8);
+        assertEquals(200_000, transactions.get(transactions.size() - 1).getBillNumber().length());
+    }
+
+    @Test
+    void testRepeatedItemCodesShareOneString() throws IOException {
+        List<Transaction> transactions = read("B001,ITEM1,10,15,2,0,62\nB002,ITEM1,10,15,2,0,62\n",
+                StandardCharsets.UTF_8);
+        assertSame(transactions.get(0).getItemCode(), transactions.get(1).getItemCode());
+    }
+}
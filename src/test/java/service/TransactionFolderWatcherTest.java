@@ -0,0 +1,162 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionFolderWatcherTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testScanTailsAppendedLines() throws IOException {
+        Path file = directory.resolve("branch1.csv");
+        Files.writeString(file, "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        Files.writeString(directory.resolve("notes.txt"), "B009,ITEM9,10.0,15.0,2,0.0,62\n");
+
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            assertEquals(1, watcher.scan());
+            assertEquals(10.0, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+            assertEquals(0, watcher.scan());
+
+            // The unfinished last line waits for its line feed
+            append(file, "B002,ITEM2,20.0,25.0,3,5.0,62\r\nB003,ITEM3,10.0,");
+            assertEquals(1, watcher.scan());
+            append(file, "5.0,1,0.0,61\n");
+            assertEquals(1, watcher.scan());
+
+            assertEquals(3, watcher.getRowCount());
+            assertEquals(3, watcher.getValidCount());
+            assertEquals(10.0 + 11.25, watcher.getTotals(10.0).getTotalProfit(), 1e-9);
+            assertEquals(5.0, watcher.getTotals(10.0).getTotalLoss(), 1e-9);
+            assertEquals(Files.size(file), watcher.getOffsets().get(file));
+        }
+    }
+
+    @Test
+    void testDuplicatesAcrossFilesAreNotCounted() throws IOException {
+        Files.writeString(directory.resolve("a.csv"), "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        Files.writeString(directory.resolve("b.csv"), "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            assertEquals(2, watcher.scan());
+            assertEquals(1, watcher.getValidCount());
+            assertEquals(10.0, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+        }
+    }
+
+    @Test
+    void testResumesFromSavedOffset() throws IOException {
+        Path file = directory.resolve("branch1.csv");
+        Files.writeString(file, "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            watcher.setOffset(file, Files.size(file));
+            append(file, "B002,ITEM2,20.0,25.0,3,5.0,62\n");
+            assertEquals(1, watcher.scan());
+            assertEquals(11.25, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+        }
+    }
+
+    @Test
+    void testLastLineWithoutLineBreakWaitsForEndOfFile() throws IOException {
+        Path file = directory.resolve("branch1.csv");
+        Path other = directory.resolve("branch2.csv");
+        Files.writeString(file, "B001,ITEM1,10.0,15.0,2,0.0,62\nB002,ITEM2,20.0,25.0,3,5.0,62");
+        Files.writeString(other, "B003,ITEM3,10.0,15.0,2,0.0,62");
+
+        TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv");
+        assertEquals(1, watcher.scan());
+        // Unchanged, but the uploader may only have paused mid-row
+        assertEquals(0, watcher.scan());
+        assertEquals(1, watcher.finish(file));
+        assertEquals(21.25, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+        assertEquals(Files.size(file), watcher.getOffsets().get(file));
+
+        append(file, "\nB004,ITEM4,10.0,15.0,2,0.0,62\n");
+        assertEquals(1, watcher.scan());
+        assertEquals(3, watcher.getRowCount());
+        // The late line break was not taken for an empty line
+        assertEquals(0, transactionService.getMetrics().getStage(TransactionMetrics.Stage.IMPORT).getSkippedRows());
+
+        // Closing takes every file to be complete
+        watcher.close();
+        assertEquals(4, watcher.getRowCount());
+        assertEquals(Files.size(other), watcher.getOffsets().get(other));
+    }
+
+    @Test
+    void testLastLineIsIngestedOnceStableWithTailWait() throws IOException {
+        Path file = directory.resolve("branch1.csv");
+        Files.writeString(file, "B001,ITEM1,10.0,15.0,2,0.0,62\nB002,ITEM2,20.0,25.0,3,5.0,62");
+
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            watcher.setTailWait(1000);
+            assertEquals(1, watcher.scan());
+            // Unchanged since the last scan, so the last line counts as complete
+            assertEquals(1, watcher.scan());
+            assertEquals(21.25, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+            assertThrows(IllegalArgumentException.class, () -> watcher.setTailWait(-1));
+        }
+    }
+
+    @Test
+    void testOffsetsAreSavedAndLoaded() throws IOException {
+        Path file = directory.resolve("branch1.csv");
+        Path saved = directory.resolve("offsets.properties");
+        Files.writeString(file, "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            assertEquals(1, watcher.scan());
+            watcher.saveOffsets(saved);
+        }
+        append(file, "B002,ITEM2,20.0,25.0,3,5.0,62\n");
+
+        // A new run only ingests what was appended in between
+        try (TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv")) {
+            watcher.loadOffsets(saved);
+            assertEquals(1, watcher.scan());
+            assertEquals(11.25, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+        }
+    }
+
+    @Test
+    void testWatchIngestsNewFiles() throws Exception {
+        CountDownLatch ingested = new CountDownLatch(2);
+        TransactionFolderWatcher watcher = new TransactionFolderWatcher(transactionService, directory, "*.csv");
+        watcher.setListener((file, rows) -> {
+            for (int i = 0; i < rows; i++) {
+                ingested.countDown();
+            }
+        });
+        Thread thread = new Thread(() -> {
+            try {
+                watcher.watch();
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        Files.writeString(directory.resolve("branch1.csv"), "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        Files.writeString(directory.resolve("branch2.csv"), "B002,ITEM2,20.0,25.0,3,5.0,62\n");
+        assertTrue(ingested.await(30, TimeUnit.SECONDS));
+        assertEquals(21.25, watcher.getTotals(10.0).getNetProfit(), 1e-9);
+
+        watcher.close();
+        thread.join(10_000);
+        assertFalse(thread.isAlive());
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardOpenOption.APPEND);
+    }
+}
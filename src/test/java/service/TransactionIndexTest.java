@@ -0,0 +1,98 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import java.util.Random;
+import java.util.stream.IntStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionIndexTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    private TransactionBatch createBatch() {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B002", "ITEM2", 20.0, 25.0, 3, 5.0, 62);
+        batch.add("B001", "ITEM10", 15.0, 20.0, 1, 0.0, 0);
+        batch.add("B003", "ITEM@3", 15.0, 20.0, 1, 0.0, 0);
+        batch.add(null, "BOX7", 10.0, 10.0, 1, 0.0, 62);
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        for (int row = 0; row < batch.size(); row++) {
+            batch.setProfit(row, row - 2.5);
+        }
+        batch.setValidation(0, ValidationCode.VALID, 62);
+        batch.setValidation(3, ValidationCode.SPECIAL_CHARACTERS, 0);
+        batch.setValidation(5, ValidationCode.DUPLICATE, 62);
+        return batch;
+    }
+
+    @Test
+    void testLookups() {
+        TransactionIndex index = transactionService.indexTransactions(createBatch());
+
+        assertArrayEquals(new int[]{0, 2, 5}, index.findByBillNumber("B001"));
+        assertArrayEquals(new int[]{1}, index.findByBillNumber("B002"));
+        assertArrayEquals(new int[0], index.findByBillNumber("B00"));
+        assertArrayEquals(new int[0], index.findByBillNumber(null));
+
+        assertArrayEquals(new int[]{0, 2, 5}, index.findByItemCodePrefix("ITEM1"));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 5}, index.findByItemCodePrefix("ITEM"));
+        assertArrayEquals(new int[]{4}, index.findByItemCodePrefix("BOX7"));
+        assertArrayEquals(new int[0], index.findByItemCodePrefix("item"));
+        assertArrayEquals(new int[0], index.findByItemCodePrefix(null));
+
+        // Profits are -2.5, -1.5, -0.5, 0.5, 1.5 and 2.5
+        assertArrayEquals(new int[]{1, 2, 3}, index.findByProfitRange(-1.5, 0.5));
+        assertArrayEquals(new int[]{0, 1, 2, 3, 4, 5},
+                index.findByProfitRange(Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY));
+        assertArrayEquals(new int[0], index.findByProfitRange(3.0, 10.0));
+
+        assertArrayEquals(new int[]{3, 5}, index.findInvalid());
+        assertArrayEquals(new int[]{5},
+                TransactionIndex.intersect(index.findByBillNumber("B001"), index.findInvalid()));
+    }
+
+    @Test
+    void testProfitRangeMatchesScan() {
+        TransactionBatch batch = new TransactionBatch();
+        Random random = new Random(42);
+        for (int row = 0; row < 20_000; row++) {
+            batch.add("B" + row, "ITEM" + row % 50, 10.0, 15.0, 2, 0.0, 62);
+            batch.setProfit(row, Math.round(random.nextGaussian() * 1000) / 10.0);
+        }
+        batch.setProfit(7, Double.NaN);
+        batch.setProfit(8, -0.0);
+        TransactionIndex index = transactionService.indexTransactions(batch);
+
+        double[][] ranges = {{-50, 50}, {0, 0}, {-1e9, -100}, {12.3, 12.3}, {5, -5}};
+        for (double[] range : ranges) {
+            int[] expected = IntStream.range(0, batch.size())
+                    .filter(row -> batch.getProfit(row) >= range[0] && batch.getProfit(row) <= range[1])
+                    .toArray();
+            assertArrayEquals(expected, index.findByProfitRange(range[0], range[1]));
+        }
+
+        // The same order as a stable sort of the rows by profit
+        int[] expected = IntStream.range(0, batch.size()).boxed()
+                .sorted((row, other) -> Double.compare(batch.getProfit(row), batch.getProfit(other)))
+                .mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, index.rowsByProfit());
+    }
+
+    @Test
+    void testIndexIsStaleAfterChanges() {
+        TransactionBatch batch = createBatch();
+        TransactionIndex index = transactionService.indexTransactions(batch);
+        TransactionIndex later = transactionService.indexTransactions(batch);
+        assertTrue(index.isCurrent());
+
+        batch.setProfit(1, 100.0);
+        assertFalse(index.isCurrent());
+        assertFalse(later.isCurrent());
+        assertThrows(IllegalStateException.class, () -> index.findByBillNumber("B001"));
+
+        TransactionIndex rebuilt = transactionService.indexTransactions(batch);
+        assertArrayEquals(new int[]{1}, rebuilt.findByProfitRange(50, 150));
+        batch.remove(0);
+        assertFalse(rebuilt.isCurrent());
+    }
+}
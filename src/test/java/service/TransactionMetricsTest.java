@@ -0,0 +1,107 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import service.TransactionMetrics.SkipReason;
+import service.TransactionMetrics.Stage;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionMetricsTest {
+    private static final String TEST_DATA = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+            "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+            "B003,ITEM@3,15.0,20.0,1,0.0,0\n" +
+            "B004,ITEM4,10.0,10.0,1,0.0,62\n" +
+            "B005,ITEM5,10.0\n" +
+            "B006,ITEM6,ten,15.0,2,0.0,62\n";
+
+    @Test
+    void testStagesRecordRowsAndSkippedLines() throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, TEST_DATA.getBytes());
+        TransactionService service = new TransactionService();
+        TransactionMetrics metrics = service.getMetrics();
+
+        List<Transaction> transactions = service.importTransactionsFromFile(tempFile.toString());
+        service.validateTransactions(transactions);
+        service.calculateProfits(transactions);
+        service.removeZeroProfitTransactions(transactions);
+        service.calculateTax(transactions, 10.0);
+
+        StageMetrics imports = metrics.getStage(Stage.IMPORT);
+        assertEquals(1, imports.getCalls());
+        assertEquals(4, imports.getRows());
+        assertEquals(TEST_DATA.length(), imports.getBytesRead());
+        assertEquals(1, imports.getSkippedRows(SkipReason.WRONG_FIELD_COUNT));
+        assertEquals(1, imports.getSkippedRows(SkipReason.MALFORMED_NUMBER));
+        assertEquals(4, metrics.getStage(Stage.VALIDATE).getRows());
+        assertEquals(4, metrics.getStage(Stage.CHECKSUM).getRows());
+        assertEquals(1, metrics.getStage(Stage.ZERO_PROFIT_REMOVAL).getSkippedRows(SkipReason.ZERO_PROFIT));
+        assertEquals(3, metrics.getStage(Stage.TAX).getRows());
+        assertEquals(1, metrics.getStage(Stage.TAX).getSkippedRows(SkipReason.INVALID));
+        assertEquals(1, metrics.getStage(Stage.TAX).getTimes().getCount());
+
+        String dump = metrics.dump();
+        assertTrue(dump.contains("import"));
+        assertTrue(dump.contains("  skipped malformed_number: 1"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getStage(Stage.IMPORT).getRows());
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testParallelImportRecordsSkippedLines() throws IOException {
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, TEST_DATA.getBytes());
+        TransactionService service = new TransactionService();
+
+        TransactionBatch batch = service.importTransactionBatch(tempFile.toString(), 2);
+
+        StageMetrics imports = service.getMetrics().getStage(Stage.IMPORT);
+        assertEquals(4, batch.size());
+        assertEquals(4, imports.getRows());
+        assertEquals(2, imports.getSkippedRows());
+        assertFalse(service.getMetrics().dump().contains("tax"), "Uncalled stages are left out");
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testChecksumsAreCountedPerRowAndTimedBySample() {
+        TransactionService service = new TransactionService();
+        TransactionBatch batch = new TransactionBatch();
+        for (int i = 0; i < 3000; i++) {
+            batch.add("B" + i, "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        }
+
+        service.validateTransactions(batch, 0, 1000);
+        service.validateTransactions(batch, 1000, 3000);
+
+        StageMetrics checksums = service.getMetrics().getStage(Stage.CHECKSUM);
+        assertEquals(3000, checksums.getRows());
+        // Rows 0, 1024 and 2048
+        assertEquals(3, checksums.getCalls());
+    }
+
+    @Test
+    void testRegisteredMBeansAreReadable() throws Exception {
+        TransactionService service = new TransactionService();
+        service.getMetrics().registerMBeans();
+        service.validateTransactions(List.of(new Transaction("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62)));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("service:type=TransactionMetrics,stage=validate");
+        assertEquals(1L, server.getAttribute(name, "Calls"));
+        assertEquals(1L, server.getAttribute(name, "Rows"));
+
+        // A second service takes over the names
+        new TransactionService().getMetrics().registerMBeans();
+        assertEquals(0L, server.getAttribute(name, "Calls"));
+    }
+}
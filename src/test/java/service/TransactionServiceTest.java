@@ -8,6 +8,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 class TransactionServiceTest {
@@ -45,6 +47,144 @@ class TransactionServiceTest {
         Files.delete(tempFile);
     }
 
+    @Test
+    void testImportTransactionsInBatches() throws IOException {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "malformed line\n" +
+                "B002,ITEM2,20.0,25.0,3,5.0,85\n" +
+                "B003,ITEM3,abc,25.0,3,5.0,85\n" +
+                "B004,ITEM4,20.0,25.0,3,5.0,62\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, testData.getBytes());
+
+        List<Integer> batchSizes = new ArrayList<>();
+        List<String> billNumbers = new ArrayList<>();
+        long imported = transactionService.importTransactionsInBatches(tempFile.toString(), 2, batch -> {
+            batchSizes.add(batch.size());
+            batch.forEach(t -> billNumbers.add(t.getBillNumber()));
+        });
+
+        assertEquals(3, imported);
+        assertEquals(List.of(2, 1), batchSizes);
+        assertEquals(List.of("B001", "B002", "B004"), billNumbers);
+
+        try (Stream<Transaction> stream = transactionService.streamTransactionsFromFile(tempFile.toString())) {
+            assertEquals(3, stream.count());
+        }
+
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testCalculateTaxFromFile() throws IOException {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+                "B003,ITEM@3,15.0,20.0,1,0.0,0\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, testData.getBytes());
+
+        TransactionService.TaxCalculationResult result =
+                transactionService.calculateTaxFromFile(tempFile.toString(), 10.0, 1);
+
+        assertEquals(21.25, result.getTotalProfit(), 0.001);
+        assertEquals(0.0, result.getTotalLoss(), 0.001);
+        assertEquals(21.25, result.getNetProfit(), 0.001);
+        assertEquals(2.125, result.getTax(), 0.001);
+
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testDuplicatesAreFlaggedAndExcludedFromTax() throws IOException {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+                "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B001,ITEM2,20.0,25.0,3,5.0,62\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, testData.getBytes());
+
+        List<Transaction> transactions = transactionService.importTransactionsFromFile(tempFile.toString());
+        transactionService.validateTransactions(transactions);
+        assertTrue(transactions.get(0).isValid());
+        assertFalse(transactions.get(2).isValid());
+        assertTrue(transactions.get(2).getStatus().contains("Duplicate bill number and item code"));
+        assertTrue(transactions.get(3).isValid());
+
+        TransactionBatch batch = transactionService.importTransactionBatch(tempFile.toString(), 2);
+        transactionService.validateTransactions(batch, 0, batch.size());
+        assertEquals(ValidationCode.DUPLICATE, batch.getValidationCode(2));
+        assertEquals(1, transactionService.markDuplicates(batch));
+
+        List<TransactionBatch> batches = new ArrayList<>();
+        assertEquals(4, transactionService.importTransactionBatches(tempFile.toString(), 2, batches::add));
+        assertEquals(1, batches.size());
+        assertNotEquals(0, batches.get(0).getValidationCode(2) & ValidationCode.DUPLICATE);
+        assertEquals(0, batches.get(0).getValidationCode(3) & ValidationCode.DUPLICATE);
+
+        // The repeated row is left out, so the tax matches the first three distinct rows
+        TransactionService.TaxCalculationResult result =
+                transactionService.calculateTaxFromFile(tempFile.toString(), 10.0, 1);
+        assertEquals(10.0 + 11.25 + 11.25, result.getTotalProfit(), 0.001);
+
+        Files.delete(tempFile);
+    }
+
+    @Test
+    void testDuplicateMarksFollowEditsAndRemovals() {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B002", "ITEM2", 20.0, 25.0, 3, 5.0, 62);
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        batch.add("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        assertEquals(2, transactionService.markDuplicates(batch));
+
+        // Editing the second row into a copy of the first keeps it a duplicate
+        Transaction edited = new Transaction("B001", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        edited.setValidation(ValidationCode.VALID, 62);
+        transactionService.updateRow(batch, 1, edited);
+        assertEquals(ValidationCode.DUPLICATE, batch.getValidationCode(1) & ValidationCode.DUPLICATE);
+        assertEquals(ValidationCode.DUPLICATE, batch.getValidationCode(2) & ValidationCode.DUPLICATE);
+
+        // Moving the first row to another bill makes the next copy the first one
+        Transaction moved = new Transaction("B003", "ITEM1", 10.0, 15.0, 2, 0.0, 62);
+        moved.setValidation(ValidationCode.VALID, 62);
+        transactionService.updateRow(batch, 0, moved);
+        assertEquals(ValidationCode.VALID, batch.getValidationCode(0));
+        assertEquals(0, batch.getValidationCode(1) & ValidationCode.DUPLICATE);
+        assertEquals(ValidationCode.DUPLICATE, batch.getValidationCode(2) & ValidationCode.DUPLICATE);
+
+        // Removing the first copy clears the mark of the next one
+        transactionService.removeRow(batch, 1);
+        assertEquals(0, batch.getValidationCode(1) & ValidationCode.DUPLICATE);
+        assertEquals(ValidationCode.DUPLICATE, batch.getValidationCode(2) & ValidationCode.DUPLICATE);
+        transactionService.removeRow(batch, 1);
+        assertEquals(0, batch.getValidationCode(1) & ValidationCode.DUPLICATE);
+        transactionService.validateTransactions(batch);
+        assertTrue(batch.isValid(1));
+    }
+
+    @Test
+    void testDuplicatesAreFoundAcrossStreamedBatches() throws IOException {
+        String testData = "B001,ITEM1,10.0,15.0,2,0.0,62\n" +
+                "B002,ITEM2,20.0,25.0,3,5.0,62\n" +
+                "B003,ITEM3,20.0,25.0,3,5.0,62\n" +
+                "B001,ITEM1,10.0,15.0,2,0.0,62\n";
+        Path tempFile = Files.createTempFile("transactions", ".csv");
+        Files.write(tempFile, testData.getBytes());
+
+        List<Integer> codes = new ArrayList<>();
+        transactionService.importTransactionsInBatches(tempFile.toString(), 2,
+                batch -> batch.forEach(t -> codes.add(t.getValidationCode())));
+        assertEquals(List.of(ValidationCode.NOT_VALIDATED, ValidationCode.NOT_VALIDATED,
+                ValidationCode.NOT_VALIDATED, ValidationCode.NOT_VALIDATED | ValidationCode.DUPLICATE), codes);
+
+        try (Stream<Transaction> stream = transactionService.streamTransactionsFromFile(tempFile.toString())) {
+            assertEquals(1, stream.filter(t -> (t.getValidationCode() & ValidationCode.DUPLICATE) != 0).count());
+        }
+
+        Files.delete(tempFile);
+    }
+
     @Test
     void testValidateTransactions() {
         // Reset statuses for this test
@@ -57,6 +197,27 @@ class TransactionServiceTest {
         assertTrue(testTransactions.get(2).getStatus().startsWith("Invalid"));
     }
 
+    @Test
+    void testParallelValidationMatchesSerial() {
+        Random random = new Random(7);
+        List<Transaction> serial = new ArrayList<>();
+        List<Transaction> parallel = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String itemCode = random.nextInt(10) == 0 ? "ITEM#" + i : "ITEM" + i;
+            double internalPrice = random.nextInt(10) == 0 ? -1.0 : random.nextInt(1000) / 10.0;
+            int checksum = 60 + random.nextInt(8);
+            serial.add(new Transaction("B" + i, itemCode, internalPrice, 15.0, 2, 0.0, checksum));
+            parallel.add(new Transaction("B" + i, itemCode, internalPrice, 15.0, 2, 0.0, checksum));
+        }
+
+        transactionService.validateTransactions(serial);
+        transactionService.validateTransactions(parallel, 4);
+
+        for (int i = 0; i < serial.size(); i++) {
+            assertEquals(serial.get(i).getStatus(), parallel.get(i).getStatus());
+        }
+    }
+
     @Test
     void testCalculateChecksum() {
         Transaction transaction = testTransactions.get(0);
@@ -93,6 +254,20 @@ class TransactionServiceTest {
         assertFalse(testTransactions.contains(zeroProfit));
     }
 
+    @Test
+    void testCopyWithoutZeroProfitTransactionsKeepsTheBatch() {
+        TransactionBatch batch = transactionService.toTransactionBatch(testTransactions);
+        batch.add("B004", "ITEM4", 10.0, 10.0, 1, 0.0, 50);
+        transactionService.calculateProfits(batch);
+
+        TransactionBatch copy = transactionService.copyWithoutZeroProfitTransactions(batch);
+        assertEquals(testTransactions.size() + 1, batch.size());
+        assertEquals(testTransactions.size(), copy.size());
+        for (int row = 0; row < copy.size(); row++) {
+            assertNotEquals(0.0, copy.getProfit(row));
+        }
+    }
+
     @Test
     void testCalculateTax() {
         // Calculate profits first
@@ -108,4 +283,19 @@ class TransactionServiceTest {
         assertEquals(21.25, result.getNetProfit(), 0.001);
         assertEquals(2.125, result.getTax(), 0.001);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCalculateProfitsAndTax() {
+        TransactionService.TaxCalculationResult fused =
+                transactionService.calculateProfitsAndTax(testTransactions, 10.0);
+
+        assertEquals(11.25, testTransactions.get(1).getProfit(), 0.001);
+        assertEquals(21.25, fused.getTotalProfit(), 0.001);
+        assertEquals(2.125, fused.getTax(), 0.001);
+
+        TransactionBatch batch = transactionService.toTransactionBatch(testTransactions);
+        TransactionService.TaxCalculationResult parallel = transactionService.calculateProfitsAndTax(batch, 10.0, 4);
+        assertEquals(fused.getNetProfit(), parallel.getNetProfit(), 1e-9);
+        assertEquals(fused.getTax(), parallel.getTax(), 1e-9);
+    }
+}
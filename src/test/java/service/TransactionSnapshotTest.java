@@ -0,0 +1,133 @@
+package service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionSnapshotTest {
+    private final TransactionService transactionService = new TransactionService();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSnapshotRoundTrip() throws IOException {
+        Path source = tempDir.resolve("transactions.csv");
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 3001; i++) {
+            String itemCode = i % 7 == 0 ? "ITEM@" + (i % 5) : "ITEM" + (i % 5);
+            csv.append("Bill-").append(i).append(',').append(itemCode).append(",10.5,")
+                    .append(12 + i % 3).append(",2,").append(i % 4).append(",62\n");
+        }
+        Files.writeString(source, csv.toString());
+
+        TransactionBatch batch = transactionService.importTransactionBatch(source.toString(), 2);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+        batch.set(5, null, "ITEMé", 1.0, 2.0, 1, 0.0, 7);
+
+        Path snapshot = tempDir.resolve("transactions.snapshot");
+        transactionService.saveSnapshot(batch, source.toString(), snapshot.toString());
+        TransactionBatch loaded = transactionService.loadSnapshot(snapshot.toString());
+
+        assertEquals(batch.size(), loaded.size());
+        assertEquals(batch.getItemCodeCount(), loaded.getItemCodeCount());
+        for (int row = 0; row < batch.size(); row++) {
+            assertEquals(batch.getBillNumber(row), loaded.getBillNumber(row));
+            assertEquals(batch.getItemCode(row), loaded.getItemCode(row));
+            assertEquals(batch.getInternalPrice(row), loaded.getInternalPrice(row));
+            assertEquals(batch.getSalePrice(row), loaded.getSalePrice(row));
+            assertEquals(batch.getQuantity(row), loaded.getQuantity(row));
+            assertEquals(batch.getDiscount(row), loaded.getDiscount(row));
+            assertEquals(batch.getChecksum(row), loaded.getChecksum(row));
+            assertEquals(batch.getProfit(row), loaded.getProfit(row));
+            assertEquals(batch.getStatus(row), loaded.getStatus(row));
+        }
+
+        // Only the row replaced before saving is processed again, and the totals need no pass
+        assertEquals(1, loaded.countRowsToValidate());
+        assertEquals(1, loaded.countRowsToCalculateProfit());
+        assertNotNull(loaded.getValidTotals());
+        assertEquals(1, transactionService.revalidateChangedRows(loaded));
+        assertEquals(0, transactionService.revalidateChangedRows(loaded));
+        transactionService.calculateProfits(batch);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(loaded);
+        assertEquals(transactionService.calculateTax(batch, 10).getTax(),
+                transactionService.calculateTax(loaded, 10).getTax(), 1e-9);
+
+        // Loaded batches can grow like any other
+        loaded.add("B-new", "ITEM1", 1.0, 2.0, 1, 0.0, 62);
+        assertEquals("B-new", loaded.getBillNumber(batch.size()));
+    }
+
+    @Test
+    void testLoadedSnapshotNeedsNoProcessing() throws IOException {
+        Path source = tempDir.resolve("transactions.csv");
+        Files.writeString(source, "B001,ITEM1,10.0,15.0,2,0.0,62\nB002,ITEM@2,10.0,25.0,1,0.0,62\n");
+        TransactionBatch batch = transactionService.importTransactionBatch(source.toString(), 1);
+        transactionService.validateTransactions(batch);
+        transactionService.calculateProfits(batch);
+        Path snapshot = tempDir.resolve("transactions.snapshot");
+        transactionService.saveSnapshot(batch, source.toString(), snapshot.toString());
+
+        TransactionBatch loaded = transactionService.loadSnapshot(snapshot.toString());
+
+        assertEquals(0, transactionService.revalidateChangedRows(loaded));
+        assertEquals(0, loaded.countRowsToCalculateProfit());
+        assertEquals(transactionService.calculateTax(batch, 10).getNetProfit(),
+                loaded.getValidTotals().toResult(10).getNetProfit());
+    }
+
+    @Test
+    void testNullItemCodeRoundTrip() throws IOException {
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B1", null, 1.0, 2.0, 1, 0.0, 0);
+        batch.add("B2", "null", 1.0, 2.0, 1, 0.0, 0);
+        batch.add("B3", null, 1.0, 2.0, 1, 0.0, 0);
+        Path snapshot = tempDir.resolve("null-codes.snapshot");
+        transactionService.saveSnapshot(batch, null, snapshot.toString());
+
+        TransactionBatch loaded = transactionService.loadSnapshot(snapshot.toString());
+
+        assertNull(loaded.getItemCode(0));
+        assertEquals("null", loaded.getItemCode(1));
+        assertNull(loaded.getItemCode(2));
+        assertEquals(loaded.getItemCodeId(0), loaded.getItemCodeId(2));
+    }
+
+    @Test
+    void testSnapshotSourceCheck() throws IOException {
+        Path source = tempDir.resolve("transactions.csv");
+        Files.writeString(source, "B001,ITEM1,10.0,15.0,2,0.0,62\n");
+        TransactionBatch batch = transactionService.importTransactionBatch(source.toString(), 1);
+        Path snapshot = tempDir.resolve("transactions.snapshot");
+        transactionService.saveSnapshot(batch, source.toString(), snapshot.toString());
+
+        assertTrue(transactionService.isSnapshotCurrent(snapshot.toString(), source.toString()));
+
+        // Same content with a new modification time is still current
+        Files.setLastModifiedTime(source, FileTime.fromMillis(0));
+        assertTrue(transactionService.isSnapshotCurrent(snapshot.toString(), source.toString()));
+
+        // Same size, different content
+        Files.writeString(source, "B002,ITEM1,10.0,15.0,2,0.0,62\n");
+        Files.setLastModifiedTime(source, FileTime.fromMillis(1000));
+        assertFalse(transactionService.isSnapshotCurrent(snapshot.toString(), source.toString()));
+    }
+
+    @Test
+    void testRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("not-a-snapshot.bin");
+        Files.write(file, new byte[100]);
+        assertThrows(IOException.class, () -> transactionService.loadSnapshot(file.toString()));
+
+        Path empty = tempDir.resolve("empty.snapshot");
+        transactionService.saveSnapshot(new TransactionBatch(), null, empty.toString());
+        assertEquals(0, transactionService.loadSnapshot(empty.toString()).size());
+    }
+}
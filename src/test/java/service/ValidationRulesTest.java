@@ -0,0 +1,150 @@
+package service;
+
+import org.iit.Transaction;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationRulesTest {
+
+    @Test
+    void testDefaultRules() {
+        ValidationRules rules = ValidationRules.defaults();
+
+        assertEquals(ValidationRules.Mode.COLLECT, rules.getMode());
+        assertEquals(ValidationCode.VALID, rules.evaluate("ITEM1", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.CHECKSUM_MISMATCH | ValidationCode.SPECIAL_CHARACTERS
+                        | ValidationCode.NEGATIVE_PRICE,
+                rules.evaluate("ITEM@1", -10.0, 15.0, 2, 0.0, 62, 60));
+        assertEquals(ValidationCode.SPECIAL_CHARACTERS, rules.evaluate("", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.SPECIAL_CHARACTERS, rules.evaluate("ÍTEM", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.NEGATIVE_PRICE, rules.evaluate("ITEM1", 10.0, -0.5, 2, 0.0, 62, 62));
+        // No limits on quantity and discount by default
+        assertEquals(ValidationCode.VALID, rules.evaluate("ITEM1", 10.0, 15.0, -5, 99.0, 62, 62));
+
+        // The dictionary answers the same as the lookup table
+        ItemCodeDictionary itemCodes = new ItemCodeDictionary();
+        assertEquals(ValidationCode.SPECIAL_CHARACTERS,
+                rules.evaluate("ITEM@1", 10.0, 15.0, 2, 0.0, 62, 62, itemCodes));
+        assertEquals(ValidationCode.VALID, rules.evaluate("ITEM1", 10.0, 15.0, 2, 0.0, 62, 62, itemCodes));
+    }
+
+    @Test
+    void testConfiguredRules() {
+        Properties properties = new Properties();
+        properties.setProperty("checksum", "false");
+        properties.setProperty("itemCode.characters", "A-Z0-9_-");
+        properties.setProperty("itemCode.minLength", "3");
+        properties.setProperty("itemCode.maxLength", "8");
+        properties.setProperty("price.nonNegative", "false");
+        properties.setProperty("quantity.min", "1");
+        properties.setProperty("quantity.max", "100");
+        properties.setProperty("discount.min", "0");
+        properties.setProperty("discount.max", "50");
+        ValidationRules rules = ValidationRules.fromProperties(properties);
+
+        assertEquals(ValidationCode.VALID, rules.evaluate("SKU_1-A", -10.0, 15.0, 1, 50.0, 62, 60));
+        assertEquals(ValidationCode.SPECIAL_CHARACTERS, rules.evaluate("sku1", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.ITEM_CODE_LENGTH, rules.evaluate("SKU123456", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.ITEM_CODE_LENGTH | ValidationCode.QUANTITY_OUT_OF_RANGE
+                        | ValidationCode.DISCOUNT_OUT_OF_RANGE,
+                rules.evaluate("AB", 10.0, 15.0, 101, -1.0, 62, 62));
+        assertEquals("Invalid: Item code length out of range, Quantity out of range",
+                ValidationCode.describe(ValidationCode.ITEM_CODE_LENGTH | ValidationCode.QUANTITY_OUT_OF_RANGE, 0, 0));
+
+        // An empty character list allows any item code
+        properties.clear();
+        properties.setProperty("itemCode.characters", "");
+        assertEquals(ValidationCode.VALID, ValidationRules.fromProperties(properties)
+                .evaluate("ÍTEM #1", 10.0, 15.0, 2, 0.0, 62, 62));
+    }
+
+    @Test
+    void testShortCircuitStopsAtFirstFailure() {
+        Properties properties = new Properties();
+        properties.setProperty("mode", "short-circuit");
+        properties.setProperty("quantity.max", "10");
+        ValidationRules rules = ValidationRules.fromProperties(properties);
+
+        assertEquals(ValidationRules.Mode.SHORT_CIRCUIT, rules.getMode());
+        assertEquals(ValidationCode.CHECKSUM_MISMATCH, rules.evaluate("ITEM@1", -10.0, 15.0, 20, 0.0, 62, 60));
+        assertEquals(ValidationCode.NEGATIVE_PRICE, rules.evaluate("ITEM@1", -10.0, 15.0, 20, 0.0, 62, 62));
+        assertEquals(ValidationCode.QUANTITY_OUT_OF_RANGE, rules.evaluate("ITEM@1", 10.0, 15.0, 20, 0.0, 62, 62));
+        assertEquals(ValidationCode.SPECIAL_CHARACTERS, rules.evaluate("ITEM@1", 10.0, 15.0, 2, 0.0, 62, 62));
+        assertEquals(ValidationCode.VALID, rules.evaluate("ITEM1", 10.0, 15.0, 2, 0.0, 62, 62));
+    }
+
+    @Test
+    void testInvalidConfigurationIsRejected() {
+        String[][] invalid = {
+                {"itemcode.characters", "a-z"},
+                {"mode", "fast"},
+                {"checksum", "yes"},
+                {"itemCode.characters", "z-a"},
+                {"itemCode.characters", "é"},
+                {"itemCode.minLength", "-1"},
+                {"quantity.max", "ten"},
+                {"discount.max", "NaN"},
+        };
+        for (String[] entry : invalid) {
+            Properties properties = new Properties();
+            properties.setProperty(entry[0], entry[1]);
+            assertThrows(IllegalArgumentException.class, () -> ValidationRules.fromProperties(properties));
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("discount.min", "10");
+        properties.setProperty("discount.max", "5");
+        assertThrows(IllegalArgumentException.class, () -> ValidationRules.fromProperties(properties));
+    }
+
+    @Test
+    void testLoadAndUseFromService() throws IOException {
+        Path file = Files.createTempFile("rules", ".properties");
+        Files.writeString(file, "# Bulk orders only\nquantity.min = 10\n");
+        TransactionService service = new TransactionService();
+        TransactionBatch batch = new TransactionBatch();
+        batch.add("B1", "ITEM1", 10.0, 15.0, 2, 0.0, 0);
+        int checksum = service.calculateChecksum(new Transaction("B2", "ITEM1", 10.0, 15.0, 2, 0.0, 0));
+        batch.add("B2", "ITEM1", 10.0, 15.0, 2, 0.0, checksum);
+
+        service.setValidationRules(ValidationRules.load(file));
+        service.validateTransactions(batch);
+        assertEquals(ValidationCode.CHECKSUM_MISMATCH | ValidationCode.QUANTITY_OUT_OF_RANGE,
+                batch.getValidationCode(0));
+        assertEquals(ValidationCode.QUANTITY_OUT_OF_RANGE, batch.getValidationCode(1));
+
+        service.setValidationRules(null);
+        assertSame(ValidationRules.defaults(), service.getValidationRules());
+        service.validateTransactions(batch);
+        assertEquals(ValidationCode.VALID, batch.getValidationCode(1));
+        Files.delete(file);
+    }
+
+    @Test
+    void testValidRowsDoNotAllocate() {
+        ValidationRules rules = ValidationRules.defaults();
+        ItemCodeDictionary itemCodes = new ItemCodeDictionary();
+        String[] codes = {"ITEM1", "ITEM2", "SKU42"};
+        int failures = 0;
+        // Warm up, so the evaluation is compiled before it is measured
+        for (int i = 0; i < 200_000; i++) {
+            failures += rules.evaluate(codes[i % 3], i, 15.0, 2, 0.0, 62, 62, itemCodes);
+        }
+        long before = TransactionMetrics.allocatedBytes();
+        for (int i = 0; i < 1_000_000; i++) {
+            failures += rules.evaluate(codes[i % 3], i, 15.0, 2, 0.0, 62, 62, itemCodes);
+            failures += rules.evaluate(codes[i % 3], i, 15.0, 2, 0.0, 62, 62);
+        }
+        long allocated = TransactionMetrics.allocatedBytes() - before;
+
+        assertEquals(0, failures);
+        if (before >= 0) {
+            // Far less than a byte per row; only the measurement itself may allocate
+            assertTrue(allocated < 10_000, "Allocated " + allocated + " bytes");
+        }
+    }
+}